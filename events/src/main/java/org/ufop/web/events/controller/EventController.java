@@ -1,25 +1,48 @@
 package org.ufop.web.events.controller;
 
 import org.ufop.web.events.dto.CreateEventDTO;
+import org.ufop.web.events.dto.EventChangesDTO;
 import org.ufop.web.events.dto.EventDTO;
+import org.ufop.web.events.dto.PageDTO;
+import org.ufop.web.events.dto.ReservationDTO;
+import org.ufop.web.events.dto.TicketReservationDTO;
 import org.ufop.web.events.model.Event;
+import org.ufop.web.events.service.EventChangeLog;
 import org.ufop.web.events.service.EventService;
+import org.ufop.web.events.service.WaitingRoomService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolationException;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/events")
 @RequiredArgsConstructor
+@Validated
 @CrossOrigin(origins = "*")
 public class EventController {
 
     private final EventService eventService;
+    private final WaitingRoomService waitingRoomService;
+    private final EventChangeLog changeLog;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     public ResponseEntity<EventDTO> createEvent(@Valid @RequestBody CreateEventDTO dto) {
@@ -28,33 +51,79 @@ public class EventController {
     }
 
     @GetMapping
-    public ResponseEntity<List<EventDTO>> getAllEvents() {
-        List<EventDTO> events = eventService.getAllEvents();
-        return ResponseEntity.ok(events);
+    public ResponseEntity<?> getAllEvents(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            WebRequest request) {
+        if (cursor == null && limit == null) {
+            return conditional(request, eventService::getAllEvents);
+        }
+        return conditional(request, () -> eventService.getEventsPage(cursor, limit != null ? limit : 50));
+    }
+
+    @GetMapping(produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamAllEvents() {
+        StreamingResponseBody body = out -> eventService.forEachEvent(event -> writeLine(out, event));
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
     }
 
     @GetMapping("/available")
-    public ResponseEntity<List<EventDTO>> getAvailableEvents() {
-        List<EventDTO> events = eventService.getAvailableEvents();
-        return ResponseEntity.ok(events);
+    public ResponseEntity<List<EventDTO>> getAvailableEvents(WebRequest request) {
+        return conditional(request, () -> eventService.getAvailableEvents());
     }
 
     @GetMapping("/upcoming")
-    public ResponseEntity<List<EventDTO>> getUpcomingEvents() {
-        List<EventDTO> events = eventService.getUpcomingEvents();
-        return ResponseEntity.ok(events);
+    public ResponseEntity<List<EventDTO>> getUpcomingEvents(WebRequest request) {
+        return conditional(request, () -> eventService.getUpcomingEvents());
+    }
+
+    @GetMapping("/range")
+    public ResponseEntity<List<EventDTO>> getEventsInRange(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) Event.EventStatus status,
+            WebRequest request) {
+        return conditional(request, () -> eventService.getEventsInRange(from, to, category, status));
+    }
+
+    @GetMapping("/weekend")
+    public ResponseEntity<List<EventDTO>> getWeekendEvents(
+            @RequestParam(required = false) String category,
+            WebRequest request) {
+        return conditional(request, () -> eventService.getWeekendEvents(category));
     }
 
     @GetMapping("/category/{category}")
-    public ResponseEntity<List<EventDTO>> getEventsByCategory(@PathVariable String category) {
-        List<EventDTO> events = eventService.getEventsByCategory(category);
+    public ResponseEntity<List<EventDTO>> getEventsByCategory(@PathVariable String category, WebRequest request) {
+        return conditional(request, () -> eventService.getEventsByCategory(category));
+    }
+
+    @GetMapping("/batch")
+    public ResponseEntity<List<EventDTO>> getEventsByIds(@RequestParam List<UUID> ids) {
+        List<EventDTO> events = eventService.getEventsByIds(ids);
+        return ResponseEntity.ok(events);
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<List<EventDTO>> getEventsByIdsBatch(@RequestBody List<UUID> ids) {
+        List<EventDTO> events = eventService.getEventsByIds(ids);
         return ResponseEntity.ok(events);
     }
 
+    @GetMapping("/changes")
+    public ResponseEntity<EventChangesDTO> getChanges(@RequestParam String since) {
+        EventChangesDTO changes = eventService.getChangesSince(since);
+        return ResponseEntity.ok()
+                .eTag(changes.getVersion())
+                .body(changes);
+    }
+
     @GetMapping("/{id}")
-    public ResponseEntity<EventDTO> getEventById(@PathVariable UUID id) {
-        EventDTO event = eventService.getEventById(id);
-        return ResponseEntity.ok(event);
+    public ResponseEntity<EventDTO> getEventById(@PathVariable UUID id, WebRequest request) {
+        return conditional(request, changeLog.etag(id), () -> eventService.getEventById(id));
     }
 
     @PutMapping("/{id}")
@@ -73,14 +142,58 @@ public class EventController {
         return ResponseEntity.ok(updatedEvent);
     }
 
+    @PatchMapping("/{id}/inventory-stripes")
+    public ResponseEntity<EventDTO> updateInventoryStripes(
+            @PathVariable UUID id,
+            @RequestParam int stripes) {
+        EventDTO updatedEvent = eventService.updateInventoryStripes(id, stripes);
+        return ResponseEntity.ok(updatedEvent);
+    }
+
     @PostMapping("/{id}/reserve-tickets")
     public ResponseEntity<Boolean> reserveTickets(
             @PathVariable UUID id,
-            @RequestParam int quantity) {
+            @RequestParam int quantity,
+            @RequestHeader(value = WaitingRoomService.ADMISSION_HEADER, required = false) String admissionToken) {
+        waitingRoomService.checkAdmission(id, admissionToken);
         boolean success = eventService.reserveTickets(id, quantity);
         return ResponseEntity.ok(success);
     }
 
+    @PostMapping("/reserve-tickets")
+    public ResponseEntity<List<ReservationDTO>> reserveTicketsBatch(
+            @RequestBody @NotEmpty List<@Valid TicketReservationDTO> items,
+            @RequestParam(required = false) Long holdTtlSeconds,
+            @RequestHeader(value = WaitingRoomService.ADMISSION_HEADER, required = false) String admissionToken) {
+        items.stream()
+                .map(TicketReservationDTO::getEventId)
+                .distinct()
+                .forEach(eventId -> waitingRoomService.checkAdmission(eventId, admissionToken));
+        List<ReservationDTO> reservations = eventService.reserveTicketsBatch(items, holdTtlSeconds);
+        if (reservations == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.ok(reservations);
+    }
+
+    /**
+     * Reserves tickets for one event and quotes their unit price in a single call. With
+     * {@code holdTtlSeconds} the tickets go on a timed hold whose id is returned.
+     */
+    @PostMapping("/{id}/reservations")
+    public ResponseEntity<ReservationDTO> reserveAndQuote(
+            @PathVariable UUID id,
+            @RequestParam int quantity,
+            @RequestParam(required = false) Long holdTtlSeconds,
+            @RequestHeader(value = WaitingRoomService.ADMISSION_HEADER, required = false) String admissionToken) {
+        waitingRoomService.checkAdmission(id, admissionToken);
+        ReservationDTO reservation = eventService.reserveAndQuote(id, quantity, holdTtlSeconds);
+        if (reservation == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.status(HttpStatus.CREATED).body(reservation);
+    }
+
     @GetMapping("/{id}/exists")
     public ResponseEntity<Boolean> checkEventExists(@PathVariable UUID id) {
         try {
@@ -107,20 +220,46 @@ public class EventController {
 
     @GetMapping("/search")
     public ResponseEntity<List<EventDTO>> searchEvents(
+            @RequestParam(required = false) String q,
             @RequestParam(required = false) String title,
             @RequestParam(required = false) String location,
-            @RequestParam(required = false) String category) {
-        // This is a simplified search - you would implement a proper search service
-        List<EventDTO> allEvents = eventService.getAllEvents();
+            @RequestParam(required = false) String category,
+            @RequestParam(defaultValue = "50") int limit,
+            WebRequest request) {
+        return conditional(request, () -> eventService.searchEvents(q, title, location, category, limit));
+    }
+
+    /**
+     * Answers 304 when the client already holds the current catalog version, otherwise
+     * tags the response with it. The version is read before the body is built, so a write
+     * landing in between costs the client one extra refetch rather than a missed change.
+     */
+    private <T> ResponseEntity<T> conditional(WebRequest request, Supplier<T> body) {
+        return conditional(request, changeLog.etag(), body);
+    }
 
-        List<EventDTO> filteredEvents = allEvents.stream()
-                .filter(event ->
-                        (title == null || event.getTitle().toLowerCase().contains(title.toLowerCase())) &&
-                                (location == null || event.getLocation().toLowerCase().contains(location.toLowerCase())) &&
-                                (category == null || event.getCategory().equalsIgnoreCase(category))
-                )
-                .collect(java.util.stream.Collectors.toList());
+    // Same, tagged with a narrower version, e.g. that of the one event in the response
+    private <T> ResponseEntity<T> conditional(WebRequest request, String etag, Supplier<T> body) {
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .body(body.get());
+    }
+
+    private void writeLine(OutputStream out, Object value) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(value));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-        return ResponseEntity.ok(filteredEvents);
+    // A request body that failed validation, e.g. a reservation line without an event ID
+    @ExceptionHandler(ConstraintViolationException.class)
+    public ResponseEntity<String> handleInvalidRequest(ConstraintViolationException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
     }
-}
\ No newline at end of file
+}
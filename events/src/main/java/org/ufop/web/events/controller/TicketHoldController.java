@@ -0,0 +1,58 @@
+package org.ufop.web.events.controller;
+
+import org.ufop.web.events.dto.TicketHoldDTO;
+import org.ufop.web.events.service.TicketHoldService;
+import org.ufop.web.events.service.WaitingRoomService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/events")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class TicketHoldController {
+
+    private final TicketHoldService ticketHoldService;
+    private final WaitingRoomService waitingRoomService;
+
+    @PostMapping("/{id}/holds")
+    public ResponseEntity<TicketHoldDTO> createHold(
+            @PathVariable UUID id,
+            @RequestParam int quantity,
+            @RequestParam(required = false) Long ttlSeconds,
+            @RequestHeader(value = WaitingRoomService.ADMISSION_HEADER, required = false) String admissionToken) {
+        waitingRoomService.checkAdmission(id, admissionToken);
+        TicketHoldDTO hold = ticketHoldService.createHold(id, quantity, ttlSeconds);
+        if (hold == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.status(HttpStatus.CREATED).body(hold);
+    }
+
+    @GetMapping("/holds/{holdId}")
+    public ResponseEntity<TicketHoldDTO> getHold(@PathVariable UUID holdId) {
+        return ResponseEntity.ok(ticketHoldService.getHold(holdId));
+    }
+
+    @PostMapping("/holds/{holdId}/confirm")
+    public ResponseEntity<TicketHoldDTO> confirmHold(@PathVariable UUID holdId) {
+        try {
+            return ResponseEntity.ok(ticketHoldService.confirmHold(holdId));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    @PostMapping("/holds/{holdId}/release")
+    public ResponseEntity<TicketHoldDTO> releaseHold(@PathVariable UUID holdId) {
+        try {
+            return ResponseEntity.ok(ticketHoldService.releaseHold(holdId));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.ufop.web.events.controller;
+
+import org.ufop.web.events.dto.QueueTicketDTO;
+import org.ufop.web.events.dto.WaitingRoomDTO;
+import org.ufop.web.events.service.WaitingRoomService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/events/waiting-room")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class WaitingRoomController {
+
+    private final WaitingRoomService waitingRoomService;
+
+    @PostMapping("/{eventId}/open")
+    public ResponseEntity<WaitingRoomDTO> openWaitingRoom(
+            @PathVariable UUID eventId,
+            @RequestParam int ratePerSecond) {
+        return ResponseEntity.ok(waitingRoomService.open(eventId, ratePerSecond));
+    }
+
+    @DeleteMapping("/{eventId}")
+    public ResponseEntity<Void> closeWaitingRoom(@PathVariable UUID eventId) {
+        waitingRoomService.close(eventId);
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/{eventId}")
+    public ResponseEntity<WaitingRoomDTO> getWaitingRoom(@PathVariable UUID eventId) {
+        return ResponseEntity.ok(waitingRoomService.getRoom(eventId));
+    }
+
+    @PostMapping("/{eventId}/join")
+    public ResponseEntity<QueueTicketDTO> joinQueue(@PathVariable UUID eventId) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(waitingRoomService.join(eventId));
+    }
+
+    @GetMapping("/{eventId}/tickets/{position}")
+    public ResponseEntity<QueueTicketDTO> getQueueTicket(
+            @PathVariable UUID eventId,
+            @PathVariable long position,
+            @RequestParam String token) {
+        return ResponseEntity.ok(waitingRoomService.getTicket(eventId, position, token));
+    }
+
+    @GetMapping(value = "/{eventId}/tickets/{position}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamQueueTicket(
+            @PathVariable UUID eventId,
+            @PathVariable long position,
+            @RequestParam String token) {
+        return waitingRoomService.subscribe(eventId, position, token);
+    }
+}
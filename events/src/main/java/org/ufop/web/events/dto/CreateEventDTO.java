@@ -14,4 +14,5 @@ public class CreateEventDTO {
     private Double price;
     private Integer totalTickets;
     private String imageUrl;
+    private Integer inventoryStripes;
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+package org.ufop.web.events.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventChangesDTO {
+    // Pass back as ?since= on the next poll
+    private String version;
+    // The since point was too old or from a previous run: changed holds the whole catalog
+    private Boolean fullResync;
+    private List<EventDTO> changed;
+    private List<UUID> deleted;
+}
@@ -25,4 +25,5 @@ public class EventDTO {
     private String status;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+    private Integer inventoryStripes;
 }
\ No newline at end of file
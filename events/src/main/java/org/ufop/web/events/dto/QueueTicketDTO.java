@@ -0,0 +1,24 @@
+package org.ufop.web.events.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueueTicketDTO {
+    private UUID eventId;
+    private Long position;
+    // Proves ownership of the position when polling
+    private String queueToken;
+    private Boolean admitted;
+    private Long ahead;
+    private Long estimatedWaitSeconds;
+    // Sent as X-Admission-Token on reservation requests once admitted
+    private String admissionToken;
+    private LocalDateTime admissionExpiresAt;
+}
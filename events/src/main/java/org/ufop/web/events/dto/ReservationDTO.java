@@ -0,0 +1,22 @@
+package org.ufop.web.events.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationDTO {
+    private UUID eventId;
+    private Integer quantity;
+    private Double unitPrice;
+    // Set when the tickets were placed on a timed hold instead of reserved outright
+    private UUID holdId;
+    // So the caller can describe the sale without looking the event up again
+    private String description;
+    private LocalDateTime eventDate;
+}
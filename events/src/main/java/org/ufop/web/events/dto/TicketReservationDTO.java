@@ -0,0 +1,21 @@
+package org.ufop.web.events.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TicketReservationDTO {
+    @NotNull
+    private UUID eventId;
+
+    @NotNull
+    @Positive
+    private Integer quantity;
+}
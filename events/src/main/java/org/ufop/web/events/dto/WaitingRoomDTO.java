@@ -0,0 +1,17 @@
+package org.ufop.web.events.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WaitingRoomDTO {
+    private UUID eventId;
+    private Integer ratePerSecond;
+    private Long issued;
+    private Long admitted;
+}
@@ -9,7 +9,11 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "events")
+@Table(name = "events", indexes = {
+        @Index(name = "idx_events_created_at_id", columnList = "createdAt, id"),
+        @Index(name = "idx_events_event_date", columnList = "eventDate"),
+        @Index(name = "idx_events_updated_at", columnList = "updatedAt")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -43,14 +47,21 @@ public class Event {
     @Column(nullable = false)
     private Integer totalTickets;
 
-    @Column(nullable = false)
+    // Owned by TicketInventoryLedger, which writes it back itself; saving a loaded entity
+    // must not put back a count the ledger has lowered since
+    @Column(nullable = false, updatable = false)
     private Integer availableTickets;
 
     @Column
     private String imageUrl;
 
+    // Number of striped sub-pools for flash sales; null or 1 keeps a single counter
+    @Column
+    private Integer inventoryStripes;
+
+    // Also written by the ledger (SOLD_OUT), so changes go through EventRepository.updateStatus
     @Enumerated(EnumType.STRING)
-    @Column(nullable = false)
+    @Column(nullable = false, updatable = false)
     private EventStatus status = EventStatus.ACTIVE;
 
     @Column(nullable = false)
@@ -0,0 +1,28 @@
+package org.ufop.web.events.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Marker left behind by a deleted event so change pollers can learn about the delete.
+ */
+@Entity
+@Table(name = "event_tombstones", indexes = {
+        @Index(name = "idx_event_tombstones_deleted_at", columnList = "deletedAt")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventTombstone {
+
+    @Id
+    private UUID eventId;
+
+    @Column(nullable = false)
+    private LocalDateTime deletedAt;
+}
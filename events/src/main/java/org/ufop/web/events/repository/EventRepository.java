@@ -1,11 +1,16 @@
 package org.ufop.web.events.repository;
 
 import org.ufop.web.events.model.Event;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -14,12 +19,26 @@ public interface EventRepository extends JpaRepository<Event, UUID> {
 
     List<Event> findByStatus(Event.EventStatus status);
 
+    List<Event> findByStatusIn(Collection<Event.EventStatus> statuses);
+
+    @Query("SELECT e FROM Event e ORDER BY e.createdAt, e.id")
+    List<Event> findFirstPage(Pageable pageable);
+
+    @Query("SELECT e FROM Event e " +
+            "WHERE e.createdAt > :createdAt OR (e.createdAt = :createdAt AND e.id > :id) " +
+            "ORDER BY e.createdAt, e.id")
+    List<Event> findPageAfter(@Param("createdAt") LocalDateTime createdAt,
+                              @Param("id") UUID id,
+                              Pageable pageable);
+
     List<Event> findByCategory(String category);
 
     List<Event> findByEventDateAfter(LocalDateTime date);
 
     List<Event> findByEventDateBetween(LocalDateTime start, LocalDateTime end);
 
+    List<Event> findByUpdatedAtAfter(LocalDateTime since);
+
     List<Event> findByLocationContainingIgnoreCase(String location);
 
     List<Event> findByTitleContainingIgnoreCase(String title);
@@ -32,4 +51,25 @@ public interface EventRepository extends JpaRepository<Event, UUID> {
 
     @Query("SELECT e.category, COUNT(e) FROM Event e GROUP BY e.category")
     List<Object[]> countEventsByCategory();
+
+    @Modifying
+    @Query("UPDATE Event e SET e.availableTickets = :available, " +
+            "e.status = CASE " +
+            "WHEN :available = 0 AND e.status = org.ufop.web.events.model.Event$EventStatus.ACTIVE " +
+            "THEN org.ufop.web.events.model.Event$EventStatus.SOLD_OUT " +
+            "WHEN :available > 0 AND e.status = org.ufop.web.events.model.Event$EventStatus.SOLD_OUT " +
+            "THEN org.ufop.web.events.model.Event$EventStatus.ACTIVE " +
+            "ELSE e.status END, " +
+            "e.updatedAt = :updatedAt " +
+            "WHERE e.id = :id")
+    int updateInventory(@Param("id") UUID id,
+                        @Param("available") int available,
+                        @Param("updatedAt") LocalDateTime updatedAt);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Event e SET e.status = :status, e.updatedAt = :updatedAt WHERE e.id = :id")
+    int updateStatus(@Param("id") UUID id,
+                     @Param("status") Event.EventStatus status,
+                     @Param("updatedAt") LocalDateTime updatedAt);
 }
\ No newline at end of file
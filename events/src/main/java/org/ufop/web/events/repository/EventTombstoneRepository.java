@@ -0,0 +1,22 @@
+package org.ufop.web.events.repository;
+
+import org.ufop.web.events.model.EventTombstone;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface EventTombstoneRepository extends JpaRepository<EventTombstone, UUID> {
+
+    List<EventTombstone> findByDeletedAtAfter(LocalDateTime since);
+
+    @Modifying
+    @Query("DELETE FROM EventTombstone t WHERE t.deletedAt < :before")
+    int deleteOlderThan(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,27 @@
+package org.ufop.web.events.repository;
+
+import org.ufop.web.events.model.TicketHold;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface TicketHoldRepository extends JpaRepository<TicketHold, UUID> {
+
+    List<TicketHold> findByStatus(TicketHold.HoldStatus status);
+
+    @Modifying
+    @Query("UPDATE TicketHold h SET h.status = :to, h.updatedAt = :updatedAt " +
+            "WHERE h.id IN :ids AND h.status = :from")
+    int updateStatus(@Param("ids") Collection<UUID> ids,
+                     @Param("from") TicketHold.HoldStatus from,
+                     @Param("to") TicketHold.HoldStatus to,
+                     @Param("updatedAt") LocalDateTime updatedAt);
+}
@@ -0,0 +1,128 @@
+package org.ufop.web.events.service;
+
+import org.ufop.web.events.dto.EventDTO;
+import org.ufop.web.events.model.Event;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache of the catalog list queries, one immutable snapshot per query shape.
+ * <p>
+ * Snapshots are keyed by shape ({@code all}, {@code available} and
+ * {@code category:<name>}) and hold DTOs as they were when the snapshot was built. Ticket
+ * availability is deliberately not part of what a snapshot vouches for: callers overlay
+ * the live ledger count on read, so reservations and releases never invalidate anything.
+ * Writes that change catalog data evict exactly the shapes the event belonged to before
+ * and after the change.
+ * <p>
+ * The DTOs in a snapshot are shared between readers and must not be modified.
+ */
+@Component
+public class EventCatalogCache {
+
+    public static final String ALL = "all";
+    public static final String AVAILABLE = "available";
+    private static final String CATEGORY_PREFIX = "category:";
+
+    private final ConcurrentHashMap<String, List<EventDTO>> snapshots = new ConcurrentHashMap<>();
+    // Bumped by every invalidation so a rebuild that raced with a write is not kept
+    private final AtomicLong generation = new AtomicLong();
+    private final MeterRegistry meterRegistry;
+
+    public EventCatalogCache(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        meterRegistry.gaugeMapSize("events.catalog.cache.size", List.of(), snapshots);
+    }
+
+    public static String category(String category) {
+        return CATEGORY_PREFIX + category;
+    }
+
+    public List<EventDTO> get(String key, Supplier<List<EventDTO>> loader) {
+        String shape = shapeOf(key);
+        List<EventDTO> snapshot = snapshots.get(key);
+        if (snapshot != null) {
+            counter(shape, "hit").increment();
+            return snapshot;
+        }
+        counter(shape, "miss").increment();
+
+        long startGeneration = generation.get();
+        List<EventDTO> rebuilt = Timer.builder("events.catalog.cache.rebuild")
+                .tag("shape", shape)
+                .register(meterRegistry)
+                .record(() -> List.copyOf(loader.get()));
+
+        // Unknown categories are not kept, otherwise arbitrary lookups would grow the cache
+        if (rebuilt.isEmpty() && key.startsWith(CATEGORY_PREFIX)) {
+            return rebuilt;
+        }
+
+        snapshots.put(key, rebuilt);
+        if (generation.get() != startGeneration) {
+            // A write landed while we were loading; our copy may predate it
+            snapshots.remove(key, rebuilt);
+        }
+        return rebuilt;
+    }
+
+    /**
+     * Evicts every shape the event belonged to before or after a write. Either side may be
+     * {@code null} for creates and deletes.
+     */
+    public void invalidate(Footprint before, Footprint after) {
+        Set<String> keys = new HashSet<>();
+        keys.add(ALL);
+        for (Footprint footprint : new Footprint[]{before, after}) {
+            if (footprint == null) {
+                continue;
+            }
+            keys.add(category(footprint.category()));
+            if (footprint.listable()) {
+                keys.add(AVAILABLE);
+            }
+        }
+
+        generation.incrementAndGet();
+        keys.forEach(snapshots::remove);
+    }
+
+    private Counter counter(String shape, String result) {
+        return Counter.builder("events.catalog.cache.requests")
+                .tag("shape", shape)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static String shapeOf(String key) {
+        return key.startsWith(CATEGORY_PREFIX) ? "category" : key;
+    }
+
+    /**
+     * The attributes of an event that decide which list queries it shows up in.
+     */
+    public record Footprint(String category, Event.EventStatus status) {
+
+        public static Footprint of(Event event) {
+            return new Footprint(event.getCategory(), event.getStatus());
+        }
+
+        /**
+         * ACTIVE and SOLD_OUT events can move in and out of the available list as tickets
+         * are reserved and released, so the available snapshot holds both and callers
+         * filter on live availability.
+         */
+        boolean listable() {
+            return status == Event.EventStatus.ACTIVE || status == Event.EventStatus.SOLD_OUT;
+        }
+    }
+}
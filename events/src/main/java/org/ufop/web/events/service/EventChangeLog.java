@@ -0,0 +1,155 @@
+package org.ufop.web.events.service;
+
+import org.ufop.web.events.model.EventTombstone;
+import org.ufop.web.events.repository.EventTombstoneRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version counter for the event catalog and the record of what changed at each version.
+ * <p>
+ * Every catalog write, and every inventory write-back from the ledger, bumps the version
+ * and remembers it as the latest change of the events involved. Versions are only
+ * meaningful within one run, so they are qualified with a random boot id; the resulting
+ * token doubles as the catalog ETag. Deletes additionally leave a persistent tombstone so
+ * pollers that track {@code updatedAt} instead of versions see them too.
+ */
+@Component
+@Slf4j
+public class EventChangeLog {
+
+    private final String bootId = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+    private final AtomicLong version = new AtomicLong();
+    // Guarded by this: each event's latest change, and the same indexed by version
+    private final Map<UUID, Long> latestChange = new HashMap<>();
+    private final TreeMap<Long, Set<UUID>> changesByVersion = new TreeMap<>();
+    private final Set<UUID> deleted = ConcurrentHashMap.newKeySet();
+
+    private final EventTombstoneRepository tombstoneRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration tombstoneRetention;
+
+    public EventChangeLog(EventTombstoneRepository tombstoneRepository,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${events.changes.tombstone-retention-days:30}") long tombstoneRetentionDays) {
+        this.tombstoneRepository = tombstoneRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.tombstoneRetention = Duration.ofDays(tombstoneRetentionDays);
+    }
+
+    /**
+     * The current catalog version, formatted as an ETag value.
+     */
+    public String etag() {
+        return "\"" + token(version.get()) + "\"";
+    }
+
+    /**
+     * The version of {@code eventId}'s latest change, formatted as an ETag value; events
+     * not changed during this run are all at version 0.
+     */
+    public synchronized String etag(UUID eventId) {
+        return "\"" + token(latestChange.getOrDefault(eventId, 0L)) + "\"";
+    }
+
+    public void record(UUID eventId) {
+        recordAll(List.of(eventId));
+    }
+
+    public synchronized void recordAll(Collection<UUID> eventIds) {
+        if (eventIds.isEmpty()) {
+            return;
+        }
+        long current = version.incrementAndGet();
+        Set<UUID> changed = new HashSet<>(eventIds);
+        for (UUID eventId : changed) {
+            Long previous = latestChange.put(eventId, current);
+            if (previous != null) {
+                Set<UUID> superseded = changesByVersion.get(previous);
+                superseded.remove(eventId);
+                if (superseded.isEmpty()) {
+                    changesByVersion.remove(previous);
+                }
+            }
+        }
+        changesByVersion.put(current, changed);
+    }
+
+    public void recordDeleted(UUID eventId) {
+        tombstoneRepository.save(new EventTombstone(eventId, LocalDateTime.now()));
+        deleted.add(eventId);
+        record(eventId);
+    }
+
+    /**
+     * Events changed after the version in {@code token}, split into live and deleted ids,
+     * or {@code null} if the token is from another run and cannot be compared.
+     */
+    public synchronized Delta since(String token) {
+        int separator = token.indexOf('.');
+        if (separator < 0 || !bootId.equals(token.substring(0, separator))) {
+            return null;
+        }
+        long since;
+        try {
+            since = Long.parseLong(token.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid version: " + token);
+        }
+
+        List<UUID> changed = new ArrayList<>();
+        List<UUID> removed = new ArrayList<>();
+        for (Set<UUID> eventIds : changesByVersion.tailMap(since, false).values()) {
+            for (UUID eventId : eventIds) {
+                (deleted.contains(eventId) ? removed : changed).add(eventId);
+            }
+        }
+        return new Delta(token(version.get()), changed, removed);
+    }
+
+    public synchronized String currentVersion() {
+        return token(version.get());
+    }
+
+    /**
+     * Whether tombstones going back to {@code since} are still kept.
+     */
+    public boolean covers(LocalDateTime since) {
+        return since.isAfter(LocalDateTime.now().minus(tombstoneRetention));
+    }
+
+    @Scheduled(fixedDelay = 3_600_000)
+    public void pruneTombstones() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(tombstoneRetention);
+        Integer pruned = transactionTemplate.execute(status -> tombstoneRepository.deleteOlderThan(cutoff));
+        if (pruned != null && pruned > 0) {
+            log.info("Pruned {} event tombstones older than {}", pruned, cutoff);
+        }
+    }
+
+    private String token(long version) {
+        return bootId + "." + version;
+    }
+
+    public record Delta(String version, List<UUID> changed, List<UUID> deleted) {
+    }
+}
@@ -0,0 +1,528 @@
+package org.ufop.web.events.service;
+
+import org.ufop.web.events.dto.EventDTO;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index over event title, location, category and description.
+ * <p>
+ * Text is lowercased, stripped of accents and split into tokens. Terms live in a sorted
+ * map so a partially typed word is a range scan, and every term is also indexed by its
+ * trigrams so misspelled words can still find near matches. A query matches an event
+ * when every query word matches one of its terms; events are ranked by how well each
+ * word matched (exact, then prefix, then fuzzy) weighted by the field it matched in.
+ * <p>
+ * Events are numbered internally and postings are sorted {@code int} arrays, so scoring
+ * a query is a few passes over primitive arrays into pooled scratch space with no
+ * per-candidate allocation. The index is updated in place on every event write and holds
+ * the last DTO written, so a search never touches the database.
+ */
+@Component
+public class EventSearchIndex {
+
+    public static final int TITLE = 1;
+    public static final int LOCATION = 1 << 1;
+    public static final int CATEGORY = 1 << 2;
+    public static final int DESCRIPTION = 1 << 3;
+    public static final int ALL_FIELDS = TITLE | LOCATION | CATEGORY | DESCRIPTION;
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final float EXACT = 1.0f;
+    private static final float PREFIX = 0.6f;
+    private static final float FUZZY = 0.3f;
+    // Bounds the work a one-letter prefix can cause on a large catalog
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    private static final int MAX_FUZZY_CANDIDATES = 256;
+    private static final int MIN_FUZZY_LENGTH = 3;
+
+    private static final float[] FIELD_WEIGHTS = new float[ALL_FIELDS + 1];
+
+    static {
+        for (int fields = 0; fields <= ALL_FIELDS; fields++) {
+            FIELD_WEIGHTS[fields] = ((fields & TITLE) != 0 ? 3 : 0)
+                    + ((fields & CATEGORY) != 0 ? 2 : 0)
+                    + ((fields & LOCATION) != 0 ? 2 : 0)
+                    + ((fields & DESCRIPTION) != 0 ? 1 : 0);
+        }
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Scoring runs on the CPU without blocking, so about one scratch per core is ever in use;
+    // a pool rather than a ThreadLocal keeps that true under virtual threads
+    private final ArrayBlockingQueue<Scratch> scratchPool =
+            new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors());
+
+    private final Map<UUID, Integer> ordinals = new HashMap<>();
+    private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+    private Document[] documents = new Document[1024];
+    private int nextOrdinal;
+
+    private final TreeMap<String, Posting> postings = new TreeMap<>();
+    private final Map<String, Set<String>> trigrams = new HashMap<>();
+
+    public void index(EventDTO event) {
+        Map<String, Integer> terms = new HashMap<>();
+        addTerms(terms, event.getTitle(), TITLE);
+        addTerms(terms, event.getLocation(), LOCATION);
+        addTerms(terms, event.getCategory(), CATEGORY);
+        addTerms(terms, event.getDescription(), DESCRIPTION);
+
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinals.get(event.getId());
+            if (ordinal != null) {
+                unlink(ordinal, documents[ordinal]);
+            } else {
+                ordinal = allocateOrdinal();
+                ordinals.put(event.getId(), ordinal);
+            }
+            documents[ordinal] = new Document(event, normalize(event.getCategory()), terms.keySet());
+
+            int doc = ordinal;
+            terms.forEach((term, fields) -> {
+                Posting posting = postings.get(term);
+                if (posting == null) {
+                    posting = new Posting();
+                    postings.put(term, posting);
+                    for (String gram : trigramsOf(term)) {
+                        trigrams.computeIfAbsent(gram, g -> new HashSet<>()).add(term);
+                    }
+                }
+                posting.put(doc, fields);
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(UUID eventId) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinals.remove(eventId);
+            if (ordinal != null) {
+                unlink(ordinal, documents[ordinal]);
+                documents[ordinal] = null;
+                freeOrdinals.push(ordinal);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            ordinals.clear();
+            freeOrdinals.clear();
+            Arrays.fill(documents, null);
+            nextOrdinal = 0;
+            postings.clear();
+            trigrams.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ranks events matching every word of {@code query} in the given {@code fields}.
+     *
+     * @param category optional exact (case and accent insensitive) category filter
+     * @return at most {@code limit} events, best match first
+     */
+    public List<EventDTO> search(String query, int fields, String category, int limit) {
+        List<String> words = tokenize(query);
+        String categoryFilter = category != null ? normalize(category) : null;
+
+        Scratch scores = null;
+        lock.readLock().lock();
+        try {
+            if (words.isEmpty()) {
+                return browse(categoryFilter, limit);
+            }
+
+            List<List<Match>> matches = new ArrayList<>(words.size());
+            for (String word : words) {
+                List<Match> wordMatches = match(word);
+                if (wordMatches.isEmpty()) {
+                    return List.of();
+                }
+                matches.add(wordMatches);
+            }
+            // A document has to match every word, so scanning the rarest word first lets
+            // the later passes skip everything it did not hit
+            matches.sort(Comparator.comparingInt(EventSearchIndex::postingsSize));
+
+            scores = scratchPool.poll();
+            scores = (scores != null ? scores : new Scratch()).prepare(nextOrdinal);
+            for (int word = 0; word < matches.size(); word++) {
+                for (Match match : matches.get(word)) {
+                    scores.accumulate(word, match.posting(), fields, match.quality());
+                }
+            }
+
+            // Every full match is in the rarest word's postings, so that is all we walk
+            PriorityQueue<Hit> top = new PriorityQueue<>(Comparator.comparingDouble(Hit::score));
+            for (Match match : matches.get(0)) {
+                Posting posting = match.posting();
+                for (int i = 0; i < posting.size; i++) {
+                    int doc = posting.docs[i];
+                    if (!scores.claimComplete(doc, matches.size())) {
+                        continue;
+                    }
+                    float score = scores.total[doc];
+                    if (top.size() == limit && score <= top.peek().score()) {
+                        continue;
+                    }
+                    Document document = documents[doc];
+                    if (categoryFilter != null && !categoryFilter.equals(document.category())) {
+                        continue;
+                    }
+                    top.add(new Hit(document.event(), score));
+                    if (top.size() > limit) {
+                        top.poll();
+                    }
+                }
+            }
+
+            List<EventDTO> results = new ArrayList<>(top.size());
+            while (!top.isEmpty()) {
+                results.add(top.poll().event());
+            }
+            Collections.reverse(results);
+            return results;
+        } finally {
+            lock.readLock().unlock();
+            if (scores != null) {
+                // Dropped if the pool is full
+                scratchPool.offer(scores);
+            }
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : SEPARATORS.split(normalize(text))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private List<EventDTO> browse(String categoryFilter, int limit) {
+        List<EventDTO> results = new ArrayList<>();
+        for (int doc = 0; doc < nextOrdinal && results.size() < limit; doc++) {
+            Document document = documents[doc];
+            if (document != null && (categoryFilter == null || categoryFilter.equals(document.category()))) {
+                results.add(document.event());
+            }
+        }
+        return results;
+    }
+
+    private List<Match> match(String word) {
+        List<Match> matches = new ArrayList<>();
+
+        Posting exact = postings.get(word);
+        if (exact != null) {
+            matches.add(new Match(exact, EXACT));
+        }
+
+        int expansions = 0;
+        for (Map.Entry<String, Posting> entry
+                : postings.subMap(word, false, word + Character.MAX_VALUE, false).entrySet()) {
+            if (++expansions > MAX_PREFIX_EXPANSIONS) {
+                break;
+            }
+            // "roc" is a better match for "rock" than for "rockabilly"
+            float closeness = (float) word.length() / entry.getKey().length();
+            matches.add(new Match(entry.getValue(), PREFIX * (0.5f + 0.5f * closeness)));
+        }
+
+        if (matches.isEmpty() && word.length() >= MIN_FUZZY_LENGTH) {
+            for (String term : fuzzyCandidates(word)) {
+                int distance = editDistance(word, term, maxEdits(word));
+                if (distance >= 0) {
+                    matches.add(new Match(postings.get(term), FUZZY / (1 + distance)));
+                }
+            }
+        }
+        return matches;
+    }
+
+    private Set<String> fuzzyCandidates(String word) {
+        Set<String> grams = trigramsOf(word);
+        Map<String, Integer> shared = new HashMap<>();
+        for (String gram : grams) {
+            Set<String> terms = trigrams.get(gram);
+            if (terms != null) {
+                for (String term : terms) {
+                    shared.merge(term, 1, Integer::sum);
+                }
+            }
+        }
+
+        // Each edit destroys at most three trigrams
+        int required = Math.max(1, grams.size() - 3 * maxEdits(word));
+        Set<String> candidates = new HashSet<>();
+        for (Map.Entry<String, Integer> entry : shared.entrySet()) {
+            if (entry.getValue() >= required) {
+                candidates.add(entry.getKey());
+                if (candidates.size() == MAX_FUZZY_CANDIDATES) {
+                    break;
+                }
+            }
+        }
+        return candidates;
+    }
+
+    private static int postingsSize(List<Match> matches) {
+        int size = 0;
+        for (Match match : matches) {
+            size += match.posting().size;
+        }
+        return size;
+    }
+
+    private static int maxEdits(String word) {
+        return word.length() <= 5 ? 1 : 2;
+    }
+
+    /**
+     * Edit distance counting a swap of adjacent letters as one edit (optimal string
+     * alignment), or -1 as soon as it is known to exceed {@code max}.
+     */
+    private static int editDistance(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max) {
+            return -1;
+        }
+        int[] beforePrevious = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int distance = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    distance = Math.min(distance, beforePrevious[j - 2] + 1);
+                }
+                current[j] = distance;
+                rowMin = Math.min(rowMin, distance);
+            }
+            if (rowMin > max) {
+                return -1;
+            }
+            int[] recycled = beforePrevious;
+            beforePrevious = previous;
+            previous = current;
+            current = recycled;
+        }
+        return previous[b.length()] <= max ? previous[b.length()] : -1;
+    }
+
+    private static Set<String> trigramsOf(String term) {
+        String padded = "$" + term + "$";
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    private static void addTerms(Map<String, Integer> terms, String text, int field) {
+        for (String token : tokenize(text)) {
+            terms.merge(token, field, (a, b) -> a | b);
+        }
+    }
+
+    private int allocateOrdinal() {
+        Integer free = freeOrdinals.poll();
+        if (free != null) {
+            return free;
+        }
+        if (nextOrdinal == documents.length) {
+            documents = Arrays.copyOf(documents, documents.length * 2);
+        }
+        return nextOrdinal++;
+    }
+
+    private void unlink(int doc, Document document) {
+        for (String term : document.terms()) {
+            Posting posting = postings.get(term);
+            if (posting == null) {
+                continue;
+            }
+            posting.remove(doc);
+            if (posting.size == 0) {
+                postings.remove(term);
+                for (String gram : trigramsOf(term)) {
+                    Set<String> terms = trigrams.get(gram);
+                    if (terms != null && terms.remove(term) && terms.isEmpty()) {
+                        trigrams.remove(gram);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Documents containing one term, as ascending ordinals with the fields the term
+     * occurs in alongside.
+     */
+    private static final class Posting {
+        private int[] docs = new int[4];
+        private byte[] fields = new byte[4];
+        private int size;
+
+        void put(int doc, int fieldMask) {
+            int index = Arrays.binarySearch(docs, 0, size, doc);
+            if (index >= 0) {
+                fields[index] = (byte) fieldMask;
+                return;
+            }
+            index = -index - 1;
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                fields = Arrays.copyOf(fields, size * 2);
+            }
+            System.arraycopy(docs, index, docs, index + 1, size - index);
+            System.arraycopy(fields, index, fields, index + 1, size - index);
+            docs[index] = doc;
+            fields[index] = (byte) fieldMask;
+            size++;
+        }
+
+        void remove(int doc) {
+            int index = Arrays.binarySearch(docs, 0, size, doc);
+            if (index >= 0) {
+                System.arraycopy(docs, index + 1, docs, index, size - index - 1);
+                System.arraycopy(fields, index + 1, fields, index, size - index - 1);
+                size--;
+            }
+        }
+    }
+
+    /**
+     * Score accumulators indexed by ordinal, used by one query at a time. Entries are only valid when their
+     * stamp equals the current query's, which saves clearing the arrays between queries.
+     */
+    private static final class Scratch {
+        private int[] stamps = new int[0];
+        private int[] matchedWords = new int[0];
+        private float[] best = new float[0];
+        private float[] total = new float[0];
+        private int stamp;
+
+        Scratch prepare(int capacity) {
+            if (stamps.length < capacity) {
+                int length = Math.max(capacity, stamps.length * 2);
+                stamps = Arrays.copyOf(stamps, length);
+                matchedWords = new int[length];
+                best = new float[length];
+                total = new float[length];
+            }
+            if (++stamp == Integer.MAX_VALUE) {
+                Arrays.fill(stamps, 0);
+                stamp = 1;
+            }
+            return this;
+        }
+
+        /**
+         * Credits {@code word} to every document in {@code posting} that matched all the
+         * words before it, keeping only the best-scoring term per word.
+         */
+        void accumulate(int word, Posting posting, int fieldMask, float quality) {
+            for (int i = 0; i < posting.size; i++) {
+                int matched = posting.fields[i] & fieldMask;
+                if (matched == 0) {
+                    continue;
+                }
+                int doc = posting.docs[i];
+                float score = quality * FIELD_WEIGHTS[matched];
+                if (stamps[doc] != stamp) {
+                    if (word == 0) {
+                        stamps[doc] = stamp;
+                        matchedWords[doc] = 1;
+                        best[doc] = score;
+                        total[doc] = score;
+                    }
+                } else if (matchedWords[doc] == word) {
+                    matchedWords[doc] = word + 1;
+                    best[doc] = score;
+                    total[doc] += score;
+                } else if (matchedWords[doc] == word + 1 && score > best[doc]) {
+                    total[doc] += score - best[doc];
+                    best[doc] = score;
+                }
+            }
+        }
+
+        /**
+         * Returns true once for each document that matched all {@code words}.
+         */
+        boolean claimComplete(int doc, int words) {
+            if (stamps[doc] != stamp || matchedWords[doc] != words) {
+                return false;
+            }
+            matchedWords[doc] = words + 1;
+            return true;
+        }
+    }
+
+    private record Document(EventDTO event, String category, Set<String> terms) {
+    }
+
+    private record Match(Posting posting, float quality) {
+    }
+
+    private record Hit(EventDTO event, float score) {
+    }
+}
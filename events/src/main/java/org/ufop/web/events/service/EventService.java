@@ -1,22 +1,60 @@
 package org.ufop.web.events.service;
 
 import org.ufop.web.events.dto.CreateEventDTO;
+import org.ufop.web.events.dto.EventChangesDTO;
 import org.ufop.web.events.dto.EventDTO;
+import org.ufop.web.events.dto.PageCursor;
+import org.ufop.web.events.dto.PageDTO;
+import org.ufop.web.events.dto.ReservationDTO;
+import org.ufop.web.events.dto.TicketHoldDTO;
+import org.ufop.web.events.dto.TicketReservationDTO;
 import org.ufop.web.events.model.Event;
+import org.ufop.web.events.model.EventTombstone;
 import org.ufop.web.events.repository.EventRepository;
+import org.ufop.web.events.repository.EventTombstoneRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.time.DayOfWeek;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class EventService {
 
+    public static final int MAX_PAGE_SIZE = 500;
+    public static final int MAX_BATCH_SIZE = 500;
+    private static final int STREAM_BATCH_SIZE = 500;
+
     private final EventRepository eventRepository;
+    private final EventTombstoneRepository tombstoneRepository;
+    private final TicketInventoryLedger inventoryLedger;
+    private final TicketHoldService ticketHoldService;
+    private final EventCatalogCache catalogCache;
+    private final EventSearchIndex searchIndex;
+    private final EventTimeIndex timeIndex;
+    private final EventChangeLog changeLog;
 
     public EventDTO createEvent(CreateEventDTO dto) {
         Event event = new Event();
@@ -30,49 +68,128 @@ public class EventService {
         event.setTotalTickets(dto.getTotalTickets());
         event.setAvailableTickets(dto.getTotalTickets());
         event.setImageUrl(dto.getImageUrl());
+        event.setInventoryStripes(dto.getInventoryStripes());
         event.setStatus(Event.EventStatus.ACTIVE);
 
         Event savedEvent = eventRepository.save(event);
-        return convertToDTO(savedEvent);
+        catalogCache.invalidate(null, EventCatalogCache.Footprint.of(savedEvent));
+        return indexed(convertToDTO(savedEvent));
     }
 
     public List<EventDTO> getAllEvents() {
-        return eventRepository.findAll()
+        return catalogCache.get(EventCatalogCache.ALL, () -> convertAll(eventRepository.findAll()))
                 .stream()
-                .map(this::convertToDTO)
+                .map(this::withLiveInventory)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * One page of all events ordered by creation time, continuing after {@code cursor}.
+     */
+    public PageDTO<EventDTO> getEventsPage(String cursor, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        List<Event> events = findPage(PageCursor.decode(cursor), limit);
+        String nextCursor = events.size() == limit ? cursorAfter(events).encode() : null;
+        return new PageDTO<>(convertAll(events), nextCursor);
+    }
+
+    /**
+     * Feeds every event to {@code sink} in creation order, reading the table in small keyset
+     * batches so memory use does not grow with the number of events.
+     */
+    public void forEachEvent(Consumer<EventDTO> sink) {
+        PageCursor cursor = null;
+        List<Event> batch;
+        do {
+            batch = findPage(cursor, STREAM_BATCH_SIZE);
+            batch.forEach(event -> sink.accept(convertToDTO(event)));
+            if (!batch.isEmpty()) {
+                cursor = cursorAfter(batch);
+            }
+        } while (batch.size() == STREAM_BATCH_SIZE);
+    }
+
     public EventDTO getEventById(UUID id) {
         Event event = eventRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Event not found"));
         return convertToDTO(event);
     }
 
+    /**
+     * The events with the given ids, in no particular order. Unknown ids are skipped rather
+     * than failing the whole batch, so callers join on id.
+     */
+    public List<EventDTO> getEventsByIds(Collection<UUID> ids) {
+        if (ids.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("At most " + MAX_BATCH_SIZE + " ids per batch");
+        }
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return convertAll(eventRepository.findAllById(new HashSet<>(ids)));
+    }
+
     public List<EventDTO> getAvailableEvents() {
-        return eventRepository.findAvailableEvents()
+        // The snapshot also holds sold-out events so reservations never invalidate it
+        return catalogCache.get(EventCatalogCache.AVAILABLE, () -> convertAll(eventRepository.findByStatusIn(
+                        EnumSet.of(Event.EventStatus.ACTIVE, Event.EventStatus.SOLD_OUT))))
                 .stream()
-                .map(this::convertToDTO)
+                .map(this::withLiveInventory)
+                .filter(event -> event.getAvailableTickets() > 0 && Event.EventStatus.ACTIVE.name().equals(event.getStatus()))
                 .collect(Collectors.toList());
     }
 
     public List<EventDTO> getEventsByCategory(String category) {
-        return eventRepository.findByCategory(category)
+        return catalogCache.get(EventCatalogCache.category(category), () -> convertAll(eventRepository.findByCategory(category)))
                 .stream()
-                .map(this::convertToDTO)
+                .map(this::withLiveInventory)
                 .collect(Collectors.toList());
     }
 
     public List<EventDTO> getUpcomingEvents() {
-        return eventRepository.findByEventDateAfter(LocalDateTime.now())
+        return getEventsInRange(LocalDateTime.now(), null, null, null);
+    }
+
+    /**
+     * Events dated after {@code from} and up to {@code to}, in date order. Every argument
+     * is optional.
+     */
+    public List<EventDTO> getEventsInRange(LocalDateTime from, LocalDateTime to, String category, Event.EventStatus status) {
+        if (from != null && to != null && to.isBefore(from)) {
+            throw new IllegalArgumentException("Range end must not be before its start");
+        }
+
+        return timeIndex.range(from, to, category, status)
                 .stream()
-                .map(this::convertToDTO)
+                .map(this::withLiveInventory)
+                // ACTIVE and SOLD_OUT share a bucket; only live availability tells them apart
+                .filter(event -> status == null || status.name().equals(event.getStatus()))
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Events from now until the end of this weekend, or over the next weekend on weekdays.
+     */
+    public List<EventDTO> getWeekendEvents(String category) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime saturday = now.toLocalDate()
+                .with(TemporalAdjusters.previousOrSame(DayOfWeek.SATURDAY))
+                .atStartOfDay();
+        if (now.getDayOfWeek() != DayOfWeek.SATURDAY && now.getDayOfWeek() != DayOfWeek.SUNDAY) {
+            saturday = now.toLocalDate().with(TemporalAdjusters.next(DayOfWeek.SATURDAY)).atStartOfDay();
+        }
+        LocalDateTime from = saturday.isAfter(now) ? saturday : now;
+        // The range end is inclusive, so stop just short of Monday midnight
+        return getEventsInRange(from, saturday.plusDays(2).minusNanos(1), category, null);
+    }
+
     public EventDTO updateEvent(UUID id, CreateEventDTO dto) {
         Event event = eventRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Event not found"));
+        EventCatalogCache.Footprint before = EventCatalogCache.Footprint.of(event);
 
         event.setTitle(dto.getTitle());
         event.setDescription(dto.getDescription());
@@ -82,75 +199,276 @@ public class EventService {
         event.setEndDate(dto.getEndDate());
         event.setPrice(dto.getPrice());
 
-        // Update total tickets carefully
+        // Update total tickets carefully; the ledger owns the live available count
         if (!dto.getTotalTickets().equals(event.getTotalTickets())) {
             int ticketDifference = dto.getTotalTickets() - event.getTotalTickets();
             event.setTotalTickets(dto.getTotalTickets());
-            event.setAvailableTickets(event.getAvailableTickets() + ticketDifference);
+            event.setAvailableTickets(inventoryLedger.adjust(id, ticketDifference));
         }
 
         event.setImageUrl(dto.getImageUrl());
 
+        // Leaves availableTickets and status alone, the ledger writes those back itself
         Event updatedEvent = eventRepository.save(event);
-        return convertToDTO(updatedEvent);
+        catalogCache.invalidate(before, EventCatalogCache.Footprint.of(updatedEvent));
+        return indexed(convertToDTO(updatedEvent));
     }
 
     public EventDTO updateEventStatus(UUID id, Event.EventStatus status) {
         Event event = eventRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Event not found"));
-
-        event.setStatus(status);
+        EventCatalogCache.Footprint before = EventCatalogCache.Footprint.of(event);
 
         if (status == Event.EventStatus.SOLD_OUT) {
+            inventoryLedger.set(id, 0);
             event.setAvailableTickets(0);
         }
 
+        LocalDateTime now = LocalDateTime.now();
+        eventRepository.updateStatus(id, status, now);
+        event.setStatus(status);
+        event.setUpdatedAt(now);
+        catalogCache.invalidate(before, EventCatalogCache.Footprint.of(event));
+        return indexed(convertToDTO(event));
+    }
+
+    public EventDTO updateInventoryStripes(UUID id, int stripes) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("Stripes must be at least 1");
+        }
+
+        Event event = eventRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Event not found"));
+
+        event.setInventoryStripes(stripes > 1 ? stripes : null);
+        inventoryLedger.restripe(id, stripes);
+
         Event updatedEvent = eventRepository.save(event);
-        return convertToDTO(updatedEvent);
+        EventCatalogCache.Footprint footprint = EventCatalogCache.Footprint.of(updatedEvent);
+        catalogCache.invalidate(footprint, footprint);
+        return indexed(convertToDTO(updatedEvent));
     }
 
     public boolean reserveTickets(UUID eventId, int quantity) {
-        Event event = eventRepository.findById(eventId)
-                .orElseThrow(() -> new RuntimeException("Event not found"));
+        // SOLD_OUT is applied when the ledger writes the counter back; cached lists read
+        // availability from the ledger, so there is nothing to invalidate here
+        return inventoryLedger.reserve(eventId, quantity);
+    }
 
-        if (event.getAvailableTickets() < quantity) {
-            return false;
+    /**
+     * Reserves (or, with {@code holdTtlSeconds}, holds) tickets for several events at once.
+     * Either every line is reserved or none is; repeated events are merged.
+     *
+     * @return one entry per event with its current unit price, or {@code null} if any
+     * event does not have enough tickets left
+     */
+    public List<ReservationDTO> reserveTicketsBatch(List<TicketReservationDTO> items, Long holdTtlSeconds) {
+        if (items == null || items.isEmpty()) {
+            throw new IllegalArgumentException("At least one reservation is required");
         }
 
-        event.setAvailableTickets(event.getAvailableTickets() - quantity);
+        // Merges repeated events and keeps the response order deterministic
+        Map<UUID, Integer> quantities = new TreeMap<>();
+        for (TicketReservationDTO item : items) {
+            if (item.getEventId() == null || item.getQuantity() == null || item.getQuantity() < 1) {
+                throw new IllegalArgumentException("Each reservation needs an event ID and a positive quantity");
+            }
+            quantities.merge(item.getEventId(), item.getQuantity(), Integer::sum);
+        }
 
-        // Auto-update status if sold out
-        if (event.getAvailableTickets() == 0) {
-            event.setStatus(Event.EventStatus.SOLD_OUT);
+        Map<UUID, Event> events = eventRepository.findAllById(quantities.keySet())
+                .stream()
+                .collect(Collectors.toMap(Event::getId, Function.identity()));
+        if (events.size() != quantities.size()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Event not found");
+        }
+        for (Event event : events.values()) {
+            // SOLD_OUT may be stale until the ledger writes back, so only the counter decides those
+            if (event.getStatus() != Event.EventStatus.ACTIVE && event.getStatus() != Event.EventStatus.SOLD_OUT) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "Event " + event.getId() + " is " + event.getStatus());
+            }
         }
 
-        eventRepository.save(event);
-        return true;
+        List<ReservationDTO> reservations = new ArrayList<>(quantities.size());
+        if (holdTtlSeconds == null) {
+            if (!inventoryLedger.reserveAll(quantities)) {
+                return null;
+            }
+            quantities.forEach((eventId, quantity) -> reservations.add(
+                    reservation(events.get(eventId), quantity, null)));
+        } else {
+            List<TicketHoldDTO> holds = ticketHoldService.createHolds(quantities, holdTtlSeconds);
+            if (holds == null) {
+                return null;
+            }
+            for (TicketHoldDTO hold : holds) {
+                reservations.add(reservation(events.get(hold.getEventId()), hold.getQuantity(), hold.getId()));
+            }
+        }
+        return reservations;
+    }
+
+    private static ReservationDTO reservation(Event event, int quantity, UUID holdId) {
+        return new ReservationDTO(event.getId(), quantity, event.getPrice(), holdId,
+                event.getDescription(), event.getEventDate());
+    }
+
+    /**
+     * Validates the event and reserves (or, with {@code holdTtlSeconds}, holds) tickets in
+     * one step, returning the price they were reserved at.
+     *
+     * @return the reservation, or {@code null} if there are not enough tickets left
+     */
+    public ReservationDTO reserveAndQuote(UUID eventId, int quantity, Long holdTtlSeconds) {
+        List<ReservationDTO> reservations = reserveTicketsBatch(
+                List.of(new TicketReservationDTO(eventId, quantity)), holdTtlSeconds);
+        return reservations != null ? reservations.get(0) : null;
     }
 
     public void releaseTickets(UUID eventId, int quantity) {
-        Event event = eventRepository.findById(eventId)
+        // The write-back reactivates a SOLD_OUT event once tickets are available again
+        inventoryLedger.release(eventId, quantity);
+    }
+
+    public void deleteEvent(UUID id) {
+        Event event = eventRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Event not found"));
+        eventRepository.deleteById(id);
+        inventoryLedger.evict(id);
+        catalogCache.invalidate(EventCatalogCache.Footprint.of(event), null);
+        searchIndex.remove(id);
+        timeIndex.remove(id);
+        changeLog.recordDeleted(id);
+    }
 
-        event.setAvailableTickets(event.getAvailableTickets() + quantity);
+    /**
+     * Events created, updated or deleted since {@code since}, which is either a version
+     * returned by an earlier call (or an ETag) or an ISO timestamp compared against
+     * {@code updatedAt}. Falls back to the whole catalog when the change history no
+     * longer reaches back that far.
+     */
+    public EventChangesDTO getChangesSince(String since) {
+        if (since == null || since.isEmpty()) {
+            throw new IllegalArgumentException("since is required");
+        }
+        String token = since.replace("\"", "");
 
-        // If tickets were released and event was sold out, make it active again
-        if (event.getStatus() == Event.EventStatus.SOLD_OUT && event.getAvailableTickets() > 0) {
-            event.setStatus(Event.EventStatus.ACTIVE);
+        LocalDateTime sinceTime = null;
+        try {
+            sinceTime = LocalDateTime.parse(token);
+        } catch (DateTimeParseException e) {
+            // Not a timestamp, so a version
         }
 
-        eventRepository.save(event);
+        if (sinceTime == null) {
+            EventChangeLog.Delta delta = changeLog.since(token);
+            if (delta == null) {
+                return fullResync();
+            }
+            List<EventDTO> changed = convertAll(eventRepository.findAllById(delta.changed()));
+            return new EventChangesDTO(delta.version(), false, changed, delta.deleted());
+        }
+
+        if (!changeLog.covers(sinceTime)) {
+            return fullResync();
+        }
+        // Read the version first so nothing that lands during the queries is skipped next time
+        String version = changeLog.currentVersion();
+        List<EventDTO> changed = convertAll(eventRepository.findByUpdatedAtAfter(sinceTime));
+        List<UUID> deleted = tombstoneRepository.findByDeletedAtAfter(sinceTime)
+                .stream()
+                .map(EventTombstone::getEventId)
+                .collect(Collectors.toList());
+        return new EventChangesDTO(version, false, changed, deleted);
     }
 
-    public void deleteEvent(UUID id) {
-        if (!eventRepository.existsById(id)) {
-            throw new RuntimeException("Event not found");
+    private EventChangesDTO fullResync() {
+        String version = changeLog.currentVersion();
+        return new EventChangesDTO(version, true, getAllEvents(), List.of());
+    }
+
+    /**
+     * Ranked search over title, location, category and description. {@code query} matches
+     * any of those fields; {@code title} and {@code location} only match their own field.
+     * Every word has to match, either exactly, as a prefix or, failing both, approximately.
+     */
+    public List<EventDTO> searchEvents(String query, String title, String location, String category, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be at least 1");
         }
-        eventRepository.deleteById(id);
+
+        List<EventDTO> results;
+        if (title == null && location == null) {
+            results = searchIndex.search(query, EventSearchIndex.ALL_FIELDS, category, limit);
+        } else {
+            // Field-restricted words are combined by intersecting ids, keeping the first ranking
+            results = null;
+            if (query != null) {
+                results = searchIndex.search(query, EventSearchIndex.ALL_FIELDS, category, Integer.MAX_VALUE);
+            }
+            if (title != null) {
+                results = retain(results, searchIndex.search(title, EventSearchIndex.TITLE, category, Integer.MAX_VALUE));
+            }
+            if (location != null) {
+                results = retain(results, searchIndex.search(location, EventSearchIndex.LOCATION, category, Integer.MAX_VALUE));
+            }
+            results = results.subList(0, Math.min(limit, results.size()));
+        }
+
+        return results.stream()
+                .map(this::withLiveInventory)
+                .collect(Collectors.toList());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIndexes() {
+        searchIndex.clear();
+        timeIndex.clear();
+        eventRepository.findAll().forEach(event -> {
+            EventDTO dto = convertToDTO(event);
+            searchIndex.index(dto);
+            timeIndex.index(dto);
+        });
+        log.info("Indexed {} events for search and {} by date", searchIndex.size(), timeIndex.size());
+    }
+
+    private static List<EventDTO> retain(List<EventDTO> ranked, List<EventDTO> filter) {
+        if (ranked == null) {
+            return filter;
+        }
+        Set<UUID> ids = filter.stream().map(EventDTO::getId).collect(Collectors.toSet());
+        return ranked.stream()
+                .filter(event -> ids.contains(event.getId()))
+                .collect(Collectors.toList());
+    }
+
+    private EventDTO indexed(EventDTO event) {
+        searchIndex.index(event);
+        timeIndex.index(event);
+        changeLog.record(event.getId());
+        return event;
+    }
+
+    private List<Event> findPage(PageCursor cursor, int limit) {
+        PageRequest page = PageRequest.of(0, limit);
+        return cursor == null
+                ? eventRepository.findFirstPage(page)
+                : eventRepository.findPageAfter(cursor.key(), cursor.id(), page);
+    }
+
+    private static PageCursor cursorAfter(List<Event> events) {
+        Event last = events.get(events.size() - 1);
+        return new PageCursor(last.getCreatedAt(), last.getId());
+    }
+
+    private List<EventDTO> convertAll(List<Event> events) {
+        return events.stream()
+                .map(this::convertToDTO)
+                .collect(Collectors.toList());
     }
 
     private EventDTO convertToDTO(Event event) {
-        return new EventDTO(
+        return withLiveInventory(new EventDTO(
                 event.getId(),
                 event.getTitle(),
                 event.getDescription(),
@@ -164,7 +482,48 @@ public class EventService {
                 event.getImageUrl(),
                 event.getStatus().name(),
                 event.getCreatedAt(),
-                event.getUpdatedAt()
+                event.getUpdatedAt(),
+                event.getInventoryStripes()
+        ));
+    }
+
+    /**
+     * Returns the event with the ledger's live availability and the status it implies.
+     * The DTO is copied rather than modified when they differ, since cached DTOs are shared.
+     */
+    private EventDTO withLiveInventory(EventDTO event) {
+        // The database copy may lag the ledger by one flush interval
+        Integer availableTickets = inventoryLedger.peek(event.getId());
+        if (availableTickets == null) {
+            availableTickets = event.getAvailableTickets();
+        }
+
+        String status = event.getStatus();
+        if (Event.EventStatus.ACTIVE.name().equals(status) && availableTickets == 0) {
+            status = Event.EventStatus.SOLD_OUT.name();
+        } else if (Event.EventStatus.SOLD_OUT.name().equals(status) && availableTickets > 0) {
+            status = Event.EventStatus.ACTIVE.name();
+        }
+
+        if (availableTickets.equals(event.getAvailableTickets()) && status.equals(event.getStatus())) {
+            return event;
+        }
+        return new EventDTO(
+                event.getId(),
+                event.getTitle(),
+                event.getDescription(),
+                event.getLocation(),
+                event.getCategory(),
+                event.getEventDate(),
+                event.getEndDate(),
+                event.getPrice(),
+                event.getTotalTickets(),
+                availableTickets,
+                event.getImageUrl(),
+                status,
+                event.getCreatedAt(),
+                event.getUpdatedAt(),
+                event.getInventoryStripes()
         );
     }
 }
\ No newline at end of file
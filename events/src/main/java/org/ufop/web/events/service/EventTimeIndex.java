@@ -0,0 +1,134 @@
+package org.ufop.web.events.service;
+
+import org.ufop.web.events.dto.EventDTO;
+import org.ufop.web.events.model.Event;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Events ordered by date, for upcoming and date-range listings.
+ * <p>
+ * Every event sits in one navigable map ordered by {@code eventDate} (ties broken by id)
+ * and in one more per category and per status, so a range query for a category or
+ * status walks only that bucket. Range queries are a sub-map view, so their cost is
+ * proportional to the number of results rather than to the catalog size. ACTIVE and
+ * SOLD_OUT share a bucket because reservations move events between them without going
+ * through a write; callers filter those two on live availability.
+ * <p>
+ * Reads are lock-free. Writes are serialized so an event is never left in two places.
+ */
+@Component
+public class EventTimeIndex {
+
+    private static final UUID MAX_ID = new UUID(Long.MAX_VALUE, Long.MAX_VALUE);
+
+    private final ConcurrentSkipListMap<TimeKey, EventDTO> byDate = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<String, ConcurrentSkipListMap<TimeKey, EventDTO>> byCategory = new ConcurrentHashMap<>();
+    private final Map<Event.EventStatus, ConcurrentSkipListMap<TimeKey, EventDTO>> byStatus = new EnumMap<>(Event.EventStatus.class);
+    private final ConcurrentHashMap<UUID, Entry> entries = new ConcurrentHashMap<>();
+
+    public EventTimeIndex() {
+        for (Event.EventStatus status : Event.EventStatus.values()) {
+            byStatus.put(status, new ConcurrentSkipListMap<>());
+        }
+    }
+
+    public synchronized void index(EventDTO event) {
+        remove(event.getId());
+
+        Entry entry = new Entry(new TimeKey(event.getEventDate(), event.getId()), event.getCategory(),
+                bucketOf(Event.EventStatus.valueOf(event.getStatus())));
+        byDate.put(entry.key(), event);
+        byCategory.computeIfAbsent(entry.category(), c -> new ConcurrentSkipListMap<>()).put(entry.key(), event);
+        byStatus.get(entry.status()).put(entry.key(), event);
+        entries.put(event.getId(), entry);
+    }
+
+    public synchronized void remove(UUID eventId) {
+        Entry entry = entries.remove(eventId);
+        if (entry == null) {
+            return;
+        }
+        byDate.remove(entry.key());
+        byStatus.get(entry.status()).remove(entry.key());
+        ConcurrentSkipListMap<TimeKey, EventDTO> category = byCategory.get(entry.category());
+        if (category != null) {
+            category.remove(entry.key());
+            if (category.isEmpty()) {
+                byCategory.remove(entry.category(), category);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        byDate.clear();
+        byCategory.clear();
+        byStatus.values().forEach(Map::clear);
+        entries.clear();
+    }
+
+    /**
+     * Events dated strictly after {@code from} and up to {@code to} (either bound may be
+     * {@code null} for open-ended), in date order. With both a category and a status the
+     * category bucket is walked and filtered, since categories are the more selective.
+     */
+    public List<EventDTO> range(LocalDateTime from, LocalDateTime to, String category, Event.EventStatus status) {
+        NavigableMap<TimeKey, EventDTO> source;
+        if (category != null) {
+            source = byCategory.get(category);
+            if (source == null) {
+                return List.of();
+            }
+        } else if (status != null) {
+            source = byStatus.get(bucketOf(status));
+        } else {
+            source = byDate;
+        }
+
+        if (from != null && to != null) {
+            source = source.subMap(new TimeKey(from, MAX_ID), true, new TimeKey(to, MAX_ID), true);
+        } else if (from != null) {
+            source = source.tailMap(new TimeKey(from, MAX_ID), true);
+        } else if (to != null) {
+            source = source.headMap(new TimeKey(to, MAX_ID), true);
+        }
+
+        Event.EventStatus bucket = status != null ? bucketOf(status) : null;
+        List<EventDTO> events = new ArrayList<>();
+        for (EventDTO event : source.values()) {
+            if (bucket == null || bucketOf(Event.EventStatus.valueOf(event.getStatus())) == bucket) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static Event.EventStatus bucketOf(Event.EventStatus status) {
+        return status == Event.EventStatus.SOLD_OUT ? Event.EventStatus.ACTIVE : status;
+    }
+
+    private record TimeKey(LocalDateTime eventDate, UUID id) implements Comparable<TimeKey> {
+
+        @Override
+        public int compareTo(TimeKey other) {
+            int byDate = eventDate.compareTo(other.eventDate);
+            return byDate != 0 ? byDate : id.compareTo(other.id);
+        }
+    }
+
+    private record Entry(TimeKey key, String category, Event.EventStatus status) {
+    }
+}
@@ -0,0 +1,42 @@
+package org.ufop.web.events.service;
+
+/**
+ * Live ticket counter for a single event, held by {@link TicketInventoryLedger}.
+ * <p>
+ * A counter can be retired when the ledger swaps it for a differently shaped one
+ * (e.g. when striping is switched on). Once retired it rejects every operation with
+ * {@link Outcome#RETIRED} so callers re-read the current counter instead of updating
+ * an orphaned one.
+ */
+interface InventoryCounter {
+
+    enum Outcome {
+        RESERVED, INSUFFICIENT, RETIRED
+    }
+
+    Outcome reserve(int quantity);
+
+    /**
+     * @return {@code false} if the counter was retired and the release must be retried
+     */
+    boolean release(int quantity);
+
+    /**
+     * Consistent total across all stripes.
+     */
+    int available();
+
+    /**
+     * Retires the counter and returns the tickets it was still holding.
+     */
+    int retire();
+
+    int stripes();
+
+    static InventoryCounter create(int total, Integer stripes) {
+        if (stripes == null || stripes <= 1) {
+            return new SingleInventoryCounter(total);
+        }
+        return new StripedInventoryCounter(total, stripes);
+    }
+}
@@ -0,0 +1,60 @@
+package org.ufop.web.events.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Default counter: one atomic integer updated with compare-and-set.
+ */
+class SingleInventoryCounter implements InventoryCounter {
+
+    private static final int RETIRED = Integer.MIN_VALUE;
+
+    private final AtomicInteger available;
+
+    SingleInventoryCounter(int total) {
+        this.available = new AtomicInteger(total);
+    }
+
+    @Override
+    public Outcome reserve(int quantity) {
+        int current;
+        do {
+            current = available.get();
+            if (current == RETIRED) {
+                return Outcome.RETIRED;
+            }
+            if (current < quantity) {
+                return Outcome.INSUFFICIENT;
+            }
+        } while (!available.compareAndSet(current, current - quantity));
+        return Outcome.RESERVED;
+    }
+
+    @Override
+    public boolean release(int quantity) {
+        int current;
+        do {
+            current = available.get();
+            if (current == RETIRED) {
+                return false;
+            }
+        } while (!available.compareAndSet(current, current + quantity));
+        return true;
+    }
+
+    @Override
+    public int available() {
+        return Math.max(available.get(), 0);
+    }
+
+    @Override
+    public int retire() {
+        int remaining = available.getAndSet(RETIRED);
+        return remaining == RETIRED ? 0 : remaining;
+    }
+
+    @Override
+    public int stripes() {
+        return 1;
+    }
+}
@@ -0,0 +1,167 @@
+package org.ufop.web.events.service;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Flash-sale counter that splits an event's inventory into independent stripes.
+ * <p>
+ * Each request thread draws from its own home stripe with a plain compare-and-set, so
+ * buyers on different cores do not contend on one cache line. When the home stripe
+ * cannot cover a request the thread first tries to take the whole quantity from another
+ * stripe, and only then falls back to a locked sweep that gathers every stripe and
+ * redistributes what is left. The sweep seals each stripe as it gathers it, so a release
+ * cannot land on a stripe that was already counted; it waits for the sweep and is applied
+ * after it. A reservation is only ever rejected after that sweep, so SOLD_OUT is detected
+ * exactly even though the fast path never locks.
+ */
+class StripedInventoryCounter implements InventoryCounter {
+
+    private static final int RETIRED = Integer.MIN_VALUE;
+    // A stripe a sweep has gathered and not refilled yet
+    private static final int SEALED = Integer.MIN_VALUE + 1;
+
+    // 16 ints = 64 bytes between stripes, keeping each on its own cache line
+    private static final int PADDING = 16;
+
+    private final int stripes;
+    private final AtomicIntegerArray cells;
+    private final ReentrantLock sweepLock = new ReentrantLock();
+    private boolean retired;
+
+    StripedInventoryCounter(int total, int stripes) {
+        this.stripes = stripes;
+        this.cells = new AtomicIntegerArray(stripes * PADDING);
+        refill(Math.max(total, 0), 0);
+    }
+
+    @Override
+    public Outcome reserve(int quantity) {
+        int home = homeStripe();
+        for (int i = 0; i < stripes; i++) {
+            Outcome outcome = tryTake((home + i) % stripes, quantity);
+            if (outcome != Outcome.INSUFFICIENT) {
+                return outcome;
+            }
+        }
+        return sweep(home, quantity);
+    }
+
+    @Override
+    public boolean release(int quantity) {
+        int index = homeStripe() * PADDING;
+        while (true) {
+            int current = cells.get(index);
+            if (current == RETIRED) {
+                return false;
+            }
+            if (current == SEALED) {
+                awaitSweep();
+            } else if (cells.compareAndSet(index, current, current + quantity)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public int available() {
+        sweepLock.lock();
+        try {
+            if (retired) {
+                return 0;
+            }
+            int total = 0;
+            for (int stripe = 0; stripe < stripes; stripe++) {
+                total += cells.get(stripe * PADDING);
+            }
+            return total;
+        } finally {
+            sweepLock.unlock();
+        }
+    }
+
+    @Override
+    public int retire() {
+        sweepLock.lock();
+        try {
+            if (retired) {
+                return 0;
+            }
+            retired = true;
+            int remaining = 0;
+            for (int stripe = 0; stripe < stripes; stripe++) {
+                remaining += cells.getAndSet(stripe * PADDING, RETIRED);
+            }
+            return remaining;
+        } finally {
+            sweepLock.unlock();
+        }
+    }
+
+    @Override
+    public int stripes() {
+        return stripes;
+    }
+
+    private Outcome tryTake(int stripe, int quantity) {
+        int index = stripe * PADDING;
+        int current;
+        do {
+            current = cells.get(index);
+            if (current == RETIRED) {
+                return Outcome.RETIRED;
+            }
+            // A sealed stripe is being swept; the sweep this falls back to waits for it
+            if (current == SEALED || current < quantity) {
+                return Outcome.INSUFFICIENT;
+            }
+        } while (!cells.compareAndSet(index, current, current - quantity));
+        return Outcome.RESERVED;
+    }
+
+    private Outcome sweep(int home, int quantity) {
+        sweepLock.lock();
+        try {
+            if (retired) {
+                return Outcome.RETIRED;
+            }
+
+            // Concurrent takers and releasers see sealed stripes and queue up on the lock
+            int gathered = 0;
+            for (int stripe = 0; stripe < stripes; stripe++) {
+                gathered += cells.getAndSet(stripe * PADDING, SEALED);
+            }
+
+            if (gathered >= quantity) {
+                refill(gathered - quantity, home);
+                return Outcome.RESERVED;
+            }
+
+            refill(gathered, home);
+            return Outcome.INSUFFICIENT;
+        } finally {
+            sweepLock.unlock();
+        }
+    }
+
+    // Only called on new or sealed stripes, which nothing else writes to
+    private void refill(int amount, int first) {
+        int share = amount / stripes;
+        int extra = amount % stripes;
+        for (int i = 0; i < stripes; i++) {
+            int stripe = (first + i) % stripes;
+            cells.set(stripe * PADDING, share + (i < extra ? 1 : 0));
+        }
+    }
+
+    private void awaitSweep() {
+        sweepLock.lock();
+        sweepLock.unlock();
+    }
+
+    // The thread's identity hash is fixed for its lifetime and spreads threads across stripes
+    private int homeStripe() {
+        int probe = System.identityHashCode(Thread.currentThread());
+        return ((probe ^ (probe >>> 16)) & Integer.MAX_VALUE) % stripes;
+    }
+}
@@ -0,0 +1,274 @@
+package org.ufop.web.events.service;
+
+import org.ufop.web.events.dto.TicketHoldDTO;
+import org.ufop.web.events.model.TicketHold;
+import org.ufop.web.events.repository.TicketHoldRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reserves tickets for a limited time while a buyer completes payment.
+ * <p>
+ * A hold takes its tickets from the {@link TicketInventoryLedger} up front and is then
+ * either confirmed (the tickets stay sold), released, or expired by a {@link TimingWheel}
+ * which hands them back to the ledger. Active holds are kept in memory; the
+ * {@code ticket_holds} table is only written on state changes and read once at startup
+ * to re-arm holds that were outstanding when the service stopped.
+ */
+@Service
+@Slf4j
+public class TicketHoldService {
+
+    private static final int UPDATE_CHUNK_SIZE = 500;
+    private static final Duration EXPIRY_RETRY_DELAY = Duration.ofSeconds(5);
+
+    private final TicketHoldRepository ticketHoldRepository;
+    private final TicketInventoryLedger inventoryLedger;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration defaultTtl;
+    private final Duration maxTtl;
+    private final TimingWheel<UUID> expiryWheel;
+
+    private final ConcurrentHashMap<UUID, ActiveHold> activeHolds = new ConcurrentHashMap<>();
+
+    public TicketHoldService(TicketHoldRepository ticketHoldRepository,
+                             TicketInventoryLedger inventoryLedger,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${events.holds.default-ttl-seconds:600}") long defaultTtlSeconds,
+                             @Value("${events.holds.max-ttl-seconds:3600}") long maxTtlSeconds,
+                             @Value("${events.holds.wheel-tick-ms:100}") long tickMillis,
+                             @Value("${events.holds.wheel-size:512}") int wheelSize) {
+        this.ticketHoldRepository = ticketHoldRepository;
+        this.inventoryLedger = inventoryLedger;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.defaultTtl = Duration.ofSeconds(defaultTtlSeconds);
+        this.maxTtl = Duration.ofSeconds(maxTtlSeconds);
+        this.expiryWheel = new TimingWheel<>("ticket-hold-expiry", Duration.ofMillis(tickMillis), wheelSize, this::expire);
+    }
+
+    /**
+     * @return the new hold, or {@code null} if there are not enough tickets left
+     */
+    public TicketHoldDTO createHold(UUID eventId, int quantity, Long ttlSeconds) {
+        Duration ttl = resolveTtl(ttlSeconds);
+
+        if (!inventoryLedger.reserve(eventId, quantity)) {
+            return null;
+        }
+
+        TicketHold hold = new TicketHold();
+        hold.setEventId(eventId);
+        hold.setQuantity(quantity);
+        hold.setStatus(TicketHold.HoldStatus.ACTIVE);
+        hold.setExpiresAt(LocalDateTime.now().plus(ttl));
+
+        TicketHold savedHold;
+        try {
+            savedHold = ticketHoldRepository.save(hold);
+        } catch (RuntimeException e) {
+            inventoryLedger.release(eventId, quantity);
+            throw e;
+        }
+
+        arm(savedHold.getId(), eventId, quantity, savedHold.getExpiresAt());
+        return convertToDTO(savedHold);
+    }
+
+    /**
+     * Places one hold per event, all or nothing.
+     *
+     * @return the holds in the iteration order of {@code quantities}, or {@code null} if
+     * any event is short of tickets
+     */
+    public List<TicketHoldDTO> createHolds(Map<UUID, Integer> quantities, Long ttlSeconds) {
+        Duration ttl = resolveTtl(ttlSeconds);
+
+        if (!inventoryLedger.reserveAll(quantities)) {
+            return null;
+        }
+
+        LocalDateTime expiresAt = LocalDateTime.now().plus(ttl);
+        List<TicketHold> holds = new ArrayList<>(quantities.size());
+        quantities.forEach((eventId, quantity) -> {
+            TicketHold hold = new TicketHold();
+            hold.setEventId(eventId);
+            hold.setQuantity(quantity);
+            hold.setStatus(TicketHold.HoldStatus.ACTIVE);
+            hold.setExpiresAt(expiresAt);
+            holds.add(hold);
+        });
+
+        List<TicketHold> savedHolds;
+        try {
+            savedHolds = transactionTemplate.execute(status -> ticketHoldRepository.saveAll(holds));
+        } catch (RuntimeException e) {
+            quantities.forEach(inventoryLedger::release);
+            throw e;
+        }
+
+        List<TicketHoldDTO> result = new ArrayList<>(savedHolds.size());
+        for (TicketHold hold : savedHolds) {
+            arm(hold.getId(), hold.getEventId(), hold.getQuantity(), hold.getExpiresAt());
+            result.add(convertToDTO(hold));
+        }
+        return result;
+    }
+
+    public TicketHoldDTO confirmHold(UUID holdId) {
+        return settle(holdId, TicketHold.HoldStatus.CONFIRMED);
+    }
+
+    public TicketHoldDTO releaseHold(UUID holdId) {
+        return settle(holdId, TicketHold.HoldStatus.RELEASED);
+    }
+
+    public TicketHoldDTO getHold(UUID holdId) {
+        TicketHold hold = ticketHoldRepository.findById(holdId)
+                .orElseThrow(() -> new RuntimeException("Hold not found"));
+        return convertToDTO(hold);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void restoreActiveHolds() {
+        List<TicketHold> holds = ticketHoldRepository.findByStatus(TicketHold.HoldStatus.ACTIVE);
+        for (TicketHold hold : holds) {
+            arm(hold.getId(), hold.getEventId(), hold.getQuantity(), hold.getExpiresAt());
+        }
+        if (!holds.isEmpty()) {
+            log.info("Restored {} active ticket holds", holds.size());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        expiryWheel.close();
+    }
+
+    private Duration resolveTtl(Long ttlSeconds) {
+        Duration ttl = ttlSeconds != null ? Duration.ofSeconds(ttlSeconds) : defaultTtl;
+        if (ttl.isNegative() || ttl.isZero() || ttl.compareTo(maxTtl) > 0) {
+            throw new IllegalArgumentException("Hold TTL must be between 1 and " + maxTtl.getSeconds() + " seconds");
+        }
+        return ttl;
+    }
+
+    private void arm(UUID holdId, UUID eventId, int quantity, LocalDateTime expiresAt) {
+        // Publish before scheduling so a very short TTL cannot fire before the hold is visible
+        ActiveHold activeHold = new ActiveHold(eventId, quantity, expiresAt);
+        activeHolds.put(holdId, activeHold);
+        // Overdue holds get a zero delay and expire on the next tick
+        activeHold.timeout = expiryWheel.schedule(holdId, Duration.between(LocalDateTime.now(), expiresAt));
+    }
+
+    private TicketHoldDTO settle(UUID holdId, TicketHold.HoldStatus outcome) {
+        // Whoever removes the hold from the map owns the transition; confirm, release and expiry race here
+        ActiveHold activeHold = activeHolds.remove(holdId);
+        if (activeHold == null) {
+            TicketHold hold = ticketHoldRepository.findById(holdId)
+                    .orElseThrow(() -> new RuntimeException("Hold not found"));
+            if (hold.getStatus() == outcome) {
+                return convertToDTO(hold);
+            }
+            throw new IllegalStateException("Hold is already " + hold.getStatus());
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> ticketHoldRepository.updateStatus(
+                    List.of(holdId), TicketHold.HoldStatus.ACTIVE, outcome, LocalDateTime.now()));
+        } catch (RuntimeException e) {
+            // Still ACTIVE in the table, so put it back; its expiry may have fired meanwhile
+            if (activeHold.timeout != null) {
+                activeHold.timeout.cancel();
+            }
+            arm(holdId, activeHold.eventId, activeHold.quantity, activeHold.expiresAt);
+            throw e;
+        }
+
+        if (activeHold.timeout != null) {
+            activeHold.timeout.cancel();
+        }
+        if (outcome != TicketHold.HoldStatus.CONFIRMED) {
+            inventoryLedger.release(activeHold.eventId, activeHold.quantity);
+        }
+        return getHold(holdId);
+    }
+
+    private void expire(List<UUID> holdIds) {
+        Map<UUID, ActiveHold> expiring = new LinkedHashMap<>();
+        for (UUID holdId : holdIds) {
+            ActiveHold activeHold = activeHolds.remove(holdId);
+            if (activeHold != null) {
+                expiring.put(holdId, activeHold);
+            }
+        }
+
+        // Like settle: the row goes to EXPIRED before the tickets go back, so a failed
+        // update cannot leave them both sellable and still held at the next startup
+        List<UUID> ids = new ArrayList<>(expiring.keySet());
+        int expired = 0;
+        for (int from = 0; from < ids.size(); from += UPDATE_CHUNK_SIZE) {
+            List<UUID> chunk = ids.subList(from, Math.min(from + UPDATE_CHUNK_SIZE, ids.size()));
+            LocalDateTime now = LocalDateTime.now();
+            try {
+                transactionTemplate.executeWithoutResult(status -> ticketHoldRepository.updateStatus(
+                        chunk, TicketHold.HoldStatus.ACTIVE, TicketHold.HoldStatus.EXPIRED, now));
+            } catch (RuntimeException e) {
+                log.error("Failed to expire {} ticket holds, retrying in {}", chunk.size(), EXPIRY_RETRY_DELAY, e);
+                for (UUID holdId : chunk) {
+                    ActiveHold activeHold = expiring.get(holdId);
+                    arm(holdId, activeHold.eventId, activeHold.quantity, now.plus(EXPIRY_RETRY_DELAY));
+                }
+                continue;
+            }
+            for (UUID holdId : chunk) {
+                ActiveHold activeHold = expiring.get(holdId);
+                inventoryLedger.release(activeHold.eventId, activeHold.quantity);
+            }
+            expired += chunk.size();
+        }
+
+        if (expired > 0) {
+            log.debug("Expired {} ticket holds", expired);
+        }
+    }
+
+    private TicketHoldDTO convertToDTO(TicketHold hold) {
+        return new TicketHoldDTO(
+                hold.getId(),
+                hold.getEventId(),
+                hold.getQuantity(),
+                hold.getStatus().name(),
+                hold.getExpiresAt(),
+                hold.getCreatedAt(),
+                hold.getUpdatedAt()
+        );
+    }
+
+    private static final class ActiveHold {
+        private final UUID eventId;
+        private final int quantity;
+        private final LocalDateTime expiresAt;
+        private volatile TimingWheel.Timeout<UUID> timeout;
+
+        private ActiveHold(UUID eventId, int quantity, LocalDateTime expiresAt) {
+            this.eventId = eventId;
+            this.quantity = quantity;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package org.ufop.web.events.service;
+
+import org.ufop.web.events.model.Event;
+import org.ufop.web.events.repository.EventRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * In-memory source of truth for ticket availability.
+ * <p>
+ * Each event gets an {@link InventoryCounter}, loaded from the {@code events} table the
+ * first time it is touched. Reservations are lock-free compare-and-set decrements that
+ * never let the counter drop below zero, so concurrent buyers cannot oversell. Events
+ * with {@code inventoryStripes > 1} use a {@link StripedInventoryCounter} instead of a
+ * single atomic so flash sales do not serialize on one counter.
+ * <p>
+ * A reservation is only acknowledged once the counter it lowered has been written back to
+ * the table, so a crash cannot hand the same tickets out twice. Write-backs are group
+ * commits: whoever needs one writes every changed counter, and callers whose changes went
+ * out with it return without touching the table. Releases are written back in the
+ * background and on shutdown, since losing one can only leave tickets unsold. The
+ * write-back only touches {@code availableTickets}, {@code status} and {@code updatedAt}
+ * so it never clobbers concurrent edits to other columns.
+ */
+@Component
+@Slf4j
+public class TicketInventoryLedger {
+
+    private final EventRepository eventRepository;
+    private final EventChangeLog changeLog;
+    private final TransactionTemplate transactionTemplate;
+
+    private final ConcurrentHashMap<UUID, InventoryCounter> counters = new ConcurrentHashMap<>();
+    private final Set<UUID> dirty = ConcurrentHashMap.newKeySet();
+
+    // Numbers every change after it is applied and marked dirty
+    private final AtomicLong changes = new AtomicLong();
+    // Serializes write-backs, which write absolute values and must not land out of order
+    private final Object writeBackLock = new Object();
+    // Guarded by writeBackLock; every change up to this number is in the table
+    private long written;
+
+    public TicketInventoryLedger(EventRepository eventRepository,
+                                 EventChangeLog changeLog,
+                                 PlatformTransactionManager transactionManager) {
+        this.eventRepository = eventRepository;
+        this.changeLog = changeLog;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public boolean reserve(UUID eventId, int quantity) {
+        if (!tryReserve(eventId, quantity)) {
+            return false;
+        }
+        commit(Map.of(eventId, quantity));
+        return true;
+    }
+
+    /**
+     * Reserves every entry or none of them. Entries reserved before a shortfall (or a
+     * missing event) are handed back before returning, so a rejected batch leaves
+     * availability exactly as it found it.
+     */
+    public boolean reserveAll(Map<UUID, Integer> quantities) {
+        List<Map.Entry<UUID, Integer>> reserved = new ArrayList<>(quantities.size());
+        try {
+            for (Map.Entry<UUID, Integer> entry : quantities.entrySet()) {
+                if (!tryReserve(entry.getKey(), entry.getValue())) {
+                    releaseAll(reserved);
+                    return false;
+                }
+                reserved.add(entry);
+            }
+        } catch (RuntimeException e) {
+            releaseAll(reserved);
+            throw e;
+        }
+        commit(quantities);
+        return true;
+    }
+
+    public void release(UUID eventId, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+
+        while (!counter(eventId).release(quantity)) {
+            Thread.onSpinWait();
+        }
+        dirty.add(eventId);
+        changes.incrementAndGet();
+    }
+
+    private boolean tryReserve(UUID eventId, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+
+        while (true) {
+            InventoryCounter.Outcome outcome = counter(eventId).reserve(quantity);
+            if (outcome == InventoryCounter.Outcome.RESERVED) {
+                dirty.add(eventId);
+                return true;
+            }
+            if (outcome == InventoryCounter.Outcome.INSUFFICIENT) {
+                return false;
+            }
+            // Counter was swapped out under us, retry against its replacement
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Waits until the reservations just made are in the table, handing them back if they
+     * cannot be written.
+     */
+    private void commit(Map<UUID, Integer> reserved) {
+        if (!writeBackThrough(changes.incrementAndGet())) {
+            releaseAll(new ArrayList<>(reserved.entrySet()));
+            throw new IllegalStateException("Could not record the reservation, please try again");
+        }
+    }
+
+    private void releaseAll(List<Map.Entry<UUID, Integer>> reserved) {
+        for (Map.Entry<UUID, Integer> entry : reserved) {
+            release(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Applies a change in total capacity (e.g. an organizer adding seats) to the live counter.
+     */
+    public int adjust(UUID eventId, int delta) {
+        return replace(eventId, available -> available + delta, null);
+    }
+
+    public void set(UUID eventId, int available) {
+        replace(eventId, ignored -> available, null);
+    }
+
+    /**
+     * Switches an event between a single counter and {@code stripes} striped sub-pools,
+     * carrying over its current availability.
+     */
+    public void restripe(UUID eventId, int stripes) {
+        replace(eventId, available -> available, stripes);
+    }
+
+    /**
+     * Returns the live availability, or {@code null} if the event has not been loaded
+     * into the ledger yet (in which case the database value is current).
+     */
+    public Integer peek(UUID eventId) {
+        InventoryCounter counter = counters.get(eventId);
+        return counter != null ? counter.available() : null;
+    }
+
+    public void evict(UUID eventId) {
+        counters.remove(eventId);
+        dirty.remove(eventId);
+    }
+
+    @Scheduled(fixedDelayString = "${events.inventory.flush-interval-ms:200}")
+    public void flush() {
+        writeBackThrough(changes.get());
+    }
+
+    /**
+     * Makes sure every change up to {@code change} is in the table, writing back all
+     * changed counters unless a write-back since then already did.
+     *
+     * @return false if the write-back failed; the counters stay dirty and are retried
+     */
+    private boolean writeBackThrough(long change) {
+        synchronized (writeBackLock) {
+            if (written >= change) {
+                return true;
+            }
+            // Every change numbered up to here has already lowered or raised its counter
+            long through = changes.get();
+
+            List<UUID> batch = new ArrayList<>(dirty.size());
+            List<Integer> values = new ArrayList<>(dirty.size());
+            for (UUID eventId : dirty) {
+                // Remove before reading so a reservation racing with the write-back re-marks the event
+                dirty.remove(eventId);
+                InventoryCounter counter = counters.get(eventId);
+                if (counter != null) {
+                    batch.add(eventId);
+                    values.add(counter.available());
+                }
+            }
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    LocalDateTime now = LocalDateTime.now();
+                    for (int i = 0; i < batch.size(); i++) {
+                        eventRepository.updateInventory(batch.get(i), values.get(i), now);
+                    }
+                });
+            } catch (RuntimeException e) {
+                log.error("Failed to write back ticket inventory for {} events, will retry", batch.size(), e);
+                dirty.addAll(batch);
+                return false;
+            }
+            written = through;
+            // Catalog ETags follow availability at write-back granularity, not per reservation
+            changeLog.recordAll(batch);
+            return true;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private InventoryCounter counter(UUID eventId) {
+        InventoryCounter counter = counters.get(eventId);
+        if (counter != null) {
+            return counter;
+        }
+
+        // Loaded outside the map so the query does not block other events' counters;
+        // if another thread loaded the event meanwhile, its counter wins
+        Event event = eventRepository.findById(eventId)
+                .orElseThrow(() -> new RuntimeException("Event not found"));
+        InventoryCounter loaded = InventoryCounter.create(event.getAvailableTickets(), event.getInventoryStripes());
+        InventoryCounter existing = counters.putIfAbsent(eventId, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private int replace(UUID eventId, IntUnaryOperator newAvailable, Integer stripes) {
+        counter(eventId);
+        InventoryCounter replacement = counters.compute(eventId, (id, current) -> {
+            if (current == null) {
+                throw new RuntimeException("Event not found");
+            }
+            int available = Math.max(newAvailable.applyAsInt(current.retire()), 0);
+            return InventoryCounter.create(available, stripes != null ? stripes : current.stripes());
+        });
+        dirty.add(eventId);
+        if (!writeBackThrough(changes.incrementAndGet())) {
+            log.warn("Inventory of event {} is not written back yet, will retry", eventId);
+        }
+        return replacement.available();
+    }
+}
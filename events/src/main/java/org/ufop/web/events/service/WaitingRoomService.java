@@ -0,0 +1,311 @@
+package org.ufop.web.events.service;
+
+import org.ufop.web.events.dto.QueueTicketDTO;
+import org.ufop.web.events.dto.WaitingRoomDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Virtual waiting room that meters buyers into the reservation endpoints at on-sale time.
+ * <p>
+ * Opening a room for an event makes the reservation endpoints require an admission
+ * token. Buyers join the queue and get a FIFO position; a scheduler admits positions at
+ * the configured rate per second, and admitted buyers receive an HMAC-signed admission
+ * token. Polling a position is O(1), so clients can poll (or subscribe over SSE) cheaply
+ * while the backend only ever sees the admitted rate.
+ * <p>
+ * Tokens are only issued while a room is open, and each admitted position buys once: the
+ * first reservation attempt that presents a token for it uses the position up, whatever
+ * its outcome, and later attempts with any token for that position are refused. Without
+ * a room reservations need no token, so joining one is refused.
+ */
+@Service
+@Slf4j
+public class WaitingRoomService {
+
+    public static final String ADMISSION_HEADER = "X-Admission-Token";
+
+    private static final long ADMIT_INTERVAL_MS = 100;
+    private static final int SIGNATURE_BYTES = 16;
+
+    private final ConcurrentHashMap<UUID, Room> rooms = new ConcurrentHashMap<>();
+    // Shared rather than per thread, since every virtual thread would initialize its own;
+    // signing never blocks, so a core's worth of instances covers the concurrent callers
+    private final ArrayBlockingQueue<Mac> macs = new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors());
+    private final SecretKeySpec key;
+    private final Duration admissionTtl;
+    private final long streamTimeoutMillis;
+
+    public WaitingRoomService(@Value("${events.waiting-room.secret:${random.value}}") String secret,
+                              @Value("${events.waiting-room.admission-ttl-seconds:600}") long admissionTtlSeconds,
+                              @Value("${events.waiting-room.stream-timeout-seconds:900}") long streamTimeoutSeconds) {
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        this.admissionTtl = Duration.ofSeconds(admissionTtlSeconds);
+        this.streamTimeoutMillis = Duration.ofSeconds(streamTimeoutSeconds).toMillis();
+    }
+
+    public WaitingRoomDTO open(UUID eventId, int ratePerSecond) {
+        if (ratePerSecond < 1) {
+            throw new IllegalArgumentException("Admission rate must be at least 1 per second");
+        }
+        Room room = rooms.computeIfAbsent(eventId, id -> new Room());
+        room.ratePerSecond = ratePerSecond;
+        log.info("Waiting room for event {} admitting {} buyers per second", eventId, ratePerSecond);
+        return convertToDTO(eventId, room);
+    }
+
+    public void close(UUID eventId) {
+        Room room = rooms.remove(eventId);
+        if (room != null) {
+            // Without a room everyone is admitted, so release anyone still listening
+            Subscriber subscriber;
+            while ((subscriber = room.subscribers.poll()) != null) {
+                send(subscriber, unqueuedTicket(eventId, subscriber.position()), true);
+            }
+        }
+    }
+
+    public WaitingRoomDTO getRoom(UUID eventId) {
+        Room room = rooms.get(eventId);
+        if (room == null) {
+            throw new RuntimeException("Waiting room not found");
+        }
+        return convertToDTO(eventId, room);
+    }
+
+    public QueueTicketDTO join(UUID eventId) {
+        Room room = rooms.get(eventId);
+        if (room == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND,
+                    "No waiting room is open for this event; reserve without an admission token");
+        }
+        return ticket(eventId, room, room.issued.incrementAndGet());
+    }
+
+    public QueueTicketDTO getTicket(UUID eventId, long position, String queueToken) {
+        verifyQueueToken(eventId, position, queueToken);
+        Room room = rooms.get(eventId);
+        return room != null ? ticket(eventId, room, position) : unqueuedTicket(eventId, position);
+    }
+
+    public SseEmitter subscribe(UUID eventId, long position, String queueToken) {
+        QueueTicketDTO current = getTicket(eventId, position, queueToken);
+        SseEmitter emitter = new SseEmitter(streamTimeoutMillis);
+        Subscriber subscriber = new Subscriber(position, emitter);
+
+        Room room = rooms.get(eventId);
+        if (room == null || current.getAdmitted()) {
+            send(subscriber, current, true);
+            return emitter;
+        }
+
+        room.subscribers.add(subscriber);
+        emitter.onCompletion(() -> room.subscribers.remove(subscriber));
+        emitter.onTimeout(() -> room.subscribers.remove(subscriber));
+        send(subscriber, current, false);
+        return emitter;
+    }
+
+    /**
+     * Rejects reservation attempts for an event with an open waiting room unless they
+     * carry a valid, unexpired admission token for that event, and uses up the token's
+     * position so it cannot reserve again.
+     */
+    public void checkAdmission(UUID eventId, String admissionToken) {
+        Room room = rooms.get(eventId);
+        if (room == null) {
+            return;
+        }
+        Long position = admissionToken != null ? admittedPosition(eventId, room, admissionToken) : null;
+        if (position == null || position > room.admitted) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS,
+                    "Event is behind a waiting room; join the queue and retry with an admission token");
+        }
+        if (!room.used.add(position)) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS,
+                    "This admission token was already used; join the queue again to buy more");
+        }
+    }
+
+    @Scheduled(fixedRate = ADMIT_INTERVAL_MS)
+    public void admit() {
+        for (Room room : rooms.values()) {
+            room.carry += room.ratePerSecond * ADMIT_INTERVAL_MS / 1000.0;
+            long whole = (long) room.carry;
+            room.carry -= whole;
+
+            long issued = room.issued.get();
+            long admitted = Math.min(room.admitted + whole, issued);
+            if (admitted == issued) {
+                // Do not bank allowance while the queue is empty, or the next burst skips the line
+                room.carry = 0;
+            }
+            room.admitted = admitted;
+        }
+    }
+
+    @Scheduled(fixedRate = 1000)
+    public void publish() {
+        rooms.forEach((eventId, room) -> {
+            for (Subscriber subscriber : room.subscribers) {
+                QueueTicketDTO ticket = ticket(eventId, room, subscriber.position());
+                if (ticket.getAdmitted()) {
+                    room.subscribers.remove(subscriber);
+                }
+                send(subscriber, ticket, ticket.getAdmitted());
+            }
+        });
+    }
+
+    private QueueTicketDTO ticket(UUID eventId, Room room, long position) {
+        long admitted = room.admitted;
+        if (position <= admitted) {
+            return admittedTicket(eventId, room, position);
+        }
+
+        long ahead = position - admitted - 1;
+        return new QueueTicketDTO(
+                eventId,
+                position,
+                sign("q|" + eventId + "|" + position),
+                false,
+                ahead,
+                (ahead + room.ratePerSecond) / room.ratePerSecond,
+                null,
+                null
+        );
+    }
+
+    // A position in a room that has closed: admitted, and no token is needed any more
+    private QueueTicketDTO unqueuedTicket(UUID eventId, long position) {
+        return new QueueTicketDTO(eventId, position, sign("q|" + eventId + "|" + position), true, 0L, 0L, null, null);
+    }
+
+    private QueueTicketDTO admittedTicket(UUID eventId, Room room, long position) {
+        long expiresAt = Instant.now().plus(admissionTtl).getEpochSecond();
+        String admissionToken = position + "." + expiresAt + "." + sign(admission(eventId, room, position, expiresAt));
+        return new QueueTicketDTO(
+                eventId,
+                position,
+                sign("q|" + eventId + "|" + position),
+                true,
+                0L,
+                0L,
+                admissionToken,
+                LocalDateTime.ofInstant(Instant.ofEpochSecond(expiresAt), ZoneId.systemDefault())
+        );
+    }
+
+    /**
+     * The position a valid, unexpired admission token was issued for, or null.
+     */
+    private Long admittedPosition(UUID eventId, Room room, String admissionToken) {
+        String[] parts = admissionToken.split("\\.");
+        if (parts.length != 3) {
+            return null;
+        }
+        try {
+            long position = Long.parseLong(parts[0]);
+            long expiresAt = Long.parseLong(parts[1]);
+            if (Instant.now().getEpochSecond() > expiresAt) {
+                return null;
+            }
+            String expected = sign(admission(eventId, room, position, expiresAt));
+            return constantTimeEquals(expected, parts[2]) ? position : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // Tokens are bound to the room, so they do not carry over once it is closed and reopened
+    private static String admission(UUID eventId, Room room, long position, long expiresAt) {
+        return "a|" + eventId + "|" + room.id + "|" + position + "|" + expiresAt;
+    }
+
+    private void verifyQueueToken(UUID eventId, long position, String queueToken) {
+        if (queueToken == null || !constantTimeEquals(sign("q|" + eventId + "|" + position), queueToken)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Invalid queue token");
+        }
+    }
+
+    private String sign(String message) {
+        Mac mac = macs.poll();
+        if (mac == null) {
+            mac = newMac();
+        }
+        byte[] signature = mac.doFinal(message.getBytes(StandardCharsets.UTF_8));
+        // doFinal resets the Mac for the next message; dropped if the pool is full
+        macs.offer(mac);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(signature, SIGNATURE_BYTES));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    private static boolean constantTimeEquals(String expected, String actual) {
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.US_ASCII), actual.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private void send(Subscriber subscriber, QueueTicketDTO ticket, boolean complete) {
+        try {
+            subscriber.emitter().send(SseEmitter.event().name("queue").data(ticket));
+            if (complete) {
+                subscriber.emitter().complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Client went away; the completion callback drops the subscriber
+            subscriber.emitter().completeWithError(e);
+        }
+    }
+
+    private WaitingRoomDTO convertToDTO(UUID eventId, Room room) {
+        return new WaitingRoomDTO(eventId, room.ratePerSecond, room.issued.get(), room.admitted);
+    }
+
+    private static final class Room {
+        private final UUID id = UUID.randomUUID();
+        private final AtomicLong issued = new AtomicLong();
+        private final Queue<Subscriber> subscribers = new ConcurrentLinkedQueue<>();
+        // Admitted positions that have made their reservation attempt
+        private final Set<Long> used = ConcurrentHashMap.newKeySet();
+        private volatile int ratePerSecond;
+        private volatile long admitted;
+        // Fractional admissions carried between ticks; only touched by the scheduler
+        private double carry;
+    }
+
+    private record Subscriber(long position, SseEmitter emitter) {
+    }
+}
@@ -0,0 +1,183 @@
+package org.ufop.web.events.benchmark;
+
+import org.ufop.web.events.dto.EventDTO;
+import org.ufop.web.events.service.EventTimeIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares date-range lookups on {@link EventTimeIndex} with the same query against an
+ * indexed SQLite table shaped like {@code events}.
+ * <p>
+ * The SQLite side uses plain JDBC, so it leaves out Hibernate's own overhead and favours
+ * the database path. Run with:
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *     org.ufop.web.events.benchmark.EventTimeIndexBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventTimeIndexBenchmark {
+
+    private static final String[] CATEGORIES = {"music", "theatre", "sports", "comedy", "festival", "conference"};
+    private static final String[] STATUSES = {"ACTIVE", "ACTIVE", "ACTIVE", "SOLD_OUT", "CANCELLED", "INACTIVE"};
+
+    @Param({"10000", "100000"})
+    private int catalogSize;
+
+    private final EventTimeIndex index = new EventTimeIndex();
+    private Path databaseFile;
+    private Connection connection;
+    private PreparedStatement rangeQuery;
+    private PreparedStatement categoryRangeQuery;
+
+    private LocalDateTime weekStart;
+    private LocalDateTime weekEnd;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        databaseFile = Files.createTempFile("events-benchmark", ".db");
+        connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE events (id TEXT PRIMARY KEY, title TEXT, category TEXT, "
+                    + "status TEXT, event_date TEXT, price REAL, total_tickets INTEGER, available_tickets INTEGER)");
+            statement.execute("CREATE INDEX idx_events_event_date ON events (event_date)");
+        }
+
+        // Two years of events, spread uniformly
+        Random random = new Random(42);
+        LocalDateTime start = LocalDateTime.of(2026, 1, 1, 0, 0);
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO events VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < catalogSize; i++) {
+                EventDTO event = new EventDTO();
+                event.setId(UUID.randomUUID());
+                event.setTitle("Event " + i);
+                event.setCategory(CATEGORIES[random.nextInt(CATEGORIES.length)]);
+                event.setStatus(STATUSES[random.nextInt(STATUSES.length)]);
+                event.setEventDate(start.plusMinutes(random.nextInt(2 * 365 * 24 * 60)));
+                event.setPrice(50.0);
+                event.setTotalTickets(100);
+                event.setAvailableTickets(100);
+                index.index(event);
+
+                insert.setString(1, event.getId().toString());
+                insert.setString(2, event.getTitle());
+                insert.setString(3, event.getCategory());
+                insert.setString(4, event.getStatus());
+                insert.setString(5, event.getEventDate().toString());
+                insert.setDouble(6, event.getPrice());
+                insert.setInt(7, event.getTotalTickets());
+                insert.setInt(8, event.getAvailableTickets());
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+
+        rangeQuery = connection.prepareStatement(
+                "SELECT * FROM events WHERE event_date > ? AND event_date <= ? ORDER BY event_date");
+        categoryRangeQuery = connection.prepareStatement(
+                "SELECT * FROM events WHERE category = ? AND event_date > ? AND event_date <= ? ORDER BY event_date");
+
+        weekStart = LocalDateTime.of(2026, 6, 6, 0, 0);
+        weekEnd = weekStart.plusDays(7);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, SQLException {
+        connection.close();
+        Files.deleteIfExists(databaseFile);
+    }
+
+    @Benchmark
+    public List<EventDTO> weekFromIndex() {
+        return index.range(weekStart, weekEnd, null, null);
+    }
+
+    @Benchmark
+    public List<EventDTO> weekFromSqlite() throws SQLException {
+        rangeQuery.setString(1, weekStart.toString());
+        rangeQuery.setString(2, weekEnd.toString());
+        return read(rangeQuery);
+    }
+
+    @Benchmark
+    public List<EventDTO> categoryWeekFromIndex() {
+        return index.range(weekStart, weekEnd, "music", null);
+    }
+
+    @Benchmark
+    public List<EventDTO> categoryWeekFromSqlite() throws SQLException {
+        categoryRangeQuery.setString(1, "music");
+        categoryRangeQuery.setString(2, weekStart.toString());
+        categoryRangeQuery.setString(3, weekEnd.toString());
+        return read(categoryRangeQuery);
+    }
+
+    private static List<EventDTO> read(PreparedStatement query) throws SQLException {
+        List<EventDTO> events = new ArrayList<>();
+        try (ResultSet rows = query.executeQuery()) {
+            while (rows.next()) {
+                EventDTO event = new EventDTO();
+                event.setId(UUID.fromString(rows.getString("id")));
+                event.setTitle(rows.getString("title"));
+                event.setCategory(rows.getString("category"));
+                event.setStatus(rows.getString("status"));
+                event.setEventDate(LocalDateTime.parse(rows.getString("event_date")));
+                event.setPrice(rows.getDouble("price"));
+                event.setTotalTickets(rows.getInt("total_tickets"));
+                event.setAvailableTickets(rows.getInt("available_tickets"));
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(EventTimeIndexBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,110 @@
+package org.ufop.web.events.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StripedInventoryCounterTest {
+
+    private static final int BUYERS = 16;
+
+    @Test
+    void soldOutIsOnlyReportedWhenNothingIsLeft() throws Exception {
+        StripedInventoryCounter counter = new StripedInventoryCounter(10_000, 8);
+
+        List<int[]> results = runBuyers(() -> {
+            int sold = 0;
+            int early = 0;
+            while (true) {
+                int quantity = ThreadLocalRandom.current().nextInt(1, 4);
+                InventoryCounter.Outcome outcome = counter.reserve(quantity);
+                if (outcome == InventoryCounter.Outcome.RESERVED) {
+                    sold += quantity;
+                } else if (counter.reserve(1) == InventoryCounter.Outcome.RESERVED) {
+                    sold++;
+                } else {
+                    // Availability only falls here, so anything left now was left at the rejection
+                    if (counter.available() > 0) {
+                        early++;
+                    }
+                    return new int[]{sold, early};
+                }
+            }
+        });
+
+        assertThat(results.stream().mapToInt(result -> result[0]).sum()).isEqualTo(10_000);
+        assertThat(results).allSatisfy(result -> assertThat(result[1]).isZero());
+        assertThat(counter.available()).isZero();
+    }
+
+    @Test
+    void releasesDuringSweepsAreNotLost() throws Exception {
+        StripedInventoryCounter counter = new StripedInventoryCounter(64, 8);
+
+        // Few tickets across many stripes, so most reservations fall back to a sweep
+        List<int[]> results = runBuyers(() -> {
+            int held = 0;
+            for (int i = 0; i < 20_000; i++) {
+                int quantity = ThreadLocalRandom.current().nextInt(1, 8);
+                if (counter.reserve(quantity) == InventoryCounter.Outcome.RESERVED) {
+                    held += quantity;
+                }
+                if (held > 0 && ThreadLocalRandom.current().nextBoolean()) {
+                    int returned = ThreadLocalRandom.current().nextInt(1, held + 1);
+                    assertThat(counter.release(returned)).isTrue();
+                    held -= returned;
+                }
+            }
+            return new int[]{held};
+        });
+
+        int held = results.stream().mapToInt(result -> result[0]).sum();
+        assertThat(held + counter.available()).isEqualTo(64);
+    }
+
+    @Test
+    void sweepGathersTicketsSpreadOverStripes() {
+        StripedInventoryCounter counter = new StripedInventoryCounter(8, 8);
+
+        // One ticket per stripe: no stripe covers the request alone
+        assertThat(counter.reserve(8)).isEqualTo(InventoryCounter.Outcome.RESERVED);
+        assertThat(counter.available()).isZero();
+        assertThat(counter.reserve(1)).isEqualTo(InventoryCounter.Outcome.INSUFFICIENT);
+    }
+
+    @Test
+    void retiredCounterTurnsEveryoneAway() {
+        StripedInventoryCounter counter = new StripedInventoryCounter(10, 4);
+        assertThat(counter.reserve(3)).isEqualTo(InventoryCounter.Outcome.RESERVED);
+
+        assertThat(counter.retire()).isEqualTo(7);
+        assertThat(counter.reserve(1)).isEqualTo(InventoryCounter.Outcome.RETIRED);
+        assertThat(counter.release(1)).isFalse();
+        assertThat(counter.available()).isZero();
+    }
+
+    private static List<int[]> runBuyers(Callable<int[]> buyer) throws Exception {
+        ExecutorService buyers = Executors.newFixedThreadPool(BUYERS);
+        try {
+            List<Callable<int[]>> tasks = new ArrayList<>(BUYERS);
+            for (int i = 0; i < BUYERS; i++) {
+                tasks.add(buyer);
+            }
+            List<int[]> results = new ArrayList<>(BUYERS);
+            for (Future<int[]> result : buyers.invokeAll(tasks)) {
+                results.add(result.get());
+            }
+            return results;
+        } finally {
+            buyers.shutdown();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package org.ufop.web.events.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.ufop.web.events.dto.CreateEventDTO;
+import org.ufop.web.events.dto.TicketHoldDTO;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:sqlite:target/ticket-hold-test.db",
+        "events.holds.wheel-tick-ms=10"
+})
+class TicketHoldServiceTest {
+
+    @Autowired
+    private TicketHoldService holds;
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private TicketInventoryLedger ledger;
+
+    @Test
+    void confirmedHoldKeepsItsTickets() {
+        UUID eventId = createEvent(10);
+        TicketHoldDTO hold = holds.createHold(eventId, 4, null);
+        assertThat(ledger.peek(eventId)).isEqualTo(6);
+
+        assertThat(holds.confirmHold(hold.getId()).getStatus()).isEqualTo("CONFIRMED");
+        // Confirming again is a no-op, releasing a confirmed hold is refused
+        assertThat(holds.confirmHold(hold.getId()).getStatus()).isEqualTo("CONFIRMED");
+        assertThatThrownBy(() -> holds.releaseHold(hold.getId())).isInstanceOf(IllegalStateException.class);
+        assertThat(ledger.peek(eventId)).isEqualTo(6);
+    }
+
+    @Test
+    void releasedHoldReturnsItsTickets() {
+        UUID eventId = createEvent(10);
+        TicketHoldDTO hold = holds.createHold(eventId, 4, null);
+
+        assertThat(holds.releaseHold(hold.getId()).getStatus()).isEqualTo("RELEASED");
+        assertThat(ledger.peek(eventId)).isEqualTo(10);
+    }
+
+    @Test
+    void holdShortOfTicketsIsRefused() {
+        UUID eventId = createEvent(3);
+
+        assertThat(holds.createHold(eventId, 4, null)).isNull();
+        assertThat(ledger.peek(eventId)).isEqualTo(3);
+    }
+
+    @Test
+    void expiredHoldReturnsItsTicketsOnce() throws InterruptedException {
+        UUID eventId = createEvent(10);
+        TicketHoldDTO hold = holds.createHold(eventId, 4, 1L);
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!holds.getHold(hold.getId()).getStatus().equals("EXPIRED") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+
+        assertThat(holds.getHold(hold.getId()).getStatus()).isEqualTo("EXPIRED");
+        assertThat(ledger.peek(eventId)).isEqualTo(10);
+        assertThatThrownBy(() -> holds.confirmHold(hold.getId())).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> holds.releaseHold(hold.getId())).isInstanceOf(IllegalStateException.class);
+        assertThat(ledger.peek(eventId)).isEqualTo(10);
+    }
+
+    @Test
+    void racingConfirmAndReleaseSettleTheHoldOnce() throws Exception {
+        UUID eventId = createEvent(10);
+        TicketHoldDTO hold = holds.createHold(eventId, 4, null);
+
+        int callers = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Callable<String>> tasks = new ArrayList<>(callers);
+        for (int i = 0; i < callers; i++) {
+            boolean confirm = i % 2 == 0;
+            tasks.add(() -> {
+                start.await();
+                return (confirm ? holds.confirmHold(hold.getId()) : holds.releaseHold(hold.getId())).getStatus();
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        List<String> settled = new ArrayList<>();
+        try {
+            List<Future<String>> results = new ArrayList<>(callers);
+            for (Callable<String> task : tasks) {
+                results.add(executor.submit(task));
+            }
+            start.countDown();
+            for (Future<String> result : results) {
+                try {
+                    settled.add(result.get());
+                } catch (ExecutionException e) {
+                    assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // Every call that went through saw the same outcome, and the tickets moved once
+        String outcome = holds.getHold(hold.getId()).getStatus();
+        assertThat(settled).isNotEmpty().containsOnly(outcome);
+        assertThat(ledger.peek(eventId)).isEqualTo(outcome.equals("CONFIRMED") ? 6 : 10);
+    }
+
+    private UUID createEvent(int tickets) {
+        CreateEventDTO dto = new CreateEventDTO();
+        dto.setTitle("Hold test");
+        dto.setLocation("Ouro Preto");
+        dto.setCategory("MUSIC");
+        dto.setEventDate(LocalDateTime.now().plusMonths(1));
+        dto.setPrice(50.0);
+        dto.setTotalTickets(tickets);
+        return eventService.createEvent(dto).getId();
+    }
+}
@@ -0,0 +1,134 @@
+package org.ufop.web.events.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.ufop.web.events.dto.CreateEventDTO;
+import org.ufop.web.events.model.Event;
+import org.ufop.web.events.repository.EventRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:sqlite:target/inventory-ledger-test.db")
+class TicketInventoryLedgerTest {
+
+    private static final int BUYERS = 16;
+
+    @Autowired
+    private EventService eventService;
+
+    @Autowired
+    private TicketInventoryLedger ledger;
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Test
+    void concurrentReservationsNeverOversell() throws Exception {
+        UUID eventId = createEvent(1000);
+
+        List<Integer> sold = runBuyers(() -> {
+            int tickets = 0;
+            // Without releases availability only falls, so a rejected single ticket means sold out
+            while (true) {
+                int quantity = ThreadLocalRandom.current().nextInt(1, 4);
+                if (ledger.reserve(eventId, quantity)) {
+                    tickets += quantity;
+                } else if (ledger.reserve(eventId, 1)) {
+                    tickets++;
+                } else {
+                    return tickets;
+                }
+            }
+        });
+
+        assertThat(sold.stream().mapToInt(Integer::intValue).sum()).isEqualTo(1000);
+        assertThat(ledger.peek(eventId)).isZero();
+        // Reservations are in the table before they are acknowledged
+        Event event = eventRepository.findById(eventId).orElseThrow();
+        assertThat(event.getAvailableTickets()).isZero();
+        assertThat(event.getStatus()).isEqualTo(Event.EventStatus.SOLD_OUT);
+    }
+
+    @Test
+    void releasesRacingReservationsKeepTheTotal() throws Exception {
+        UUID eventId = createEvent(100);
+
+        List<Integer> held = runBuyers(() -> {
+            int tickets = 0;
+            for (int i = 0; i < 200; i++) {
+                int quantity = ThreadLocalRandom.current().nextInt(1, 4);
+                if (ledger.reserve(eventId, quantity)) {
+                    tickets += quantity;
+                }
+                if (tickets > 0 && ThreadLocalRandom.current().nextBoolean()) {
+                    ledger.release(eventId, 1);
+                    tickets--;
+                }
+            }
+            return tickets;
+        });
+
+        int sold = held.stream().mapToInt(Integer::intValue).sum();
+        assertThat(sold + ledger.peek(eventId)).isEqualTo(100);
+        ledger.flush();
+        assertThat(eventRepository.findById(eventId).orElseThrow().getAvailableTickets()).isEqualTo(100 - sold);
+    }
+
+    @Test
+    void savingAStaleEventKeepsTheLedgerCount() {
+        UUID eventId = createEvent(100);
+        Event loaded = eventRepository.findById(eventId).orElseThrow();
+
+        // An edit that read the event before these reservations were written back
+        assertThat(ledger.reserve(eventId, 30)).isTrue();
+        loaded.setTitle("Renamed");
+        eventRepository.save(loaded);
+
+        Event event = eventRepository.findById(eventId).orElseThrow();
+        assertThat(event.getTitle()).isEqualTo("Renamed");
+        assertThat(event.getAvailableTickets()).isEqualTo(70);
+    }
+
+    private UUID createEvent(int tickets) {
+        return eventService.createEvent(newEvent(tickets)).getId();
+    }
+
+    private static CreateEventDTO newEvent(int tickets) {
+        CreateEventDTO dto = new CreateEventDTO();
+        dto.setTitle("Ledger test");
+        dto.setLocation("Ouro Preto");
+        dto.setCategory("MUSIC");
+        dto.setEventDate(LocalDateTime.now().plusMonths(1));
+        dto.setPrice(50.0);
+        dto.setTotalTickets(tickets);
+        return dto;
+    }
+
+    private static List<Integer> runBuyers(Callable<Integer> buyer) throws Exception {
+        ExecutorService buyers = Executors.newFixedThreadPool(BUYERS);
+        try {
+            List<Callable<Integer>> tasks = new ArrayList<>(BUYERS);
+            for (int i = 0; i < BUYERS; i++) {
+                tasks.add(buyer);
+            }
+            List<Integer> results = new ArrayList<>(BUYERS);
+            for (Future<Integer> result : buyers.invokeAll(tasks)) {
+                results.add(result.get());
+            }
+            return results;
+        } finally {
+            buyers.shutdown();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.ufop.web.events.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TimingWheelTest {
+
+    private static final Duration TICK = Duration.ofMillis(10);
+
+    @Test
+    void timeoutBeyondOneTurnWaitsForItsRounds() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        // 4 buckets of 10 ms: a 300 ms timeout goes around the wheel several times first
+        try (TimingWheel<String> wheel = new TimingWheel<>("test-wheel", TICK, 4, expired -> fired.countDown())) {
+            long started = System.nanoTime();
+            wheel.schedule("late", Duration.ofMillis(300));
+
+            assertThat(fired.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(Duration.ofNanos(System.nanoTime() - started)).isGreaterThanOrEqualTo(Duration.ofMillis(300));
+        }
+    }
+
+    @Test
+    void cancelledTimeoutNeverFires() throws InterruptedException {
+        Queue<String> expired = new ConcurrentLinkedQueue<>();
+        CountDownLatch fired = new CountDownLatch(1);
+        try (TimingWheel<String> wheel = new TimingWheel<>("test-wheel", TICK, 8, batch -> {
+            expired.addAll(batch);
+            fired.countDown();
+        })) {
+            wheel.schedule("cancelled", Duration.ofMillis(50)).cancel();
+            wheel.schedule("kept", Duration.ofMillis(100));
+
+            assertThat(fired.await(5, TimeUnit.SECONDS)).isTrue();
+            // Give the cancelled one a few more turns to show up
+            Thread.sleep(200);
+            assertThat(expired).containsExactly("kept");
+        }
+    }
+
+    @Test
+    void timeoutsDueTogetherExpireAsOneBatch() throws InterruptedException {
+        Queue<List<Integer>> batches = new ConcurrentLinkedQueue<>();
+        CountDownLatch fired = new CountDownLatch(1);
+        try (TimingWheel<Integer> wheel = new TimingWheel<>("test-wheel", Duration.ofMillis(500), 8, batch -> {
+            batches.add(batch);
+            fired.countDown();
+        })) {
+            // Overdue timeouts all land in the bucket being expired next
+            for (int i = 0; i < 100; i++) {
+                wheel.schedule(i, Duration.ZERO);
+            }
+
+            assertThat(fired.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(batches).singleElement().asList().hasSize(100);
+        }
+    }
+
+    @Test
+    void wheelSizeMustBeAPowerOfTwo() {
+        assertThatThrownBy(() -> new TimingWheel<String>("test-wheel", TICK, 6, expired -> {
+        })).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,100 @@
+package org.ufop.web.events.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import org.ufop.web.events.dto.QueueTicketDTO;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatNoException;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WaitingRoomServiceTest {
+
+    private final UUID eventId = UUID.randomUUID();
+    private final WaitingRoomService waitingRoom = new WaitingRoomService("test-secret", 600, 900);
+
+    @Test
+    void admissionTokenBuysOnce() {
+        waitingRoom.open(eventId, 10);
+        String token = admit(waitingRoom.join(eventId));
+
+        assertThatNoException().isThrownBy(() -> waitingRoom.checkAdmission(eventId, token));
+        assertRefused(() -> waitingRoom.checkAdmission(eventId, token));
+    }
+
+    @Test
+    void queuedBuyerIsRefusedUntilAdmitted() {
+        waitingRoom.open(eventId, 10);
+        QueueTicketDTO first = waitingRoom.join(eventId);
+        QueueTicketDTO second = waitingRoom.join(eventId);
+
+        assertThat(second.getAdmitted()).isFalse();
+        assertThat(second.getAhead()).isEqualTo(1);
+        assertRefused(() -> waitingRoom.checkAdmission(eventId, null));
+
+        // One admission per 100 ms tick at 10 per second lets the first buyer in only
+        waitingRoom.admit();
+        assertThat(waitingRoom.getTicket(eventId, first.getPosition(), first.getQueueToken()).getAdmitted()).isTrue();
+        assertThat(waitingRoom.getTicket(eventId, second.getPosition(), second.getQueueToken()).getAdmitted()).isFalse();
+    }
+
+    @Test
+    void expiredAdmissionTokenIsRefused() throws InterruptedException {
+        WaitingRoomService shortLived = new WaitingRoomService("test-secret", 1, 900);
+        shortLived.open(eventId, 10);
+        String token = admit(shortLived, shortLived.join(eventId));
+
+        // Expiry has one second resolution
+        Thread.sleep(2_100);
+        assertRefused(() -> shortLived.checkAdmission(eventId, token));
+    }
+
+    @Test
+    void tokenFromAClosedRoomIsRefusedWhenItReopens() {
+        waitingRoom.open(eventId, 10);
+        String token = admit(waitingRoom.join(eventId));
+
+        waitingRoom.close(eventId);
+        waitingRoom.open(eventId, 10);
+
+        assertRefused(() -> waitingRoom.checkAdmission(eventId, token));
+    }
+
+    @Test
+    void tamperedTokenIsRefused() {
+        waitingRoom.open(eventId, 10);
+        String token = admit(waitingRoom.join(eventId));
+        String[] parts = token.split("\\.");
+
+        assertRefused(() -> waitingRoom.checkAdmission(eventId, "2." + parts[1] + "." + parts[2]));
+    }
+
+    @Test
+    void joiningWithoutARoomIsRefused() {
+        assertThatThrownBy(() -> waitingRoom.join(eventId))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND));
+        // Without a room reservations need no token
+        assertThatNoException().isThrownBy(() -> waitingRoom.checkAdmission(eventId, null));
+    }
+
+    private String admit(QueueTicketDTO ticket) {
+        return admit(waitingRoom, ticket);
+    }
+
+    private String admit(WaitingRoomService service, QueueTicketDTO ticket) {
+        service.admit();
+        QueueTicketDTO admitted = service.getTicket(eventId, ticket.getPosition(), ticket.getQueueToken());
+        assertThat(admitted.getAdmitted()).isTrue();
+        return admitted.getAdmissionToken();
+    }
+
+    private static void assertRefused(Runnable check) {
+        assertThatThrownBy(check::run)
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS));
+    }
+}
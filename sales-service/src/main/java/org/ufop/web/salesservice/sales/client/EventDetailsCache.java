@@ -0,0 +1,162 @@
+package org.ufop.web.salesservice.sales.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Bounded near cache of event details in front of {@link EventsServiceClient}.
+ * <p>
+ * Entries live for a short TTL and the least recently used ones are evicted once the cache
+ * is full. Lookups go through the batch endpoint, which leaves unknown ids out instead of
+ * failing, so a missing event is cached as a negative entry with its own (shorter) TTL and
+ * repeated lookups of a bad id do not reach events-service either. Entries are never
+ * invalidated, so prices and availability served from here may be up to one TTL old;
+ * anything that has to be authoritative, such as a reservation, goes to events-service.
+ */
+@Component
+@Slf4j
+public class EventDetailsCache {
+
+    // Matches the events-service batch limit
+    private static final int BATCH_SIZE = 500;
+
+    private final EventsServiceClient eventsServiceClient;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+
+    // Guarded by this; access-ordered so iteration starts at the least recently used entry
+    private final LinkedHashMap<UUID, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final Counter hits;
+    private final Counter negativeHits;
+    private final Counter misses;
+    private final Counter fetchFailures;
+    private final Counter sizeEvictions;
+    private final Counter expiredEvictions;
+
+    public EventDetailsCache(EventsServiceClient eventsServiceClient,
+                             MeterRegistry meterRegistry,
+                             @Value("${sales.event-cache.max-size:10000}") int maxSize,
+                             @Value("${sales.event-cache.ttl-seconds:30}") long ttlSeconds,
+                             @Value("${sales.event-cache.negative-ttl-seconds:5}") long negativeTtlSeconds) {
+        this.eventsServiceClient = eventsServiceClient;
+        this.maxSize = maxSize;
+        this.ttlNanos = Duration.ofSeconds(ttlSeconds).toNanos();
+        this.negativeTtlNanos = Duration.ofSeconds(negativeTtlSeconds).toNanos();
+
+        this.hits = requests(meterRegistry, "hit");
+        this.negativeHits = requests(meterRegistry, "negative_hit");
+        this.misses = requests(meterRegistry, "miss");
+        this.fetchFailures = Counter.builder("sales.event-cache.fetch-failures").register(meterRegistry);
+        this.sizeEvictions = evictions(meterRegistry, "size");
+        this.expiredEvictions = evictions(meterRegistry, "expired");
+        meterRegistry.gauge("sales.event-cache.size", this, EventDetailsCache::size);
+    }
+
+    /**
+     * @return the event, or {@code null} if events-service does not know it
+     */
+    public EventDTO get(UUID eventId) {
+        return getAll(List.of(eventId), false).get(eventId);
+    }
+
+    /**
+     * The known events among {@code eventIds}, fetching the ones not cached in batches.
+     * Unknown ids are absent from the result, and so are the ids of a batch events-service
+     * failed to return; the other batches are still used.
+     */
+    public Map<UUID, EventDTO> getAll(Collection<UUID> eventIds) {
+        return getAll(eventIds, true);
+    }
+
+    private Map<UUID, EventDTO> getAll(Collection<UUID> eventIds, boolean partial) {
+        Map<UUID, EventDTO> events = new HashMap<>(eventIds.size() * 2);
+        Set<UUID> missing = new LinkedHashSet<>();
+        long now = System.nanoTime();
+
+        synchronized (this) {
+            for (UUID eventId : eventIds) {
+                Entry entry = entries.get(eventId);
+                if (entry != null && entry.expiresAt - now > 0) {
+                    if (entry.event != null) {
+                        hits.increment();
+                        events.put(eventId, entry.event);
+                    } else {
+                        negativeHits.increment();
+                    }
+                } else if (missing.add(eventId)) {
+                    misses.increment();
+                }
+            }
+        }
+
+        List<UUID> ids = new ArrayList<>(missing);
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            List<UUID> chunk = ids.subList(from, Math.min(from + BATCH_SIZE, ids.size()));
+            Map<UUID, EventDTO> fetched = new HashMap<>(chunk.size() * 2);
+            try {
+                eventsServiceClient.getEventsByIds(chunk).forEach(event -> fetched.put(event.getId(), event));
+            } catch (RuntimeException e) {
+                if (!partial) {
+                    throw e;
+                }
+                fetchFailures.increment();
+                log.warn("Could not fetch event details for {} events", chunk.size(), e);
+                continue;
+            }
+            events.putAll(fetched);
+            store(chunk, fetched);
+        }
+        return events;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized void store(List<UUID> eventIds, Map<UUID, EventDTO> fetched) {
+        long now = System.nanoTime();
+        for (UUID eventId : eventIds) {
+            EventDTO event = fetched.get(eventId);
+            entries.put(eventId, new Entry(event, now + (event != null ? ttlNanos : negativeTtlNanos)));
+        }
+
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > maxSize && eldest.hasNext()) {
+            Entry entry = eldest.next();
+            eldest.remove();
+            (entry.expiresAt - now > 0 ? sizeEvictions : expiredEvictions).increment();
+        }
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("sales.event-cache.requests")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static Counter evictions(MeterRegistry meterRegistry, String cause) {
+        return Counter.builder("sales.event-cache.evictions")
+                .tag("cause", cause)
+                .register(meterRegistry);
+    }
+
+    private record Entry(EventDTO event, long expiresAt) {
+    }
+}
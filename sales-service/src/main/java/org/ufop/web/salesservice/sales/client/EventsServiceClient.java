@@ -4,8 +4,11 @@ import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 @FeignClient(name = "events-service", url = "${events.service.url:http://localhost:5001}")
@@ -14,9 +17,36 @@ public interface EventsServiceClient {
     @GetMapping("/api/events/{id}")
     EventDTO getEventById(@PathVariable("id") UUID id);
 
-    @GetMapping("/api/events/{id}/exists")
-    Boolean checkEventExists(@PathVariable("id") UUID id);
+    /**
+     * Events for up to 500 ids in one call; unknown ids are left out of the result.
+     */
+    @PostMapping("/api/events/batch")
+    List<EventDTO> getEventsByIds(@RequestBody Collection<UUID> ids);
 
     @PostMapping("/api/events/{id}/reserve-tickets")
     Boolean reserveTickets(@PathVariable("id") UUID id, @RequestParam("quantity") int quantity);
+
+    /**
+     * Validates the event, reserves the tickets (on a timed hold with {@code holdTtlSeconds})
+     * and returns the unit price they were reserved at. 404 if the event does not exist, 409
+     * if it is not on sale or short of tickets.
+     */
+    @PostMapping("/api/events/{id}/reservations")
+    ReservationDTO reserveAndQuote(@PathVariable("id") UUID id,
+                                   @RequestParam("quantity") int quantity,
+                                   @RequestParam(value = "holdTtlSeconds", required = false) Long holdTtlSeconds);
+
+    /**
+     * Reserves every line or none (409 Conflict). With {@code holdTtlSeconds} the tickets
+     * are placed on timed holds instead.
+     */
+    @PostMapping("/api/events/reserve-tickets")
+    List<ReservationDTO> reserveTicketsBatch(@RequestBody List<TicketReservationDTO> items,
+                                             @RequestParam(value = "holdTtlSeconds", required = false) Long holdTtlSeconds);
+
+    @PostMapping("/api/events/holds/{holdId}/confirm")
+    TicketHoldDTO confirmHold(@PathVariable("holdId") UUID holdId);
+
+    @PostMapping("/api/events/holds/{holdId}/release")
+    TicketHoldDTO releaseHold(@PathVariable("holdId") UUID holdId);
 }
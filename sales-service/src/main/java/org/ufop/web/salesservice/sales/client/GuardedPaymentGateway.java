@@ -0,0 +1,187 @@
+package org.ufop.web.salesservice.sales.client;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps a slow or failing acquirer from taking sales-service down with it.
+ * <p>
+ * Three guards run in front of the real gateway, cheapest first:
+ * <ul>
+ *   <li>a circuit breaker, which turns calls away at once while the acquirer keeps failing;</li>
+ *   <li>a bulkhead of {@code maxConcurrentCalls} permits, waited for at most {@code maxWait},
+ *       so a slow acquirer ties up a fixed number of threads and not the whole request pool;</li>
+ *   <li>a timeout: the call runs on the bulkhead's own threads and the caller stops waiting
+ *       after {@code timeout}.</li>
+ * </ul>
+ * A call that timed out keeps its permit until the acquirer actually returns, so calls stuck
+ * in a hung acquirer can never add up beyond the bulkhead. Errors and timeouts count as
+ * failures for the breaker; declines are answers and count as successes. Reversals go through
+ * the same guards as authorizations.
+ */
+@Slf4j
+public class GuardedPaymentGateway implements PaymentGateway {
+
+    private final PaymentGateway delegate;
+    private final CircuitBreaker breaker;
+    private final Semaphore bulkhead;
+    private final long maxWaitNanos;
+    private final long timeoutNanos;
+    private final ThreadPoolExecutor executor;
+    private final Map<Outcome, Timer> calls = new EnumMap<>(Outcome.class);
+
+    private enum Outcome {
+        APPROVED, DECLINED, REVERSED, ERROR, TIMEOUT, BULKHEAD_FULL, CIRCUIT_OPEN
+    }
+
+    public GuardedPaymentGateway(PaymentGateway delegate, CircuitBreaker breaker, int maxConcurrentCalls,
+                                 Duration maxWait, Duration timeout, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.breaker = breaker;
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.maxWaitNanos = maxWait.toNanos();
+        this.timeoutNanos = timeout.toNanos();
+
+        AtomicInteger threads = new AtomicInteger();
+        // Never more tasks than permits, so the queue only ever bridges a thread finishing its previous call
+        this.executor = new ThreadPoolExecutor(maxConcurrentCalls, maxConcurrentCalls, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), task -> {
+            Thread thread = new Thread(task, "payment-gateway-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+
+        for (Outcome outcome : Outcome.values()) {
+            calls.put(outcome, Timer.builder("sales.gateway.calls")
+                    .description("Payment gateway authorizations and reversals, including the ones turned away")
+                    .tag("outcome", outcome.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        Gauge.builder("sales.gateway.bulkhead.in-use", bulkhead, b -> maxConcurrentCalls - b.availablePermits())
+                .description("Gateway calls in flight, including timed-out ones still waiting on the acquirer")
+                .register(meterRegistry);
+        Gauge.builder("sales.gateway.circuit.state", breaker, b -> b.state().ordinal())
+                .description("0 closed, 1 open, 2 half-open")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public AuthorizationResult authorize(AuthorizationRequest request) {
+        long started = System.nanoTime();
+        AuthorizationResult result = call(() -> delegate.authorize(request), request, started);
+        record(result.approved() ? Outcome.APPROVED : Outcome.DECLINED, started);
+        return result;
+    }
+
+    @Override
+    public void reverse(String transactionId, double amount) {
+        long started = System.nanoTime();
+        call(() -> {
+            delegate.reverse(transactionId, amount);
+            return null;
+        }, "reversal of " + transactionId, started);
+        record(Outcome.REVERSED, started);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Runs {@code action} against the acquirer behind the breaker, the bulkhead and the timeout.
+     */
+    private <T> T call(Callable<T> action, Object description, long started) {
+        if (!breaker.tryAcquire()) {
+            record(Outcome.CIRCUIT_OPEN, started);
+            long retryAfter = breaker.retryAfterSeconds();
+            throw new PaymentGatewayException(PaymentGatewayException.Reason.CIRCUIT_OPEN,
+                    "Payment gateway is unavailable, try again in " + retryAfter + "s", retryAfter, null);
+        }
+
+        Future<T> call;
+        try {
+            call = submit(action);
+        } catch (RuntimeException e) {
+            breaker.release();
+            throw e;
+        } catch (InterruptedException e) {
+            breaker.release();
+            Thread.currentThread().interrupt();
+            throw new PaymentGatewayException(PaymentGatewayException.Reason.ERROR, "Payment gateway call was interrupted");
+        }
+        if (call == null) {
+            breaker.release();
+            record(Outcome.BULKHEAD_FULL, started);
+            throw new PaymentGatewayException(PaymentGatewayException.Reason.BULKHEAD_FULL,
+                    "Too many payments are being authorized, try again shortly");
+        }
+
+        try {
+            T result = call.get(timeoutNanos, TimeUnit.NANOSECONDS);
+            breaker.onSuccess();
+            return result;
+        } catch (TimeoutException e) {
+            call.cancel(true);
+            breaker.onFailure();
+            record(Outcome.TIMEOUT, started);
+            throw new PaymentGatewayException(PaymentGatewayException.Reason.TIMEOUT,
+                    "Payment gateway did not answer in time", 1, e);
+        } catch (ExecutionException e) {
+            breaker.onFailure();
+            record(Outcome.ERROR, started);
+            if (e.getCause() instanceof PaymentGatewayException cause) {
+                throw cause;
+            }
+            log.warn("Payment gateway failed for {}", description, e.getCause());
+            throw new PaymentGatewayException(PaymentGatewayException.Reason.ERROR,
+                    "Payment gateway failed", 1, e.getCause());
+        } catch (InterruptedException e) {
+            call.cancel(true);
+            breaker.release();
+            Thread.currentThread().interrupt();
+            throw new PaymentGatewayException(PaymentGatewayException.Reason.ERROR, "Payment gateway call was interrupted");
+        }
+    }
+
+    /**
+     * Starts the call once a bulkhead permit is free, or returns null if none frees up in time.
+     */
+    private <T> Future<T> submit(Callable<T> action) throws InterruptedException {
+        if (!bulkhead.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS)) {
+            return null;
+        }
+        try {
+            return executor.submit(() -> {
+                try {
+                    return action.call();
+                } finally {
+                    bulkhead.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            bulkhead.release();
+            throw new PaymentGatewayException(PaymentGatewayException.Reason.ERROR, "Payment gateway is shut down");
+        }
+    }
+
+    private void record(Outcome outcome, long started) {
+        calls.get(outcome).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,62 @@
+package org.ufop.web.salesservice.sales.client;
+
+import org.ufop.web.salesservice.sales.model.Payment;
+
+import java.util.UUID;
+
+/**
+ * The acquirer that authorizes card payments. Which one is used is chosen with
+ * {@code sales.gateway.type}; see {@code PaymentGatewayConfig}.
+ */
+public interface PaymentGateway {
+
+    /**
+     * Asks the acquirer to authorize the charge. A declined card is an answer, not an error.
+     *
+     * @throws PaymentGatewayException if no answer could be obtained
+     */
+    AuthorizationResult authorize(AuthorizationRequest request);
+
+    /**
+     * Asks the acquirer to reverse the authorization made for {@code transactionId}, so the
+     * customer is not charged for a payment that will not be used. Reversing an authorization
+     * that was declined, never reached the acquirer or was already reversed does nothing, so
+     * it is safe after a timeout and safe to repeat.
+     *
+     * @throws PaymentGatewayException if no answer could be obtained
+     */
+    void reverse(String transactionId, double amount);
+
+    /**
+     * @param transactionId the payment's own id, which the acquirer keeps as the merchant
+     *                      reference and reversals refer to
+     */
+    record AuthorizationRequest(UUID saleId,
+                                String transactionId,
+                                Payment.PaymentMethod method,
+                                double amount,
+                                String cardNumber,
+                                String cardHolder,
+                                String cardExpiry,
+                                String cardCvv,
+                                Integer installments) {
+
+        @Override
+        public String toString() {
+            // Card data must never reach the logs
+            return "AuthorizationRequest[saleId=" + saleId + ", transactionId=" + transactionId
+                    + ", method=" + method + ", amount=" + amount + "]";
+        }
+    }
+
+    record AuthorizationResult(boolean approved, String reason) {
+
+        public static AuthorizationResult approve() {
+            return new AuthorizationResult(true, null);
+        }
+
+        public static AuthorizationResult decline(String reason) {
+            return new AuthorizationResult(false, reason);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package org.ufop.web.salesservice.sales.client;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+/**
+ * The payment gateway gave no answer: it failed, was too slow, or was not called at all
+ * because it is already overloaded or failing.
+ */
+@Getter
+public class PaymentGatewayException extends RuntimeException {
+
+    public enum Reason {
+        /** The acquirer returned an error */
+        ERROR,
+        /** The acquirer did not answer within the timeout */
+        TIMEOUT,
+        /** Too many calls to the acquirer were already in flight */
+        BULKHEAD_FULL,
+        /** Recent calls failed too often; the acquirer is left alone for a while */
+        CIRCUIT_OPEN
+    }
+
+    private final Reason reason;
+    private final long retryAfterSeconds;
+
+    public PaymentGatewayException(Reason reason, String message) {
+        this(reason, message, 1, null);
+    }
+
+    public PaymentGatewayException(Reason reason, String message, long retryAfterSeconds, Throwable cause) {
+        super(message, cause);
+        this.reason = reason;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Whether the call was turned away before it reached the acquirer, so it cannot have
+     * authorized anything. After a timeout or an error the acquirer may still have approved it.
+     */
+    public boolean notAttempted() {
+        return reason == Reason.BULKHEAD_FULL || reason == Reason.CIRCUIT_OPEN;
+    }
+
+    /**
+     * How the failure is answered to the client.
+     */
+    public HttpStatus status() {
+        return switch (reason) {
+            case TIMEOUT -> HttpStatus.GATEWAY_TIMEOUT;
+            case ERROR -> HttpStatus.BAD_GATEWAY;
+            case BULKHEAD_FULL, CIRCUIT_OPEN -> HttpStatus.SERVICE_UNAVAILABLE;
+        };
+    }
+}
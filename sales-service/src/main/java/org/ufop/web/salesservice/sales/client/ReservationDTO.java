@@ -0,0 +1,16 @@
+package org.ufop.web.salesservice.sales.client;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+public class ReservationDTO {
+    private UUID eventId;
+    private Integer quantity;
+    private Double unitPrice;
+    private UUID holdId;
+    private String description;
+    private LocalDateTime eventDate;
+}
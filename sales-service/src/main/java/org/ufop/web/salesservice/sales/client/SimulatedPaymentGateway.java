@@ -0,0 +1,112 @@
+package org.ufop.web.salesservice.sales.client;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Local stand-in for an acquirer, for development and for load-testing checkout against a
+ * slow or failing gateway.
+ * <p>
+ * Each call waits a latency drawn from the configured distribution, then fails with
+ * {@code error-rate}, declines with {@code decline-rate} and approves otherwise. With
+ * {@code hang-rate} a call instead waits {@code hang-ms}, like an acquirer that stopped
+ * answering. Reversals take the same latency and fail with the same {@code error-rate}.
+ * Latency distributions:
+ * <ul>
+ *   <li>{@code constant}: always {@code latency-median-ms}</li>
+ *   <li>{@code uniform}: between 0 and twice {@code latency-median-ms}</li>
+ *   <li>{@code log-normal}: median {@code latency-median-ms} with a long tail whose 99th
+ *       percentile is {@code latency-p99-ms}, close to what real acquirers show</li>
+ * </ul>
+ * Cards ending in 0002 are always declined. The defaults approve everything instantly.
+ */
+@Slf4j
+public class SimulatedPaymentGateway implements PaymentGateway {
+
+    // z-score of the 99th percentile of the standard normal distribution
+    private static final double Z_99 = 2.3263;
+
+    public enum Latency {
+        CONSTANT, UNIFORM, LOG_NORMAL;
+
+        public static Latency parse(String name) {
+            return valueOf(name.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final Latency latency;
+    private final long medianMs;
+    private final double sigma;
+    private final double declineRate;
+    private final double errorRate;
+    private final double hangRate;
+    private final long hangMs;
+
+    public SimulatedPaymentGateway(Latency latency, long medianMs, long p99Ms,
+                                   double declineRate, double errorRate, double hangRate, long hangMs) {
+        if (latency == Latency.LOG_NORMAL && (medianMs <= 0 || p99Ms < medianMs)) {
+            throw new IllegalArgumentException("Log-normal latency needs 0 < latency-median-ms <= latency-p99-ms");
+        }
+        this.latency = latency;
+        this.medianMs = medianMs;
+        this.sigma = latency == Latency.LOG_NORMAL ? Math.log((double) p99Ms / medianMs) / Z_99 : 0;
+        this.declineRate = declineRate;
+        this.errorRate = errorRate;
+        this.hangRate = hangRate;
+        this.hangMs = hangMs;
+    }
+
+    @Override
+    public AuthorizationResult authorize(AuthorizationRequest request) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < hangRate) {
+            sleep(hangMs);
+        } else {
+            sleep(sampleLatency(random));
+        }
+
+        double outcome = random.nextDouble();
+        if (outcome < errorRate) {
+            throw new PaymentGatewayException(PaymentGatewayException.Reason.ERROR, "Simulated acquirer error");
+        }
+        String cardNumber = request.cardNumber() != null ? request.cardNumber().replaceAll("\\s", "") : "";
+        if (cardNumber.endsWith("0002") || outcome < errorRate + declineRate) {
+            return AuthorizationResult.decline("Card declined by the issuer");
+        }
+
+        log.debug("Simulated approval for sale {}", request.saleId());
+        return AuthorizationResult.approve();
+    }
+
+    @Override
+    public void reverse(String transactionId, double amount) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        sleep(sampleLatency(random));
+        if (random.nextDouble() < errorRate) {
+            throw new PaymentGatewayException(PaymentGatewayException.Reason.ERROR, "Simulated acquirer error");
+        }
+        log.debug("Simulated reversal of {}", transactionId);
+    }
+
+    private long sampleLatency(ThreadLocalRandom random) {
+        return switch (latency) {
+            case CONSTANT -> medianMs;
+            case UNIFORM -> medianMs > 0 ? random.nextLong(2 * medianMs + 1) : 0;
+            case LOG_NORMAL -> Math.round(medianMs * Math.exp(sigma * random.nextGaussian()));
+        };
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PaymentGatewayException(PaymentGatewayException.Reason.ERROR, "Authorization was interrupted");
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package org.ufop.web.salesservice.sales.client;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+public class TicketHoldDTO {
+    private UUID id;
+    private UUID eventId;
+    private Integer quantity;
+    private String status;
+    private LocalDateTime expiresAt;
+}
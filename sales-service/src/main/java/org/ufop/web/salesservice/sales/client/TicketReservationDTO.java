@@ -0,0 +1,15 @@
+package org.ufop.web.salesservice.sales.client;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TicketReservationDTO {
+    private UUID eventId;
+    private Integer quantity;
+}
@@ -1,5 +1,6 @@
 package org.ufop.web.salesservice.sales.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
@@ -22,7 +23,9 @@ public class DatabaseConfig {
 
     @SuppressWarnings("null")
     @Bean
-    public LocalContainerEntityManagerFactoryBean entityManagerFactory(DataSource dataSource) {
+    public LocalContainerEntityManagerFactoryBean entityManagerFactory(
+            DataSource dataSource,
+            @Value("${spring.jpa.show-sql:false}") boolean showSql) {
         LocalContainerEntityManagerFactoryBean em = new LocalContainerEntityManagerFactoryBean();
         em.setDataSource(dataSource);
         em.setPackagesToScan("org.ufop.web.salesservice.sales.model");  // Fixed
@@ -31,7 +34,8 @@ public class DatabaseConfig {
         Map<String, Object> properties = new HashMap<>();
         properties.put("hibernate.dialect", "org.hibernate.community.dialect.SQLiteDialect");
         properties.put("hibernate.hbm2ddl.auto", "update");
-        properties.put("hibernate.show_sql", true);
+        // Printing every statement to stdout costs more than most SQLite queries themselves
+        properties.put("hibernate.show_sql", showSql);
         properties.put("hibernate.format_sql", true);
 
         em.setJpaPropertyMap(properties);
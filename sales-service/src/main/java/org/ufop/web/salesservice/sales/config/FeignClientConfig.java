@@ -0,0 +1,32 @@
+package org.ufop.web.salesservice.sales.config;
+
+import feign.RequestInterceptor;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+@Configuration
+public class FeignClientConfig {
+
+    public static final String ADMISSION_HEADER = "X-Admission-Token";
+
+    /**
+     * Passes the buyer's waiting-room admission token through to events-service, which
+     * enforces admission on its reservation endpoints.
+     */
+    @Bean
+    public RequestInterceptor admissionTokenForwardingInterceptor() {
+        return template -> {
+            if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+                return;
+            }
+            HttpServletRequest request = attributes.getRequest();
+            String admissionToken = request.getHeader(ADMISSION_HEADER);
+            if (admissionToken != null) {
+                template.header(ADMISSION_HEADER, admissionToken);
+            }
+        };
+    }
+}
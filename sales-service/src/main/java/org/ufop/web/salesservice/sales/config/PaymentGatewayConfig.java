@@ -0,0 +1,57 @@
+package org.ufop.web.salesservice.sales.config;
+
+import org.ufop.web.salesservice.sales.client.CircuitBreaker;
+import org.ufop.web.salesservice.sales.client.GuardedPaymentGateway;
+import org.ufop.web.salesservice.sales.client.PaymentGateway;
+import org.ufop.web.salesservice.sales.client.SimulatedPaymentGateway;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+
+@Configuration
+public class PaymentGatewayConfig {
+
+    /**
+     * The acquirer chosen with {@code sales.gateway.type}, behind a circuit breaker, a
+     * bulkhead and a timeout. {@code simulator} is the only type so far; a real acquirer
+     * plugs in here as another {@link PaymentGateway}.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public GuardedPaymentGateway paymentGateway(
+            Environment environment,
+            MeterRegistry meterRegistry,
+            @Value("${sales.gateway.type:simulator}") String type,
+            @Value("${sales.gateway.max-concurrent-calls:16}") int maxConcurrentCalls,
+            @Value("${sales.gateway.max-wait-ms:0}") long maxWaitMs,
+            @Value("${sales.gateway.timeout-ms:3000}") long timeoutMs,
+            @Value("${sales.gateway.circuit-breaker.window-size:20}") int windowSize,
+            @Value("${sales.gateway.circuit-breaker.minimum-calls:10}") int minimumCalls,
+            @Value("${sales.gateway.circuit-breaker.failure-rate-threshold:50}") int failureRateThreshold,
+            @Value("${sales.gateway.circuit-breaker.open-ms:10000}") long openMs,
+            @Value("${sales.gateway.circuit-breaker.half-open-calls:3}") int halfOpenCalls) {
+        PaymentGateway acquirer = switch (type) {
+            case "simulator" -> simulator(environment);
+            default -> throw new IllegalArgumentException("Unknown sales.gateway.type: " + type);
+        };
+        CircuitBreaker breaker = new CircuitBreaker(windowSize, minimumCalls, failureRateThreshold,
+                Duration.ofMillis(openMs), halfOpenCalls);
+        return new GuardedPaymentGateway(acquirer, breaker, maxConcurrentCalls,
+                Duration.ofMillis(maxWaitMs), Duration.ofMillis(timeoutMs), meterRegistry);
+    }
+
+    private static SimulatedPaymentGateway simulator(Environment environment) {
+        String prefix = "sales.gateway.simulator.";
+        return new SimulatedPaymentGateway(
+                SimulatedPaymentGateway.Latency.parse(environment.getProperty(prefix + "latency", "constant")),
+                environment.getProperty(prefix + "latency-median-ms", Long.class, 0L),
+                environment.getProperty(prefix + "latency-p99-ms", Long.class, 0L),
+                environment.getProperty(prefix + "decline-rate", Double.class, 0.0),
+                environment.getProperty(prefix + "error-rate", Double.class, 0.0),
+                environment.getProperty(prefix + "hang-rate", Double.class, 0.0),
+                environment.getProperty(prefix + "hang-ms", Long.class, 60_000L));
+    }
+}
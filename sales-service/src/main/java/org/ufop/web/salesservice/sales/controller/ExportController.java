@@ -0,0 +1,79 @@
+package org.ufop.web.salesservice.sales.controller;
+
+import org.ufop.web.salesservice.sales.service.ExportService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Bulk exports for finance. {@code format} is {@code CSV} (default) or {@code NDJSON};
+ * {@code gzip=true} downloads a gzip file ({@code .csv.gz} or {@code .ndjson.gz}) of it.
+ */
+@RestController
+@RequestMapping("/api")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+@Slf4j
+public class ExportController {
+
+    private final ExportService exportService;
+
+    @GetMapping("/sales/export")
+    public ResponseEntity<StreamingResponseBody> exportSales(
+            @RequestParam(defaultValue = "CSV") ExportService.Format format,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        return export("sales", format, gzip, out -> exportService.exportSales(format, out));
+    }
+
+    @GetMapping("/payments/export")
+    public ResponseEntity<StreamingResponseBody> exportPayments(
+            @RequestParam(defaultValue = "CSV") ExportService.Format format,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        return export("payments", format, gzip, out -> exportService.exportPayments(format, out));
+    }
+
+    private ResponseEntity<StreamingResponseBody> export(String name, ExportService.Format format, boolean gzip,
+                                                         Exporter exporter) {
+        String extension = format == ExportService.Format.CSV ? ".csv" : ".ndjson";
+        String filename = name + "-" + LocalDate.now() + extension + (gzip ? ".gz" : "");
+        // The file itself is compressed, not its transfer, so clients save it as the .gz it is named
+        MediaType contentType = gzip ? MediaType.parseMediaType("application/gzip")
+                : format == ExportService.Format.CSV ? MediaType.parseMediaType("text/csv;charset=UTF-8")
+                : MediaType.parseMediaType("application/x-ndjson");
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(filename).build().toString());
+
+        return response.body(out -> {
+            long started = System.nanoTime();
+            long rows;
+            if (gzip) {
+                // Sync flush so each flushed batch actually reaches the client
+                GZIPOutputStream compressed = new GZIPOutputStream(out, 64 * 1024, true);
+                rows = exporter.export(compressed);
+                compressed.finish();
+            } else {
+                rows = exporter.export(out);
+            }
+            log.info("Exported {} {} as {} in {} ms", rows, name, format,
+                    (System.nanoTime() - started) / 1_000_000);
+        });
+    }
+
+    @FunctionalInterface
+    private interface Exporter {
+        long export(OutputStream out) throws IOException;
+    }
+}
@@ -1,14 +1,22 @@
 package org.ufop.web.salesservice.sales.controller;
 
+import org.ufop.web.salesservice.sales.client.PaymentGatewayException;
 import org.ufop.web.salesservice.sales.dto.PaymentRequestDTO;
 import org.ufop.web.salesservice.sales.model.Payment;
+import org.ufop.web.salesservice.sales.service.IdempotencyService;
 import org.ufop.web.salesservice.sales.service.PaymentService;
+import com.fasterxml.jackson.core.type.TypeReference;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.net.URI;
+import java.time.Duration;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -18,24 +26,52 @@ import java.util.UUID;
 @CrossOrigin(origins = "*")
 public class PaymentController {
 
+    /**
+     * Card payments sent with {@code Prefer: respond-async} are answered with 202 as soon as
+     * they are stored; the payment at {@code Location} moves from PENDING to COMPLETED or FAILED.
+     */
+    private static final String PREFER = "Prefer";
+    private static final String RESPOND_ASYNC = "respond-async";
+
     private final PaymentService paymentService;
+    private final IdempotencyService idempotencyService;
 
     @PostMapping("/credit-card")
-    public ResponseEntity<Payment> processCreditCardPayment(@Valid @RequestBody PaymentRequestDTO dto) {
-        Payment payment = paymentService.processCreditCardPayment(dto);
-        return ResponseEntity.status(HttpStatus.CREATED).body(payment);
+    public ResponseEntity<Payment> processCreditCardPayment(
+            @Valid @RequestBody PaymentRequestDTO dto,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @RequestHeader(value = PREFER, required = false) String prefer) {
+        return idempotencyService.execute("payments-credit-card", idempotencyKey, dto, new TypeReference<>() {}, () -> {
+            if (respondAsync(prefer)) {
+                return accepted(paymentService.submitCreditCardPayment(dto));
+            }
+            Payment payment = paymentService.processCreditCardPayment(dto);
+            return ResponseEntity.status(HttpStatus.CREATED).body(payment);
+        });
     }
 
     @PostMapping("/debit-card")
-    public ResponseEntity<Payment> processDebitCardPayment(@Valid @RequestBody PaymentRequestDTO dto) {
-        Payment payment = paymentService.processDebitCardPayment(dto);
-        return ResponseEntity.status(HttpStatus.CREATED).body(payment);
+    public ResponseEntity<Payment> processDebitCardPayment(
+            @Valid @RequestBody PaymentRequestDTO dto,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @RequestHeader(value = PREFER, required = false) String prefer) {
+        return idempotencyService.execute("payments-debit-card", idempotencyKey, dto, new TypeReference<>() {}, () -> {
+            if (respondAsync(prefer)) {
+                return accepted(paymentService.submitDebitCardPayment(dto));
+            }
+            Payment payment = paymentService.processDebitCardPayment(dto);
+            return ResponseEntity.status(HttpStatus.CREATED).body(payment);
+        });
     }
 
     @PostMapping("/pix/generate")
-    public ResponseEntity<Payment> generatePixPayment(@Valid @RequestBody PaymentRequestDTO dto) {
-        Payment payment = paymentService.generatePixPayment(dto);
-        return ResponseEntity.status(HttpStatus.CREATED).body(payment);
+    public ResponseEntity<Payment> generatePixPayment(
+            @Valid @RequestBody PaymentRequestDTO dto,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute("payments-pix", idempotencyKey, dto, new TypeReference<>() {}, () -> {
+            Payment payment = paymentService.generatePixPayment(dto);
+            return ResponseEntity.status(HttpStatus.CREATED).body(payment);
+        });
     }
 
     @PostMapping("/pix/confirm/{paymentId}")
@@ -51,6 +87,14 @@ public class PaymentController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    @GetMapping(value = "/pix/qrcode/{transactionId}", produces = "image/svg+xml")
+    public ResponseEntity<String> getPixQrCode(@PathVariable String transactionId) {
+        // A charge's code never changes, so clients may keep it for as long as the charge lasts
+        return paymentService.getPixQrCode(transactionId)
+                .map(svg -> ResponseEntity.ok().cacheControl(CacheControl.maxAge(Duration.ofMinutes(30))).body(svg))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     @PostMapping("/refund/{paymentId}")
     public ResponseEntity<Payment> refundPayment(@PathVariable UUID paymentId) {
         Payment payment = paymentService.refundPayment(paymentId);
@@ -70,4 +114,44 @@ public class PaymentController {
         return payment.map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
-}
\ No newline at end of file
+
+    /**
+     * The acquirer gave no answer and the payment was stored as FAILED. When the call never
+     * reached it (bulkhead full, circuit open) nothing was charged and the client may pay again
+     * after {@code Retry-After}. After a timeout or an error the acquirer may have approved the
+     * charge; its authorization is being reversed, but paying again right away makes a second
+     * charge on the card until then, so no {@code Retry-After} is offered.
+     */
+    @ExceptionHandler(PaymentGatewayException.class)
+    public ResponseEntity<String> handleGatewayFailure(PaymentGatewayException e) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(e.status());
+        if (e.notAttempted()) {
+            response.header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+        }
+        return response.body(e.getMessage());
+    }
+
+    private static boolean respondAsync(String prefer) {
+        if (prefer == null) {
+            return false;
+        }
+        for (String preference : prefer.split(",")) {
+            if (preference.split(";")[0].trim().equalsIgnoreCase(RESPOND_ASYNC)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ResponseEntity<Payment> accepted(Payment payment) {
+        URI status = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/api/payments/{id}")
+                .buildAndExpand(payment.getId())
+                .toUri();
+        return ResponseEntity.accepted()
+                .location(status)
+                .header("Preference-Applied", RESPOND_ASYNC)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(payment);
+    }
+}
@@ -1,16 +1,36 @@
 package org.ufop.web.salesservice.sales.controller;
 
+import org.ufop.web.salesservice.sales.dto.CreateCartSaleDTO;
 import org.ufop.web.salesservice.sales.dto.CreateSaleDTO;
+import org.ufop.web.salesservice.sales.dto.PageDTO;
 import org.ufop.web.salesservice.sales.dto.SaleDTO;
+import org.ufop.web.salesservice.sales.dto.SalesRollupDTO;
+import org.ufop.web.salesservice.sales.dto.SalesStatsDTO;
 import org.ufop.web.salesservice.sales.model.Sale;
+import org.ufop.web.salesservice.sales.model.SalesRollup;
+import org.ufop.web.salesservice.sales.service.IdempotencyService;
 import org.ufop.web.salesservice.sales.service.SaleService;
+import org.ufop.web.salesservice.sales.service.SalesRollupService;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.FeignException;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @RestController
@@ -20,17 +40,45 @@ import java.util.UUID;
 public class SaleController {
 
     private final SaleService saleService;
+    private final SalesRollupService salesRollupService;
+    private final IdempotencyService idempotencyService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
-    public ResponseEntity<SaleDTO> createSale(@Valid @RequestBody CreateSaleDTO dto) {
-        SaleDTO createdSale = saleService.createSale(dto);
-        return ResponseEntity.status(HttpStatus.CREATED).body(createdSale);
+    public ResponseEntity<SaleDTO> createSale(
+            @Valid @RequestBody CreateSaleDTO dto,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute("sales", idempotencyKey, dto, new TypeReference<>() {}, () -> {
+            SaleDTO createdSale = saleService.createSale(dto);
+            return ResponseEntity.status(HttpStatus.CREATED).body(createdSale);
+        });
+    }
+
+    @PostMapping("/cart")
+    public ResponseEntity<List<SaleDTO>> createCartSales(
+            @Valid @RequestBody CreateCartSaleDTO dto,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute("sales-cart", idempotencyKey, dto, new TypeReference<>() {}, () -> {
+            List<SaleDTO> createdSales = saleService.createCartSales(dto);
+            return ResponseEntity.status(HttpStatus.CREATED).body(createdSales);
+        });
     }
 
     @GetMapping
-    public ResponseEntity<List<SaleDTO>> getAllSales() {
-        List<SaleDTO> sales = saleService.getAllSales();
-        return ResponseEntity.ok(sales);
+    public ResponseEntity<?> getAllSales(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        if (cursor == null && limit == null) {
+            List<SaleDTO> sales = saleService.getAllSales();
+            return ResponseEntity.ok(sales);
+        }
+        PageDTO<SaleDTO> page = saleService.getSalesPage(null, cursor, limit != null ? limit : 50);
+        return ResponseEntity.ok(page);
+    }
+
+    @GetMapping(produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamAllSales() {
+        return ndjson(out -> saleService.forEachSale(null, sale -> writeLine(out, sale)));
     }
 
     @GetMapping("/{id}")
@@ -54,13 +102,25 @@ public class SaleController {
     }
 
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<SaleDTO>> getSalesByUserId(@PathVariable String userId) {
-        List<SaleDTO> sales = saleService.getSalesByUserId(userId);
-        return ResponseEntity.ok(sales);
+    public ResponseEntity<?> getSalesByUserId(
+            @PathVariable String userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        if (cursor == null && limit == null) {
+            List<SaleDTO> sales = saleService.getSalesByUserId(userId);
+            return ResponseEntity.ok(sales);
+        }
+        PageDTO<SaleDTO> page = saleService.getSalesPage(userId, cursor, limit != null ? limit : 50);
+        return ResponseEntity.ok(page);
+    }
+
+    @GetMapping(value = "/user/{userId}", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamSalesByUserId(@PathVariable String userId) {
+        return ndjson(out -> saleService.forEachSale(userId, sale -> writeLine(out, sale)));
     }
 
     @GetMapping("/stats")
-    public ResponseEntity<?> getSalesStats() {
+    public ResponseEntity<SalesStatsDTO> getSalesStats() {
         return ResponseEntity.ok(saleService.getSalesStats());
     }
 
@@ -69,4 +129,50 @@ public class SaleController {
         Double revenue = saleService.getTotalRevenue();
         return ResponseEntity.ok(revenue);
     }
+
+    /**
+     * Sales per hour or day from the rollups, e.g. revenue by event per hour over the last
+     * week with {@code granularity=HOUR&groupBy=EVENT}. Defaults to the last 7 days.
+     */
+    @GetMapping("/analytics")
+    public ResponseEntity<List<SalesRollupDTO>> getSalesAnalytics(
+            @RequestParam(defaultValue = "HOUR") SalesRollup.Granularity granularity,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Set<SalesRollupService.Dimension> groupBy,
+            @RequestParam(required = false) UUID eventId,
+            @RequestParam(required = false) Sale.SaleStatus status) {
+        LocalDateTime end = to != null ? to : LocalDateTime.now();
+        LocalDateTime start = from != null ? from : end.minusDays(7);
+        List<SalesRollupDTO> buckets = salesRollupService.query(granularity, start, end,
+                groupBy != null ? groupBy : EnumSet.noneOf(SalesRollupService.Dimension.class), eventId, status);
+        return ResponseEntity.ok(buckets);
+    }
+
+    @PostMapping("/analytics/backfill")
+    public ResponseEntity<Map<String, Long>> backfillSalesAnalytics() {
+        long scanned = salesRollupService.backfill();
+        return ResponseEntity.ok(Map.of("salesScanned", scanned));
+    }
+
+    private ResponseEntity<StreamingResponseBody> ndjson(StreamingResponseBody body) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
+    private void writeLine(OutputStream out, Object value) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(value));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // events-service rejected the reservation because the buyer has not cleared the waiting room
+    @ExceptionHandler(FeignException.TooManyRequests.class)
+    public ResponseEntity<String> handleWaitingRoom(FeignException.TooManyRequests e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(e.contentUTF8());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,39 @@
+package org.ufop.web.salesservice.sales.dto;
+
+import org.ufop.web.salesservice.sales.model.Sale;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+public class CreateCartSaleDTO {
+    @NotBlank(message = "User ID is required")
+    private String userId;
+
+    @NotEmpty(message = "Cart must contain at least one item")
+    @Valid
+    private List<CartItemDTO> items;
+
+    @NotNull(message = "Sale status is required")
+    private Sale.SaleStatus saleStatus = Sale.SaleStatus.PENDING;
+
+    @NotNull(message = "Payment method is required")
+    private Sale.PaymentMethod paymentMethod = Sale.PaymentMethod.CREDIT_CARD;
+
+    private String notes;
+
+    @Data
+    public static class CartItemDTO {
+        @NotNull(message = "Event ID is required")
+        private UUID eventId;
+
+        @Min(value = 1, message = "Quantity must be at least 1")
+        private Integer quantity = 1;
+    }
+}
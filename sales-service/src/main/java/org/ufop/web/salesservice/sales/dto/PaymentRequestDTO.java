@@ -12,6 +12,7 @@ public class PaymentRequestDTO {
     private UUID saleId;
 
     private CardDataDTO cardData;
+    // Ignored: PIX charges always go to the merchant's own key, sales.pix.key
     private String pixKey;
 
     @Data
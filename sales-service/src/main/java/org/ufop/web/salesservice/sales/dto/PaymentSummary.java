@@ -0,0 +1,23 @@
+package org.ufop.web.salesservice.sales.dto;
+
+import org.ufop.web.salesservice.sales.model.Payment;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A payment without its PIX key, QR code and free-text details, for bulk reads.
+ */
+public record PaymentSummary(UUID id,
+                             UUID saleId,
+                             Payment.PaymentStatus status,
+                             Payment.PaymentMethod paymentMethod,
+                             Double amount,
+                             Integer installments,
+                             String transactionId,
+                             String cardBrand,
+                             String cardLastFour,
+                             LocalDateTime pixExpiration,
+                             LocalDateTime createdAt,
+                             LocalDateTime processedAt) {
+}
@@ -0,0 +1,27 @@
+package org.ufop.web.salesservice.sales.dto;
+
+import org.ufop.web.salesservice.sales.model.Sale;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * The columns of a sale that listings show, read as a projection instead of a managed entity.
+ */
+public record SaleSummary(UUID id,
+                          String userId,
+                          UUID eventId,
+                          Integer quantity,
+                          Double totalAmount,
+                          Sale.SaleStatus saleStatus,
+                          Sale.PaymentMethod paymentMethod,
+                          LocalDateTime saleDate,
+                          LocalDateTime paymentDate,
+                          String notes) {
+
+    public static SaleSummary of(Sale sale) {
+        return new SaleSummary(sale.getId(), sale.getUserId(), sale.getEventId(), sale.getQuantity(),
+                sale.getTotalAmount(), sale.getSaleStatus(), sale.getPaymentMethod(), sale.getSaleDate(),
+                sale.getPaymentDate(), sale.getNotes());
+    }
+}
@@ -0,0 +1,30 @@
+package org.ufop.web.salesservice.sales.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.ufop.web.salesservice.sales.model.Sale;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Sales in one time bucket, broken down by whichever dimensions were requested; the
+ * others are left out.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SalesRollupDTO {
+    private LocalDateTime bucketStart;
+    private UUID eventId;
+    private Sale.PaymentMethod paymentMethod;
+    private Sale.SaleStatus saleStatus;
+    private Long saleCount;
+    private Long ticketCount;
+    private Double totalAmount;
+    // Amount of the PAID sales among them
+    private Double revenue;
+}
@@ -0,0 +1,17 @@
+package org.ufop.web.salesservice.sales.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesStatsDTO {
+    private Long totalSales;
+    private Long paidSales;
+    private Double totalRevenue;
+    private Map<String, Long> salesByStatus;
+}
@@ -0,0 +1,40 @@
+package org.ufop.web.salesservice.sales.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * Stored response of a request made with an {@code Idempotency-Key}, kept until it expires
+ * so retries can be answered after the in-memory copy is gone. While the request runs the
+ * record is its claim on the key, with status code 0 and an empty body.
+ */
+@Entity
+@Table(name = "idempotency_keys", indexes = {
+        @Index(name = "idx_idempotency_keys_expires_at", columnList = "expiresAt")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyRecord {
+    // Endpoint scope and client key, e.g. "sales:3f2c..."
+    @Id
+    private String id;
+
+    @Column(nullable = false)
+    private String requestHash;
+
+    @Column(nullable = false)
+    private Integer statusCode;
+
+    @Column(nullable = false, length = 100000)
+    private String responseBody;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -8,7 +8,12 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "payments")
+@Table(name = "payments", indexes = {
+        @Index(name = "idx_payments_created_at_id", columnList = "createdAt, id"),
+        @Index(name = "idx_payments_sale_id", columnList = "saleId"),
+        @Index(name = "idx_payments_status_payment_method", columnList = "status, paymentMethod"),
+        @Index(name = "idx_payments_reversal_pending", columnList = "reversalPending")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -46,6 +51,10 @@ public class Payment {
     @Column
     private String pixQrCode;
 
+    // BR Code of the charge, also what PIX apps accept as "copia e cola"
+    @Column(length = 512)
+    private String pixPayload;
+
     @Column
     private LocalDateTime pixExpiration;
 
@@ -61,6 +70,11 @@ public class Payment {
     @Column(length = 1000)
     private String paymentDetails;
 
+    // Set on a failed card payment whose authorization the acquirer may have approved and that
+    // still has to be reversed; cleared once the acquirer confirms the reversal
+    @Column
+    private Boolean reversalPending;
+
     public enum PaymentStatus {
         PENDING, COMPLETED, FAILED, REFUNDED
     }
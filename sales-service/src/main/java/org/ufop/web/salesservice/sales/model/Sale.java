@@ -8,7 +8,13 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "sales")
+@Table(name = "sales", indexes = {
+        @Index(name = "idx_sales_sale_date_id", columnList = "saleDate, id"),
+        @Index(name = "idx_sales_user_id_sale_date_id", columnList = "userId, saleDate, id"),
+        @Index(name = "idx_sales_event_id", columnList = "eventId"),
+        // Covers the per-status counts and sums without reading the table
+        @Index(name = "idx_sales_sale_status_total_amount", columnList = "saleStatus, totalAmount")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -49,6 +55,10 @@ public class Sale {
     @Column(length = 500)
     private String notes;
 
+    // Ticket hold in events-service backing a PENDING sale
+    @Column
+    private UUID holdId;
+
     public enum SaleStatus {
         PENDING, PAID, CANCELLED, REFUNDED
     }
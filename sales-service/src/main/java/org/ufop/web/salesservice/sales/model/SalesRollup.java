@@ -0,0 +1,47 @@
+package org.ufop.web.salesservice.sales.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Pre-aggregated sales for one {@link SalesRollupKey}, kept per hour and per day by sale date.
+ */
+@Entity
+@Table(name = "sales_rollups", indexes = {
+        @Index(name = "idx_sales_rollups_granularity_bucket", columnList = "granularity, bucketStart")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesRollup {
+    @EmbeddedId
+    private SalesRollupKey id;
+
+    @Column(nullable = false)
+    private Long saleCount;
+
+    @Column(nullable = false)
+    private Long ticketCount;
+
+    @Column(nullable = false)
+    private Double totalAmount;
+
+    public enum Granularity {
+        HOUR(ChronoUnit.HOURS), DAY(ChronoUnit.DAYS);
+
+        private final ChronoUnit unit;
+
+        Granularity(ChronoUnit unit) {
+            this.unit = unit;
+        }
+
+        public LocalDateTime bucketOf(LocalDateTime time) {
+            return time.truncatedTo(unit);
+        }
+    }
+}
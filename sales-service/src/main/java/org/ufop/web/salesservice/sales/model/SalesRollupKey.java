@@ -0,0 +1,37 @@
+package org.ufop.web.salesservice.sales.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One rollup cell: a time bucket crossed with every dimension analytics can break down by.
+ */
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesRollupKey implements Serializable {
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 8)
+    private SalesRollup.Granularity granularity;
+
+    // Start of the hour or day the sales were made in
+    @Column(nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(nullable = false)
+    private UUID eventId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Sale.PaymentMethod paymentMethod;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Sale.SaleStatus saleStatus;
+}
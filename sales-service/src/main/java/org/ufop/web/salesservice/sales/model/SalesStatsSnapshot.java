@@ -0,0 +1,30 @@
+package org.ufop.web.salesservice.sales.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * Last persisted value of the running sales counters, one row per sale status.
+ */
+@Entity
+@Table(name = "sales_stats")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesStatsSnapshot {
+    @Id
+    @Enumerated(EnumType.STRING)
+    private Sale.SaleStatus saleStatus;
+
+    @Column(nullable = false)
+    private Long saleCount;
+
+    @Column(nullable = false)
+    private Double totalAmount;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -1,16 +1,88 @@
 package org.ufop.web.salesservice.sales.repository;
 
+import org.ufop.web.salesservice.sales.dto.PaymentSummary;
 import org.ufop.web.salesservice.sales.model.Payment;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface PaymentRepository extends JpaRepository<Payment, UUID> {
 
-    Optional<Payment> findBySaleId(UUID saleId);
+    String SUMMARY = "SELECT new org.ufop.web.salesservice.sales.dto.PaymentSummary(" +
+            "p.id, p.saleId, p.status, p.paymentMethod, p.amount, p.installments, p.transactionId, " +
+            "p.cardBrand, p.cardLastFour, p.pixExpiration, p.createdAt, p.processedAt) FROM Payment p ";
+
+    // A sale can have several payments (declined cards, regenerated PIX codes); this is the latest
+    Optional<Payment> findFirstBySaleIdOrderByCreatedAtDesc(UUID saleId);
 
     Optional<Payment> findByTransactionId(String transactionId);
-}
\ No newline at end of file
+
+    boolean existsBySaleIdAndStatus(UUID saleId, Payment.PaymentStatus status);
+
+    /**
+     * id, saleId, pixExpiration and createdAt of every PIX payment still awaiting payment.
+     */
+    @Query("SELECT p.id, p.saleId, p.pixExpiration, p.createdAt FROM Payment p " +
+            "WHERE p.status = 'PENDING' AND p.paymentMethod = 'PIX'")
+    List<Object[]> findPendingPixDeadlines();
+
+    @Query("SELECT p.saleId FROM Payment p WHERE p.id IN :ids AND p.status = 'FAILED' AND p.processedAt = :processedAt")
+    List<UUID> findSaleIdsFailedAt(@Param("ids") Collection<UUID> ids,
+                                   @Param("processedAt") LocalDateTime processedAt);
+
+    @Query(SUMMARY + "ORDER BY p.createdAt, p.id")
+    List<PaymentSummary> findFirstSummaryPage(Pageable pageable);
+
+    @Query(SUMMARY + "WHERE p.createdAt >= :createdAt " +
+            "AND (p.createdAt > :createdAt OR (p.createdAt = :createdAt AND p.id > :id)) " +
+            "ORDER BY p.createdAt, p.id")
+    List<PaymentSummary> findSummaryPageAfter(@Param("createdAt") LocalDateTime createdAt,
+                                              @Param("id") UUID id,
+                                              Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE Payment p SET p.status = :status, p.processedAt = :processedAt, p.paymentDetails = :details " +
+            "WHERE p.id = :id AND p.status = 'PENDING'")
+    int completePending(@Param("id") UUID id,
+                        @Param("status") Payment.PaymentStatus status,
+                        @Param("processedAt") LocalDateTime processedAt,
+                        @Param("details") String details);
+
+    @Modifying
+    @Query("UPDATE Payment p SET p.status = 'FAILED', p.processedAt = :processedAt, p.paymentDetails = :details, " +
+            "p.reversalPending = true WHERE p.status = 'PENDING' AND p.paymentMethod IN :methods")
+    int failPendingForReversal(@Param("methods") Collection<Payment.PaymentMethod> methods,
+                               @Param("processedAt") LocalDateTime processedAt,
+                               @Param("details") String details);
+
+    @Modifying
+    @Query("UPDATE Payment p SET p.status = 'FAILED', p.processedAt = :processedAt, p.paymentDetails = :details, " +
+            "p.reversalPending = true WHERE p.id = :id AND p.status = :from")
+    int failForReversal(@Param("id") UUID id,
+                        @Param("from") Payment.PaymentStatus from,
+                        @Param("processedAt") LocalDateTime processedAt,
+                        @Param("details") String details);
+
+    @Modifying
+    @Query("UPDATE Payment p SET p.reversalPending = false WHERE p.id = :id")
+    int reversed(@Param("id") UUID id);
+
+    List<Payment> findByReversalPendingTrue();
+
+    @Modifying
+    @Query("UPDATE Payment p SET p.status = 'FAILED', p.processedAt = :processedAt, p.paymentDetails = :details " +
+            "WHERE p.id IN :ids AND p.status = 'PENDING'")
+    int failPendingByIdIn(@Param("ids") Collection<UUID> ids,
+                          @Param("processedAt") LocalDateTime processedAt,
+                          @Param("details") String details);
+}
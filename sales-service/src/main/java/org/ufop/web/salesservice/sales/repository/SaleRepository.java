@@ -1,31 +1,100 @@
 package org.ufop.web.salesservice.sales.repository;
 
+import org.ufop.web.salesservice.sales.dto.SaleSummary;
 import org.ufop.web.salesservice.sales.model.Sale;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
 @Repository
 public interface SaleRepository extends JpaRepository<Sale, UUID> {
 
+    String SUMMARY = "SELECT new org.ufop.web.salesservice.sales.dto.SaleSummary(" +
+            "s.id, s.userId, s.eventId, s.quantity, s.totalAmount, s.saleStatus, s.paymentMethod, " +
+            "s.saleDate, s.paymentDate, s.notes) FROM Sale s ";
+
     List<Sale> findByUserId(String userId);
 
+    @Query("SELECT s FROM Sale s ORDER BY s.saleDate, s.id")
+    List<Sale> findFirstPage(Pageable pageable);
+
+    @Query("SELECT s FROM Sale s WHERE s.saleDate >= :since ORDER BY s.saleDate, s.id")
+    List<Sale> findFirstPageSince(@Param("since") LocalDateTime since, Pageable pageable);
+
+    // The redundant saleDate >= bound lets SQLite seek the index instead of scanning it from the start
+    @Query("SELECT s FROM Sale s " +
+            "WHERE s.saleDate >= :saleDate " +
+            "AND (s.saleDate > :saleDate OR (s.saleDate = :saleDate AND s.id > :id)) " +
+            "ORDER BY s.saleDate, s.id")
+    List<Sale> findPageAfter(@Param("saleDate") LocalDateTime saleDate,
+                             @Param("id") UUID id,
+                             Pageable pageable);
+
+    @Query(SUMMARY + "ORDER BY s.saleDate, s.id")
+    List<SaleSummary> findFirstSummaryPage(Pageable pageable);
+
+    @Query(SUMMARY + "WHERE s.saleDate >= :saleDate " +
+            "AND (s.saleDate > :saleDate OR (s.saleDate = :saleDate AND s.id > :id)) " +
+            "ORDER BY s.saleDate, s.id")
+    List<SaleSummary> findSummaryPageAfter(@Param("saleDate") LocalDateTime saleDate,
+                                           @Param("id") UUID id,
+                                           Pageable pageable);
+
+    @Query(SUMMARY + "WHERE s.userId = :userId ORDER BY s.saleDate, s.id")
+    List<SaleSummary> findFirstSummaryPageByUserId(@Param("userId") String userId, Pageable pageable);
+
+    @Query(SUMMARY + "WHERE s.userId = :userId " +
+            "AND s.saleDate >= :saleDate " +
+            "AND (s.saleDate > :saleDate OR (s.saleDate = :saleDate AND s.id > :id)) " +
+            "ORDER BY s.saleDate, s.id")
+    List<SaleSummary> findSummaryPageByUserIdAfter(@Param("userId") String userId,
+                                                   @Param("saleDate") LocalDateTime saleDate,
+                                                   @Param("id") UUID id,
+                                                   Pageable pageable);
+
+    @Query(SUMMARY)
+    List<SaleSummary> findAllSummaries();
+
+    @Query(SUMMARY + "WHERE s.userId = :userId ORDER BY s.saleDate, s.id")
+    List<SaleSummary> findSummariesByUserId(@Param("userId") String userId);
+
+    @Query(SUMMARY + "WHERE s.id IN :ids")
+    List<SaleSummary> findSummariesByIdIn(@Param("ids") Collection<UUID> ids);
+
     List<Sale> findByEventId(UUID eventId);
 
     List<Sale> findBySaleStatus(Sale.SaleStatus status);
 
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Sale s SET s.saleStatus = :to, s.paymentDate = :paymentDate " +
+            "WHERE s.id = :id AND s.saleStatus = :from")
+    int updatePaymentStatus(@Param("id") UUID id,
+                            @Param("from") Sale.SaleStatus from,
+                            @Param("to") Sale.SaleStatus to,
+                            @Param("paymentDate") LocalDateTime paymentDate);
+
     @Query("SELECT s FROM Sale s WHERE s.saleStatus = 'PAID'")
     List<Sale> findPaidSales();
 
     @Query("SELECT COALESCE(SUM(s.totalAmount), 0) FROM Sale s WHERE s.saleStatus = 'PAID'")
     Double getTotalRevenue();
 
-    @Query("SELECT COUNT(s) FROM Sale s WHERE s.saleStatus = 'PAID'")
+    // COUNT(*) rather than COUNT(s): counting the id would fetch each row instead of
+    // answering from idx_sales_sale_status_total_amount alone
+    @Query("SELECT COUNT(*) FROM Sale s WHERE s.saleStatus = 'PAID'")
     Long getPaidSalesCount();
 
-    @Query("SELECT s.saleStatus, COUNT(s) FROM Sale s GROUP BY s.saleStatus")
+    @Query("SELECT s.saleStatus, COUNT(*) FROM Sale s GROUP BY s.saleStatus")
     List<Object[]> getSalesByStatus();
+
+    @Query("SELECT s.saleStatus, COUNT(*), COALESCE(SUM(s.totalAmount), 0) FROM Sale s GROUP BY s.saleStatus")
+    List<Object[]> getTotalsByStatus();
 }
\ No newline at end of file
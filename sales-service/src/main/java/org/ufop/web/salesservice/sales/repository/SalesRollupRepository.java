@@ -0,0 +1,31 @@
+package org.ufop.web.salesservice.sales.repository;
+
+import org.ufop.web.salesservice.sales.model.SalesRollup;
+import org.ufop.web.salesservice.sales.model.SalesRollupKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface SalesRollupRepository extends JpaRepository<SalesRollup, SalesRollupKey> {
+
+    @Query("SELECT r FROM SalesRollup r WHERE r.id.granularity = :granularity " +
+            "AND r.id.bucketStart >= :from AND r.id.bucketStart < :to " +
+            "ORDER BY r.id.bucketStart")
+    List<SalesRollup> findRange(@Param("granularity") SalesRollup.Granularity granularity,
+                                @Param("from") LocalDateTime from,
+                                @Param("to") LocalDateTime to);
+
+    @Modifying
+    @Query("DELETE FROM SalesRollup r")
+    int deleteAllRollups();
+
+    @Modifying
+    @Query("DELETE FROM SalesRollup r WHERE r.id.bucketStart >= :from")
+    int deleteRollupsFrom(@Param("from") LocalDateTime from);
+}
@@ -0,0 +1,10 @@
+package org.ufop.web.salesservice.sales.repository;
+
+import org.ufop.web.salesservice.sales.model.Sale;
+import org.ufop.web.salesservice.sales.model.SalesStatsSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SalesStatsRepository extends JpaRepository<SalesStatsSnapshot, Sale.SaleStatus> {
+}
@@ -0,0 +1,156 @@
+package org.ufop.web.salesservice.sales.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.Normalizer;
+
+/**
+ * BR Code payloads for PIX charges: the EMV merchant-presented QR format adopted by the
+ * Banco Central do Brasil. The payload is a list of TLV fields (two-digit id, two-digit
+ * length, value) and ends with field 63, a CRC16-CCITT of everything before its value.
+ * The same string is what PIX apps accept as "copia e cola".
+ */
+public final class BrCode {
+
+    private static final String PIX_GUI = "br.gov.bcb.pix";
+    private static final int MAX_KEY_LENGTH = 77;
+    private static final int MAX_TXID_LENGTH = 25;
+    private static final int MAX_MERCHANT_NAME_LENGTH = 25;
+    private static final int MAX_MERCHANT_CITY_LENGTH = 15;
+
+    private BrCode() {
+    }
+
+    /**
+     * The payload for a single-use charge of {@code amount} to {@code pixKey}.
+     *
+     * @param txid identifies the charge to the receiver, letters and digits only
+     * @throws IllegalArgumentException if a field does not fit the BR Code limits
+     */
+    public static String payload(String pixKey, BigDecimal amount, String txid,
+                                 String merchantName, String merchantCity) {
+        pixKey(pixKey);
+        if (txid == null || txid.isEmpty() || txid.length() > MAX_TXID_LENGTH
+                || !txid.chars().allMatch(c -> c < 0x80 && Character.isLetterOrDigit(c))) {
+            throw new IllegalArgumentException("PIX txid must have 1 to " + MAX_TXID_LENGTH + " letters or digits");
+        }
+        if (amount.signum() <= 0) {
+            throw new IllegalArgumentException("PIX amount must be positive");
+        }
+
+        StringBuilder payload = new StringBuilder(128);
+        field(payload, "00", "01");
+        // 12: the code is for this charge only and must not be paid twice
+        field(payload, "01", "12");
+        int accountStart = openField(payload, "26");
+        field(payload, "00", PIX_GUI);
+        field(payload, "01", pixKey);
+        closeField(payload, accountStart);
+        field(payload, "52", "0000");
+        field(payload, "53", "986");
+        field(payload, "54", amount(amount));
+        field(payload, "58", "BR");
+        field(payload, "59", merchantName);
+        field(payload, "60", merchantCity);
+        int additionalStart = openField(payload, "62");
+        field(payload, "05", txid);
+        closeField(payload, additionalStart);
+        payload.append("6304");
+        appendHex4(payload, crc16(payload));
+        return payload.toString();
+    }
+
+    /**
+     * Checks that a configured PIX key fits a BR Code: 1 to 77 characters.
+     *
+     * @return the key
+     * @throws IllegalArgumentException if it does not
+     */
+    public static String pixKey(String pixKey) {
+        if (pixKey == null || pixKey.isBlank() || pixKey.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("PIX key must have 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        return pixKey;
+    }
+
+    /**
+     * Cuts a configured merchant name to what a BR Code can carry: ASCII only and at most
+     * 25 characters.
+     */
+    public static String merchantName(String name) {
+        return ascii(name, MAX_MERCHANT_NAME_LENGTH);
+    }
+
+    /**
+     * Cuts a configured merchant city to what a BR Code can carry: ASCII only and at most
+     * 15 characters.
+     */
+    public static String merchantCity(String city) {
+        return ascii(city, MAX_MERCHANT_CITY_LENGTH);
+    }
+
+    /**
+     * CRC16-CCITT as the BR Code uses it: polynomial 0x1021, initial value 0xFFFF, no
+     * reflection and no final XOR.
+     */
+    static int crc16(CharSequence value) {
+        int crc = 0xFFFF;
+        for (int i = 0; i < value.length(); i++) {
+            crc ^= value.charAt(i) << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+            }
+        }
+        return crc & 0xFFFF;
+    }
+
+    private static String amount(BigDecimal amount) {
+        String value = amount.setScale(2, RoundingMode.HALF_UP).toPlainString();
+        if (value.length() > 13) {
+            throw new IllegalArgumentException("PIX amount " + value + " is too large");
+        }
+        return value;
+    }
+
+    private static String ascii(String value, int maxLength) {
+        String stripped = Normalizer.normalize(value, Normalizer.Form.NFD).replaceAll("[^\\x20-\\x7E]", "").strip();
+        if (stripped.isEmpty()) {
+            throw new IllegalArgumentException("'" + value + "' has no characters a BR Code can carry");
+        }
+        return stripped.length() > maxLength ? stripped.substring(0, maxLength).strip() : stripped;
+    }
+
+    private static void field(StringBuilder payload, String id, String value) {
+        payload.append(id);
+        appendLength(payload, value.length());
+        payload.append(value);
+    }
+
+    // Template fields (26, 62) hold nested fields; their length is filled in once they are closed
+    private static int openField(StringBuilder payload, String id) {
+        payload.append(id).append("00");
+        return payload.length();
+    }
+
+    private static void closeField(StringBuilder payload, int valueStart) {
+        int length = payload.length() - valueStart;
+        if (length > 99) {
+            throw new IllegalArgumentException("BR Code field is longer than 99 characters");
+        }
+        payload.setCharAt(valueStart - 2, (char) ('0' + length / 10));
+        payload.setCharAt(valueStart - 1, (char) ('0' + length % 10));
+    }
+
+    private static void appendLength(StringBuilder payload, int length) {
+        if (length > 99) {
+            throw new IllegalArgumentException("BR Code field is longer than 99 characters");
+        }
+        payload.append((char) ('0' + length / 10)).append((char) ('0' + length % 10));
+    }
+
+    private static void appendHex4(StringBuilder payload, int value) {
+        for (int shift = 12; shift >= 0; shift -= 4) {
+            payload.append(Character.toUpperCase(Character.forDigit((value >>> shift) & 0xF, 16)));
+        }
+    }
+}
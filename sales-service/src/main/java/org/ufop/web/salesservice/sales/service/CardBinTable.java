@@ -0,0 +1,188 @@
+package org.ufop.web.salesservice.sales.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Card brand lookup by BIN, plus the card-number handling payments need, without regexes
+ * or intermediate strings.
+ * <p>
+ * The ranges in the BIN file are expanded once into a table indexed by the 6-digit BIN,
+ * so classifying a card is a single array read whatever the number of ranges. Longer
+ * prefixes are applied last and win where ranges overlap. Spaces and dashes between digits
+ * are skipped as they are read, which is why nothing is copied to normalize a number.
+ */
+@Component
+public class CardBinTable {
+
+    public static final String UNKNOWN = "UNKNOWN";
+
+    private static final int BIN_DIGITS = 6;
+    private static final int BINS = 1_000_000;
+
+    // Brand index per 6-digit BIN, 0 for unknown
+    private final byte[] brandByBin = new byte[BINS];
+    private final String[] brands;
+
+    public CardBinTable(@Value("${sales.cards.bin-table:classpath:card-bins.csv}") Resource binTable) {
+        Map<String, Integer> brandIndexes = new LinkedHashMap<>();
+        brandIndexes.put(UNKNOWN, 0);
+        List<Range> ranges = new ArrayList<>();
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(binTable.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                Range range = Range.parse(line, lineNumber);
+                if (brandIndexes.size() > Byte.MAX_VALUE && !brandIndexes.containsKey(range.brand())) {
+                    throw new IllegalArgumentException("BIN table has more than " + Byte.MAX_VALUE + " brands");
+                }
+                brandIndexes.putIfAbsent(range.brand(), brandIndexes.size());
+                ranges.add(range);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read BIN table " + binTable, e);
+        }
+
+        ranges.sort(Comparator.comparingInt(Range::digits));
+        for (Range range : ranges) {
+            int scale = pow10(BIN_DIGITS - range.digits());
+            int from = range.first() * scale;
+            int to = (range.last() + 1) * scale;
+            byte brand = brandIndexes.get(range.brand()).byteValue();
+            for (int bin = from; bin < to; bin++) {
+                brandByBin[bin] = brand;
+            }
+        }
+        this.brands = brandIndexes.keySet().toArray(String[]::new);
+    }
+
+    /**
+     * @return the brand of {@code cardNumber}, or {@link #UNKNOWN} when it has fewer than six
+     * leading digits or its BIN is not in the table
+     */
+    public String brandOf(CharSequence cardNumber) {
+        int bin = bin(cardNumber);
+        return bin < 0 ? UNKNOWN : brands[brandByBin[bin]];
+    }
+
+    /**
+     * @return the first six digits of {@code cardNumber} as a number, skipping separators,
+     * or -1 if there are fewer than six or another character comes first
+     */
+    public static int bin(CharSequence cardNumber) {
+        if (cardNumber == null) {
+            return -1;
+        }
+        int bin = 0;
+        int digits = 0;
+        for (int i = 0, length = cardNumber.length(); i < length && digits < BIN_DIGITS; i++) {
+            char c = cardNumber.charAt(i);
+            if (c >= '0' && c <= '9') {
+                bin = bin * 10 + (c - '0');
+                digits++;
+            } else if (!isSeparator(c)) {
+                return -1;
+            }
+        }
+        return digits == BIN_DIGITS ? bin : -1;
+    }
+
+    /**
+     * @return the last four characters of {@code cardNumber} other than separators, or
+     * "****" when there are fewer than four
+     */
+    public static String lastFour(String cardNumber) {
+        if (cardNumber == null) {
+            return "****";
+        }
+        int end = cardNumber.length();
+        while (end > 0 && isSeparator(cardNumber.charAt(end - 1))) {
+            end--;
+        }
+        // Usual case: the last four are contiguous and can be taken as they are
+        if (end >= 4 && noSeparator(cardNumber, end - 4, end)) {
+            return cardNumber.substring(end - 4, end);
+        }
+        char[] lastFour = new char[4];
+        int found = 0;
+        for (int i = end - 1; i >= 0 && found < 4; i--) {
+            char c = cardNumber.charAt(i);
+            if (!isSeparator(c)) {
+                lastFour[3 - found++] = c;
+            }
+        }
+        return found == 4 ? new String(lastFour) : "****";
+    }
+
+    private static boolean noSeparator(String value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (isSeparator(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '-' || Character.isWhitespace(c);
+    }
+
+    private static int pow10(int exponent) {
+        int result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= 10;
+        }
+        return result;
+    }
+
+    private record Range(int first, int last, int digits, String brand) {
+
+        static Range parse(String line, int lineNumber) {
+            String[] fields = line.split(",");
+            if (fields.length != 2) {
+                throw invalid(line, lineNumber);
+            }
+            String[] bounds = fields[0].strip().split("-");
+            String first = bounds[0].strip();
+            String last = bounds.length > 1 ? bounds[1].strip() : first;
+            String brand = fields[1].strip();
+            if (bounds.length > 2 || brand.isEmpty() || first.isEmpty() || first.length() > BIN_DIGITS
+                    || last.length() != first.length()
+                    || !isDigits(first) || !isDigits(last)) {
+                throw invalid(line, lineNumber);
+            }
+            Range range = new Range(Integer.parseInt(first), Integer.parseInt(last), first.length(), brand);
+            if (range.first() > range.last()) {
+                throw invalid(line, lineNumber);
+            }
+            return range;
+        }
+
+        private static boolean isDigits(String value) {
+            return value.chars().allMatch(c -> c >= '0' && c <= '9');
+        }
+
+        private static IllegalArgumentException invalid(String line, int lineNumber) {
+            return new IllegalArgumentException("Invalid BIN range on line " + lineNumber + ": " + line);
+        }
+    }
+}
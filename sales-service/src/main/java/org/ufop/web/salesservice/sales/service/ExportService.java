@@ -0,0 +1,282 @@
+package org.ufop.web.salesservice.sales.service;
+
+import org.ufop.web.salesservice.sales.client.EventDTO;
+import org.ufop.web.salesservice.sales.client.EventDetailsCache;
+import org.ufop.web.salesservice.sales.dto.PaymentSummary;
+import org.ufop.web.salesservice.sales.dto.SaleDTO;
+import org.ufop.web.salesservice.sales.dto.SaleSummary;
+import org.ufop.web.salesservice.sales.repository.PaymentRepository;
+import org.ufop.web.salesservice.sales.repository.SaleRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Full sale and payment history as CSV or NDJSON, written to the output as it is read.
+ * <p>
+ * Rows are read in keyset batches (the same forward-only walk as {@link SaleService#forEachSale})
+ * and each batch is enriched with a single bulk lookup, so memory stays flat however many
+ * rows there are. Both formats carry the same columns.
+ */
+@Service
+@RequiredArgsConstructor
+public class ExportService {
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final List<Column<SaleDTO>> SALE_COLUMNS = List.of(
+            new Column<>("id", SaleDTO::getId),
+            new Column<>("userId", SaleDTO::getUserId),
+            new Column<>("eventId", SaleDTO::getEventId),
+            new Column<>("eventDescription", SaleDTO::getEventDescription),
+            new Column<>("eventDate", SaleDTO::getEventDate),
+            new Column<>("eventPrice", SaleDTO::getEventPrice),
+            new Column<>("quantity", SaleDTO::getQuantity),
+            new Column<>("totalAmount", SaleDTO::getTotalAmount),
+            new Column<>("saleStatus", SaleDTO::getSaleStatus),
+            new Column<>("paymentMethod", SaleDTO::getPaymentMethod),
+            new Column<>("saleDate", SaleDTO::getSaleDate),
+            new Column<>("paymentDate", SaleDTO::getPaymentDate),
+            new Column<>("notes", SaleDTO::getNotes)
+    );
+
+    private static final List<Column<PaymentRow>> PAYMENT_COLUMNS = List.of(
+            new Column<>("id", row -> row.payment().id()),
+            new Column<>("saleId", row -> row.payment().saleId()),
+            new Column<>("userId", row -> row.sale() != null ? row.sale().userId() : null),
+            new Column<>("eventId", row -> row.sale() != null ? row.sale().eventId() : null),
+            new Column<>("eventDescription", row -> row.event() != null ? row.event().getDescription() : null),
+            new Column<>("status", row -> row.payment().status()),
+            new Column<>("paymentMethod", row -> row.payment().paymentMethod()),
+            new Column<>("amount", row -> row.payment().amount()),
+            new Column<>("installments", row -> row.payment().installments()),
+            new Column<>("transactionId", row -> row.payment().transactionId()),
+            new Column<>("cardBrand", row -> row.payment().cardBrand()),
+            new Column<>("cardLastFour", row -> row.payment().cardLastFour()),
+            new Column<>("pixExpiration", row -> row.payment().pixExpiration()),
+            new Column<>("createdAt", row -> row.payment().createdAt()),
+            new Column<>("processedAt", row -> row.payment().processedAt())
+    );
+
+    private final SaleService saleService;
+    private final SaleRepository saleRepository;
+    private final PaymentRepository paymentRepository;
+    private final EventDetailsCache eventCache;
+    private final ObjectMapper objectMapper;
+
+    public enum Format {
+        CSV, NDJSON
+    }
+
+    /**
+     * @return the number of sales written
+     */
+    public long exportSales(Format format, OutputStream out) throws IOException {
+        RowWriter<SaleDTO> writer = writer(format, SALE_COLUMNS, out);
+        try {
+            saleService.forEachSale(null, sale -> {
+                try {
+                    writer.write(sale);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return writer.finish();
+    }
+
+    /**
+     * @return the number of payments written
+     */
+    public long exportPayments(Format format, OutputStream out) throws IOException {
+        RowWriter<PaymentRow> writer = writer(format, PAYMENT_COLUMNS, out);
+        List<PaymentSummary> batch = paymentRepository.findFirstSummaryPage(PageRequest.of(0, BATCH_SIZE));
+        while (!batch.isEmpty()) {
+            Map<UUID, SaleSummary> sales = saleRepository.findSummariesByIdIn(batch.stream()
+                            .map(PaymentSummary::saleId)
+                            .collect(Collectors.toSet()))
+                    .stream()
+                    .collect(Collectors.toMap(SaleSummary::id, Function.identity()));
+            Map<UUID, EventDTO> events = fetchEvents(sales.values().stream()
+                    .map(SaleSummary::eventId)
+                    .collect(Collectors.toSet()));
+
+            for (PaymentSummary payment : batch) {
+                SaleSummary sale = sales.get(payment.saleId());
+                writer.write(new PaymentRow(payment, sale, sale != null ? events.get(sale.eventId()) : null));
+            }
+
+            if (batch.size() < BATCH_SIZE) {
+                break;
+            }
+            PaymentSummary last = batch.get(batch.size() - 1);
+            batch = paymentRepository.findSummaryPageAfter(last.createdAt(), last.id(), PageRequest.of(0, BATCH_SIZE));
+        }
+        return writer.finish();
+    }
+
+    // Rows whose events could not be fetched are exported without event details
+    private Map<UUID, EventDTO> fetchEvents(Set<UUID> eventIds) {
+        return eventCache.getAll(eventIds);
+    }
+
+    private <T> RowWriter<T> writer(Format format, List<Column<T>> columns, OutputStream out) throws IOException {
+        return switch (format) {
+            case CSV -> new CsvWriter<>(columns, out);
+            case NDJSON -> new NdjsonWriter<>(columns, objectMapper.getFactory().createGenerator(out));
+        };
+    }
+
+    private static String text(Object value) {
+        if (value instanceof LocalDateTime dateTime) {
+            return DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(dateTime);
+        }
+        if (value instanceof Enum<?> constant) {
+            return constant.name();
+        }
+        return value.toString();
+    }
+
+    private record Column<T>(String name, Function<T, Object> value) {
+    }
+
+    private record PaymentRow(PaymentSummary payment, SaleSummary sale, EventDTO event) {
+    }
+
+    /**
+     * Writes rows as they come and flushes every batch, so the client sees steady progress
+     * and nothing piles up in the response buffer.
+     */
+    private abstract static class RowWriter<T> {
+
+        final List<Column<T>> columns;
+        long rows;
+
+        RowWriter(List<Column<T>> columns) {
+            this.columns = columns;
+        }
+
+        void write(T row) throws IOException {
+            writeRow(row);
+            if (++rows % BATCH_SIZE == 0) {
+                flush();
+            }
+        }
+
+        long finish() throws IOException {
+            flush();
+            return rows;
+        }
+
+        abstract void writeRow(T row) throws IOException;
+
+        abstract void flush() throws IOException;
+    }
+
+    private static class CsvWriter<T> extends RowWriter<T> {
+
+        private final Writer out;
+
+        CsvWriter(List<Column<T>> columns, OutputStream out) throws IOException {
+            super(columns);
+            this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    this.out.write(',');
+                }
+                this.out.write(columns.get(i).name());
+            }
+            this.out.write("\r\n");
+        }
+
+        @Override
+        void writeRow(T row) throws IOException {
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                Object value = columns.get(i).value().apply(row);
+                if (value != null) {
+                    writeField(text(value));
+                }
+            }
+            out.write("\r\n");
+        }
+
+        // RFC 4180: quote fields containing a delimiter, quote or line break, doubling inner quotes
+        private void writeField(String field) throws IOException {
+            boolean quote = false;
+            for (int i = 0; i < field.length() && !quote; i++) {
+                char c = field.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                out.write(field);
+                return;
+            }
+            out.write('"');
+            out.write(field.replace("\"", "\"\""));
+            out.write('"');
+        }
+
+        @Override
+        void flush() throws IOException {
+            out.flush();
+        }
+    }
+
+    private static class NdjsonWriter<T> extends RowWriter<T> {
+
+        private final JsonGenerator generator;
+
+        NdjsonWriter(List<Column<T>> columns, JsonGenerator generator) {
+            super(columns);
+            this.generator = generator;
+        }
+
+        @Override
+        void writeRow(T row) throws IOException {
+            generator.writeStartObject();
+            for (Column<T> column : columns) {
+                Object value = column.value().apply(row);
+                generator.writeFieldName(column.name());
+                if (value == null) {
+                    generator.writeNull();
+                } else if (value instanceof Integer number) {
+                    generator.writeNumber(number);
+                } else if (value instanceof Double number) {
+                    generator.writeNumber(number);
+                } else {
+                    generator.writeString(text(value));
+                }
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        void flush() throws IOException {
+            generator.flush();
+        }
+    }
+}
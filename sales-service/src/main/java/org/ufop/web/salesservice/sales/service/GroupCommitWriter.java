@@ -0,0 +1,253 @@
+package org.ufop.web.salesservice.sales.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.Metamodel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single writer that inserts new sales and payments from concurrent requests in shared
+ * transactions.
+ * <p>
+ * SQLite takes one writer at a time and every commit waits for the disk, so committing each
+ * request on its own caps throughput at one row per fsync. Here callers queue their rows and
+ * block; one thread takes whatever is queued (up to {@code max-batch-size} rows, waiting at
+ * most {@code max-delay-ms} for more) and commits it in a single transaction, then releases
+ * the callers, so a caller returns only once its rows are durable. Each submitted unit is
+ * atomic: if a batch fails it is retried unit by unit, so one bad row only fails its own
+ * request. Batches are plain inserts of new entities (ids are generated on insert), so a
+ * batch asks SQLite for the write lock straight away instead of upgrading from a read lock,
+ * which would fail with SQLITE_BUSY against the other writers.
+ * <p>
+ * A caller that already runs in a transaction writes inline instead: on SQLite its open
+ * read lock would keep the writer from committing while it waits. With
+ * {@code sales.group-commit.enabled=false} every write is committed on the caller's thread.
+ */
+@Component
+@Slf4j
+public class GroupCommitWriter {
+
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final DistributionSummary batchSizes;
+    private final Timer commits;
+
+    private final BlockingQueue<Unit> queue = new LinkedBlockingQueue<>();
+    private volatile boolean running;
+    private Thread writer;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public GroupCommitWriter(PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${sales.group-commit.enabled:true}") boolean enabled,
+                             @Value("${sales.group-commit.max-batch-size:256}") int maxBatchSize,
+                             @Value("${sales.group-commit.max-delay-ms:2}") long maxDelayMs) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+        this.batchSizes = DistributionSummary.builder("sales.group-commit.batch-size")
+                .description("Rows committed per transaction")
+                .register(meterRegistry);
+        this.commits = Timer.builder("sales.group-commit.commit")
+                .description("Time to write and commit one batch")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Inserts the new {@code entity} and returns it, with its id, once it is committed.
+     */
+    public <T> T insert(T entity) {
+        insertAll(List.of(entity));
+        return entity;
+    }
+
+    /**
+     * Inserts all of the new {@code entities} atomically and returns them once they are committed.
+     */
+    public <T> List<T> insertAll(List<T> entities) {
+        if (entities.isEmpty()) {
+            return entities;
+        }
+        if (!enabled || !running || TransactionSynchronizationManager.isActualTransactionActive()) {
+            transactionTemplate.executeWithoutResult(status -> write(entities));
+            return entities;
+        }
+
+        Unit unit = new Unit(entities, new CompletableFuture<>());
+        queue.add(unit);
+        if (!running && takeBack(unit)) {
+            transactionTemplate.executeWithoutResult(status -> write(entities));
+            return entities;
+        }
+        try {
+            unit.done().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return entities;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        writer = new Thread(this::run, "sales-group-commit");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    /**
+     * Takes {@code unit} back out of the queue if the writer exited without seeing it: stop()
+     * may have cleared {@code running} after the caller checked it, and the writer may have
+     * drained the queue and exited before the unit was added, leaving nobody to complete it.
+     *
+     * @return true if the unit is the caller's to write
+     */
+    private boolean takeBack(Unit unit) {
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return queue.remove(unit);
+    }
+
+    private void run() {
+        List<Unit> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Unit first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                int rows = first.entities().size();
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (rows < maxBatchSize) {
+                    Unit next = queue.poll();
+                    if (next == null) {
+                        long remaining = deadline - System.nanoTime();
+                        next = remaining > 0 && running ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                        if (next == null) {
+                            break;
+                        }
+                    }
+                    batch.add(next);
+                    rows += next.entities().size();
+                }
+            } catch (InterruptedException e) {
+                // Shutting down: commit what was collected and keep draining until the queue is empty
+            }
+
+            try {
+                if (!batch.isEmpty()) {
+                    commit(batch);
+                }
+            } catch (RuntimeException e) {
+                log.error("Group commit writer failed", e);
+                batch.forEach(unit -> unit.done().completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<Unit> batch) {
+        try {
+            commits.record(() -> transactionTemplate.executeWithoutResult(
+                    status -> batch.forEach(unit -> write(unit.entities()))));
+            batchSizes.record(batch.stream().mapToInt(unit -> unit.entities().size()).sum());
+            batch.forEach(unit -> unit.done().complete(null));
+            return;
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.get(0).done().completeExceptionally(e);
+                return;
+            }
+            log.warn("Group commit of {} writes failed, retrying them one by one", batch.size(), e);
+        }
+
+        for (Unit unit : batch) {
+            try {
+                clearIds(unit.entities());
+                transactionTemplate.executeWithoutResult(status -> write(unit.entities()));
+                batchSizes.record(unit.entities().size());
+                unit.done().complete(null);
+            } catch (RuntimeException e) {
+                unit.done().completeExceptionally(e);
+            }
+        }
+    }
+
+    private void write(List<?> entities) {
+        entities.forEach(entityManager::persist);
+    }
+
+    // The failed batch's persist gave its entities their generated ids and the rollback left
+    // them there; persisting them again with an id would be refused as detached, so they are
+    // made new again first
+    private void clearIds(List<?> entities) {
+        Metamodel metamodel = entityManager.getMetamodel();
+        for (Object entity : entities) {
+            EntityType<?> type = metamodel.entity(entity.getClass());
+            if (!(type.getId(type.getIdType().getJavaType()).getJavaMember() instanceof Field id)) {
+                throw new IllegalStateException("Cannot reset the id of " + type.getName());
+            }
+            if (id.isAnnotationPresent(GeneratedValue.class)) {
+                ReflectionUtils.makeAccessible(id);
+                ReflectionUtils.setField(id, entity, null);
+            }
+        }
+    }
+
+    private record Unit(List<?> entities, CompletableFuture<Void> done) {
+    }
+}
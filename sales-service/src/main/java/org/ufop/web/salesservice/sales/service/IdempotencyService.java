@@ -0,0 +1,431 @@
+package org.ufop.web.salesservice.sales.service;
+
+import org.ufop.web.salesservice.sales.client.PaymentGatewayException;
+import org.ufop.web.salesservice.sales.model.IdempotencyRecord;
+import org.ufop.web.salesservice.sales.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.ErrorResponse;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Replays the stored response when a client retries a request with the same
+ * {@code Idempotency-Key}, instead of creating another sale or charging again.
+ * <p>
+ * Before the request runs, its claim on the key is committed to {@code idempotency_keys}
+ * (through the group-commit writer, so concurrent claims share a commit). If the service
+ * dies while the request runs, or before its response reaches the table, a retry finds the
+ * claim and gets 409 instead of running the request a second time. Recent keys are held
+ * in a bounded in-memory LRU, so a lookup on the request path is a hash map access;
+ * completed responses are written behind to the table every second, and the table is only
+ * read on a miss while it may hold keys the memory no longer has, i.e. after an eviction or
+ * a restart, until those keys expire.
+ * <p>
+ * 2xx responses are stored and replayed. A request that failed before changing anything
+ * (invalid input, a non-2xx response, a service turning it away) releases the key so it
+ * can be retried; any other failure may have left tickets reserved or a card charged, so
+ * it is stored and replayed like a response. A retry while the first request is still
+ * running gets 409, and reusing a key for a different request body gets 422.
+ */
+@Service
+@Slf4j
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    private static final int MAX_KEY_LENGTH = 255;
+    // Status of a claim on a key whose request has not finished
+    private static final int IN_FLIGHT = 0;
+
+    private final IdempotencyRecordRepository repository;
+    private final GroupCommitWriter writer;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final int maxSize;
+    private final long ttlMillis;
+
+    // Guarded by this; access-ordered so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Guarded by this; completed responses not written to the table yet
+    private Map<String, IdempotencyRecord> pending = new LinkedHashMap<>();
+    // Guarded by this; the table may hold live keys missing from memory until this time
+    private long spilledUntil;
+
+    private final Counter created;
+    private final Counter replayed;
+    private final Counter inProgress;
+    private final Counter mismatched;
+
+    public IdempotencyService(IdempotencyRecordRepository repository,
+                              GroupCommitWriter writer,
+                              PlatformTransactionManager transactionManager,
+                              ObjectMapper objectMapper,
+                              MeterRegistry meterRegistry,
+                              @Value("${sales.idempotency.max-size:10000}") int maxSize,
+                              @Value("${sales.idempotency.ttl-hours:24}") long ttlHours) {
+        this.repository = repository;
+        this.writer = writer;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.maxSize = maxSize;
+        this.ttlMillis = Duration.ofHours(ttlHours).toMillis();
+
+        this.created = requests(meterRegistry, "new");
+        this.replayed = requests(meterRegistry, "replayed");
+        this.inProgress = requests(meterRegistry, "in_progress");
+        this.mismatched = requests(meterRegistry, "mismatch");
+    }
+
+    /**
+     * Runs {@code action} once per {@code scope} and key; without a key it just runs it.
+     *
+     * @param request the request body, fingerprinted to detect a key reused for another request
+     */
+    public <T> ResponseEntity<T> execute(String scope, String key, Object request, TypeReference<T> responseType,
+                                         Supplier<ResponseEntity<T>> action) {
+        if (key == null) {
+            return action.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    HEADER + " must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String id = scope + ":" + key;
+        String requestHash = fingerprint(request);
+
+        long now = System.currentTimeMillis();
+        Entry existing = lookup(id, requestHash, now);
+        if (existing != null) {
+            return replay(existing, requestHash, responseType);
+        }
+        claim(id, requestHash, now);
+
+        ResponseEntity<T> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            if (nothingChanged(e)) {
+                release(id);
+            } else {
+                fail(id, requestHash, e);
+            }
+            throw e;
+        } catch (Error e) {
+            interrupt(id, requestHash);
+            throw e;
+        }
+
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            release(id);
+            return response;
+        }
+        complete(id, requestHash, response);
+        created.increment();
+        return response;
+    }
+
+    @PostConstruct
+    public void init() {
+        LocalDateTime latestExpiry = repository.findLatestExpiry();
+        if (latestExpiry != null) {
+            synchronized (this) {
+                spilledUntil = toMillis(latestExpiry);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${sales.idempotency.flush-interval-ms:1000}")
+    public void flush() {
+        Map<String, IdempotencyRecord> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new LinkedHashMap<>();
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> repository.saveAll(batch.values()));
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                batch.forEach(pending::putIfAbsent);
+            }
+            log.warn("Could not persist {} idempotency keys, will retry", batch.size(), e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${sales.idempotency.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        Integer deleted = transactionTemplate.execute(status -> repository.deleteExpired(LocalDateTime.now()));
+        if (deleted != null && deleted > 0) {
+            log.debug("Purged {} expired idempotency keys", deleted);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * The stored or in-flight entry for {@code id}, or null after claiming it for the caller
+     * in memory.
+     */
+    private Entry lookup(String id, String requestHash, long now) {
+        boolean checkTable;
+        synchronized (this) {
+            Entry entry = live(id, now);
+            if (entry != null) {
+                return entry;
+            }
+            checkTable = now < spilledUntil;
+        }
+
+        Entry stored = checkTable ? load(id, now) : null;
+
+        synchronized (this) {
+            // Another request may have claimed or completed the key in the meantime
+            Entry entry = live(id, now);
+            if (entry != null) {
+                return entry;
+            }
+            if (stored != null) {
+                put(id, stored, now);
+                return stored;
+            }
+            put(id, Entry.inFlight(requestHash, now + ttlMillis), now);
+            return null;
+        }
+    }
+
+    /**
+     * Commits the claim on {@code id} before the request runs.
+     */
+    private void claim(String id, String requestHash, long now) {
+        IdempotencyRecord claim = new IdempotencyRecord(id, requestHash, IN_FLIGHT, "",
+                toDateTime(now), toDateTime(now + ttlMillis));
+        try {
+            try {
+                writer.insert(claim);
+            } catch (RuntimeException e) {
+                // An expired record of the same key that was not purged yet may be in the way
+                Integer deleted = transactionTemplate.execute(status ->
+                        repository.deleteExpiredById(id, toDateTime(now)));
+                if (deleted == null || deleted == 0) {
+                    throw e;
+                }
+                writer.insert(claim);
+            }
+        } catch (RuntimeException e) {
+            forget(id);
+            throw e;
+        }
+    }
+
+    private Entry live(String id, long now) {
+        Entry entry = entries.get(id);
+        if (entry != null && entry.expiresAt > now) {
+            return entry;
+        }
+        IdempotencyRecord record = pending.get(id);
+        if (record != null && toMillis(record.getExpiresAt()) > now) {
+            return Entry.of(record);
+        }
+        return null;
+    }
+
+    private Entry load(String id, long now) {
+        Optional<IdempotencyRecord> record = repository.findById(id);
+        return record.filter(r -> toMillis(r.getExpiresAt()) > now).map(Entry::of).orElse(null);
+    }
+
+    /**
+     * Frees the key after a request that changed nothing, so it can be retried with it.
+     */
+    private void release(String id) {
+        forget(id);
+        try {
+            transactionTemplate.executeWithoutResult(status -> repository.deleteById(id));
+        } catch (RuntimeException e) {
+            log.warn("Could not release idempotency key {}, retries are refused until it expires", id, e);
+        }
+    }
+
+    private synchronized void forget(String id) {
+        entries.remove(id);
+    }
+
+    /**
+     * Leaves the claim in place but no longer in flight, so a retry is told the outcome is
+     * unknown, as after a crash.
+     */
+    private synchronized void interrupt(String id, String requestHash) {
+        long now = System.currentTimeMillis();
+        put(id, new Entry(requestHash, IN_FLIGHT, "", now + ttlMillis), now);
+    }
+
+    private void complete(String id, String requestHash, ResponseEntity<?> response) {
+        String body;
+        try {
+            body = objectMapper.writeValueAsString(response.getBody());
+        } catch (JsonProcessingException e) {
+            interrupt(id, requestHash);
+            log.warn("Could not store the response for idempotency key {}", id, e);
+            return;
+        }
+        store(id, requestHash, response.getStatusCode().value(), body);
+    }
+
+    private void fail(String id, String requestHash, RuntimeException e) {
+        int status = e instanceof ErrorResponse error ? error.getStatusCode().value()
+                : e instanceof PaymentGatewayException gatewayFailure ? gatewayFailure.status().value()
+                : HttpStatus.INTERNAL_SERVER_ERROR.value();
+        String message = e instanceof ResponseStatusException statusException ? statusException.getReason()
+                : e.getMessage();
+        store(id, requestHash, status, message != null ? message : "Request failed");
+    }
+
+    private void store(String id, String requestHash, int status, String body) {
+        long now = System.currentTimeMillis();
+        long expiresAt = now + ttlMillis;
+        synchronized (this) {
+            put(id, new Entry(requestHash, status, body, expiresAt), now);
+            pending.put(id, new IdempotencyRecord(id, requestHash, status, body,
+                    toDateTime(now), toDateTime(expiresAt)));
+        }
+    }
+
+    // Failures thrown before the request changed anything: bad input, or turned away up front
+    private static boolean nothingChanged(RuntimeException e) {
+        if (e instanceof PaymentGatewayException gatewayFailure) {
+            return gatewayFailure.notAttempted();
+        }
+        return e instanceof IllegalArgumentException || e instanceof ResponseStatusException;
+    }
+
+    // Caller holds the lock
+    private void put(String id, Entry entry, long now) {
+        entries.put(id, entry);
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > maxSize && eldest.hasNext()) {
+            Entry candidate = eldest.next();
+            if (candidate.inFlight() && candidate.expiresAt > now) {
+                continue;
+            }
+            eldest.remove();
+            if (candidate.expiresAt > now) {
+                spilledUntil = Math.max(spilledUntil, candidate.expiresAt);
+            }
+        }
+    }
+
+    private <T> ResponseEntity<T> replay(Entry entry, String requestHash, TypeReference<T> responseType) {
+        if (!entry.requestHash().equals(requestHash)) {
+            mismatched.increment();
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                    HEADER + " was already used for a different request");
+        }
+        if (entry.inFlight()) {
+            inProgress.increment();
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "A request with this " + HEADER + " is still being processed");
+        }
+        if (entry.interrupted()) {
+            inProgress.increment();
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "The request with this " + HEADER
+                    + " was interrupted and may have partly completed; check its outcome before retrying with a new key");
+        }
+
+        replayed.increment();
+        if (entry.failed()) {
+            throw new ResponseStatusException(HttpStatus.valueOf(entry.status()), entry.body());
+        }
+        try {
+            return ResponseEntity.status(entry.status())
+                    .header("Idempotent-Replayed", "true")
+                    .body(objectMapper.readValue(entry.body(), responseType));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored idempotent response could not be read", e);
+        }
+    }
+
+    private String fingerprint(Object request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not fingerprint the request", e);
+        }
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime toDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("sales.idempotency.requests")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * A completed response or stored failure, or a claim on the key: in memory while the
+     * request runs here (no body), or read back from the table after a restart.
+     */
+    private record Entry(String requestHash, int status, String body, long expiresAt) {
+
+        static Entry inFlight(String requestHash, long expiresAt) {
+            return new Entry(requestHash, IN_FLIGHT, null, expiresAt);
+        }
+
+        static Entry of(IdempotencyRecord record) {
+            return new Entry(record.getRequestHash(), record.getStatusCode(), record.getResponseBody(),
+                    toMillis(record.getExpiresAt()));
+        }
+
+        boolean inFlight() {
+            return status == IN_FLIGHT && body == null;
+        }
+
+        // A claim left in the table by a request that never finished, e.g. cut off by a crash
+        boolean interrupted() {
+            return status == IN_FLIGHT && body != null;
+        }
+
+        boolean failed() {
+            return status >= 400;
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package org.ufop.web.salesservice.sales.service;
+
+import org.ufop.web.salesservice.sales.client.PaymentGateway;
+import org.ufop.web.salesservice.sales.client.PaymentGatewayException;
+import org.ufop.web.salesservice.sales.model.Payment;
+import org.ufop.web.salesservice.sales.model.Sale;
+import org.ufop.web.salesservice.sales.repository.PaymentRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Authorizes card payments, in the background for clients that asked not to wait and on the
+ * request thread for the others. Either way the payment is stored as PENDING before the
+ * acquirer is called, so no authorization can happen without a payment row recording it.
+ * <p>
+ * The {@link PaymentGateway} is called outside any transaction, so a slow authorization holds
+ * no SQLite lock, and the outcome is applied in one short transaction: the payment becomes
+ * COMPLETED and the sale PAID together, or the payment becomes FAILED. Only once that has
+ * committed are the sale's tickets confirmed with events-service, a call that cannot be rolled
+ * back; if it fails the sale goes back to PENDING. A payment that fails although the acquirer
+ * may have approved it (the sale was already paid, its tickets could not be confirmed, or the
+ * gateway gave no answer) is marked {@code reversalPending} and its authorization reversed,
+ * retrying until the acquirer confirms, so the customer is never charged for it.
+ * <p>
+ * In the background, the request returns once the payment is stored and one of
+ * {@code workers} threads authorizes it. At most {@code workers + queue-capacity} payments
+ * wait at a time; beyond that a submission is turned away with 503 before anything is written.
+ * <p>
+ * Card data only lives in the queued task, never in the database, so payments still PENDING
+ * when the service stops cannot be authorized later. They are marked FAILED on the next
+ * start, with their authorizations reversed, and the client has to pay again.
+ */
+@Component
+@Slf4j
+public class PaymentAuthorizer {
+
+    private static final EnumSet<Payment.PaymentMethod> CARD_METHODS =
+            EnumSet.of(Payment.PaymentMethod.CREDIT_CARD, Payment.PaymentMethod.DEBIT_CARD);
+
+    private final PaymentRepository paymentRepository;
+    private final SaleService saleService;
+    private final PaymentGateway paymentGateway;
+    private final GroupCommitWriter writer;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService executor;
+    private final Semaphore slots;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger reversalsPending = new AtomicInteger();
+    private final Timer approved;
+    private final Timer declined;
+
+    public PaymentAuthorizer(PaymentRepository paymentRepository,
+                             SaleService saleService,
+                             PaymentGateway paymentGateway,
+                             GroupCommitWriter writer,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${sales.payments.async.workers:4}") int workers,
+                             @Value("${sales.payments.async.queue-capacity:200}") int queueCapacity) {
+        this.paymentRepository = paymentRepository;
+        this.saleService = saleService;
+        this.paymentGateway = paymentGateway;
+        this.writer = writer;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(workers, task -> {
+            Thread thread = new Thread(task, "payment-authorizer-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.slots = new Semaphore(workers + queueCapacity);
+
+        Gauge.builder("sales.payments.async.waiting", waiting, AtomicInteger::get)
+                .description("Card payments accepted and not yet authorized")
+                .register(meterRegistry);
+        Gauge.builder("sales.payments.reversals.pending", reversalsPending, AtomicInteger::get)
+                .description("Failed card payments whose authorization the acquirer has not reversed yet")
+                .register(meterRegistry);
+        this.approved = authorizations(meterRegistry, "approved");
+        this.declined = authorizations(meterRegistry, "declined");
+    }
+
+    /**
+     * Stores the new PENDING {@code payment} and queues its authorization.
+     *
+     * @param description how the payment is described in its details, e.g. "Credit card payment"
+     * @return the stored payment, still PENDING
+     */
+    public Payment submit(Payment payment, PaymentGateway.AuthorizationRequest request, String description) {
+        if (!slots.tryAcquire()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Too many payments are awaiting authorization, try again shortly");
+        }
+        try {
+            writer.insert(payment);
+            waiting.incrementAndGet();
+            executor.execute(() -> {
+                try {
+                    authorize(payment.getId(), payment.getSaleId(), request, description);
+                } finally {
+                    waiting.decrementAndGet();
+                    slots.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            slots.release();
+            throw e;
+        }
+        return payment;
+    }
+
+    /**
+     * Stores the new PENDING {@code payment}, authorizes it on the calling thread and stores
+     * the outcome, the same way as for queued payments.
+     *
+     * @param description how the payment is described in its details, e.g. "Credit card payment"
+     * @return the payment, COMPLETED or FAILED
+     * @throws PaymentGatewayException if the gateway gave no answer; the payment is stored as
+     *                                 FAILED first, with its authorization being reversed
+     *                                 unless the acquirer was never called
+     */
+    public Payment authorizeNow(Payment payment, PaymentGateway.AuthorizationRequest request, String description) {
+        writer.insert(payment);
+        Outcome outcome = authorize(payment.getId(), payment.getSaleId(), request, description);
+        payment.setStatus(outcome.status());
+        payment.setProcessedAt(outcome.processedAt());
+        payment.setPaymentDetails(outcome.details());
+        if (outcome.reversalPending()) {
+            payment.setReversalPending(true);
+        }
+        PaymentGatewayException failure = outcome.gatewayFailure();
+        if (failure != null) {
+            throw new PaymentGatewayException(failure.getReason(), failure.getMessage() + ". Payment " + payment.getId()
+                    + (outcome.reversalPending()
+                    ? " failed and its authorization is being reversed, so the card will not be charged"
+                    : " failed without reaching the acquirer"), failure.getRetryAfterSeconds(), failure);
+        }
+        return payment;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void failInterrupted() {
+        // The acquirer may have approved some of them, so their authorizations are reversed too
+        Integer failed = transactionTemplate.execute(status -> paymentRepository.failPendingForReversal(CARD_METHODS,
+                LocalDateTime.now(), "Authorization interrupted by a restart, please pay again"));
+        if (failed != null && failed > 0) {
+            log.warn("Marked {} card payments left pending by the last shutdown as failed", failed);
+            retryReversals();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("{} card payments were still awaiting authorization at shutdown", waiting.get());
+        }
+    }
+
+    /**
+     * Retries the reversals the acquirer did not confirm when they were first asked for.
+     */
+    @Scheduled(fixedDelayString = "${sales.payments.reversals.retry-interval-ms:60000}")
+    public void retryReversals() {
+        List<Payment> payments = paymentRepository.findByReversalPendingTrue();
+        int left = 0;
+        for (Payment payment : payments) {
+            if (!reverse(payment.getId(), payment.getTransactionId(), payment.getAmount())) {
+                left++;
+            }
+        }
+        reversalsPending.set(left);
+    }
+
+    private Outcome authorize(UUID paymentId, UUID saleId, PaymentGateway.AuthorizationRequest request,
+                              String description) {
+        long started = System.nanoTime();
+        String failure = null;
+        PaymentGatewayException gatewayFailure = null;
+        try {
+            PaymentGateway.AuthorizationResult result = paymentGateway.authorize(request);
+            if (!result.approved()) {
+                failure = description + " declined: " + result.reason();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Authorization of payment {} failed", paymentId, e);
+            failure = description + " could not be authorized: " + e.getMessage();
+            gatewayFailure = e instanceof PaymentGatewayException cause ? cause
+                    : new PaymentGatewayException(PaymentGatewayException.Reason.ERROR, "Payment gateway failed", 1, e);
+        }
+        (failure == null ? approved : declined).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+
+        if (failure != null) {
+            // Only a call that was turned away before reaching the acquirer is sure to have charged nothing
+            if (gatewayFailure != null && !gatewayFailure.notAttempted()) {
+                return failAndReverse(paymentId, Payment.PaymentStatus.PENDING, request, failure, gatewayFailure);
+            }
+            return finish(paymentId, Payment.PaymentStatus.FAILED, failure, gatewayFailure);
+        }
+
+        LocalDateTime processedAt = LocalDateTime.now();
+        String details = description + " processed";
+        Sale sale;
+        try {
+            // markPaid only flips a sale that is not PAID yet, so a second payment racing for it fails here
+            sale = transactionTemplate.execute(status -> {
+                if (paymentRepository.completePending(paymentId, Payment.PaymentStatus.COMPLETED,
+                        processedAt, details) == 0) {
+                    throw new IllegalStateException("Payment " + paymentId + " is no longer pending");
+                }
+                return saleService.markPaid(saleId, processedAt);
+            });
+        } catch (RuntimeException e) {
+            log.warn("Could not mark sale {} paid for authorized payment {}", saleId, paymentId, e);
+            return failAndReverse(paymentId, Payment.PaymentStatus.PENDING, request,
+                    description + " authorized, but the sale could not be paid: " + e.getMessage(), null);
+        }
+
+        try {
+            saleService.confirmTickets(sale);
+        } catch (RuntimeException e) {
+            log.warn("Could not confirm the tickets of sale {} for authorized payment {}", saleId, paymentId, e);
+            try {
+                saleService.revertPaid(sale);
+            } catch (RuntimeException revertFailure) {
+                log.error("Could not take sale {} back to pending after its tickets were not confirmed",
+                        saleId, revertFailure);
+            }
+            return failAndReverse(paymentId, Payment.PaymentStatus.COMPLETED, request,
+                    description + " authorized, but the tickets could not be confirmed: " + e.getMessage(), null);
+        }
+        return new Outcome(Payment.PaymentStatus.COMPLETED, details, false, processedAt, null);
+    }
+
+    /**
+     * Fails a payment whose card may have been charged and reverses its authorization on a
+     * worker. The payment is marked for reversal before the acquirer is asked, so a reversal
+     * that fails is retried by {@link #retryReversals()} instead of being forgotten.
+     */
+    private Outcome failAndReverse(UUID paymentId, Payment.PaymentStatus from,
+                                   PaymentGateway.AuthorizationRequest request, String failure,
+                                   PaymentGatewayException gatewayFailure) {
+        LocalDateTime processedAt = LocalDateTime.now();
+        String details = failure + "; the authorization is being reversed";
+        try {
+            transactionTemplate.executeWithoutResult(tx ->
+                    paymentRepository.failForReversal(paymentId, from, processedAt, details));
+        } catch (RuntimeException e) {
+            log.error("Could not record the outcome of payment {}, it stays pending and is reversed after the "
+                    + "next restart", paymentId, e);
+        }
+        try {
+            executor.execute(() -> {
+                if (!reverse(paymentId, request.transactionId(), request.amount())) {
+                    reversalsPending.incrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Shutting down, the authorization of payment {} is reversed after the next restart", paymentId);
+        }
+        return new Outcome(Payment.PaymentStatus.FAILED, details, true, processedAt, gatewayFailure);
+    }
+
+    private boolean reverse(UUID paymentId, String transactionId, double amount) {
+        try {
+            paymentGateway.reverse(transactionId, amount);
+        } catch (RuntimeException e) {
+            log.error("Could not reverse the authorization of payment {} ({}), retrying later",
+                    paymentId, transactionId, e);
+            return false;
+        }
+        log.info("Reversed the authorization of payment {} ({})", paymentId, transactionId);
+        try {
+            transactionTemplate.executeWithoutResult(tx -> paymentRepository.reversed(paymentId));
+        } catch (RuntimeException e) {
+            // Reversing again is harmless, so the next retry simply repeats it
+            log.warn("Could not record the reversal of payment {}", paymentId, e);
+        }
+        return true;
+    }
+
+    private Outcome finish(UUID paymentId, Payment.PaymentStatus status, String details,
+                           PaymentGatewayException gatewayFailure) {
+        LocalDateTime processedAt = LocalDateTime.now();
+        try {
+            transactionTemplate.executeWithoutResult(tx ->
+                    paymentRepository.completePending(paymentId, status, processedAt, details));
+        } catch (RuntimeException e) {
+            log.error("Could not record the outcome of payment {}, it stays pending until the next restart",
+                    paymentId, e);
+        }
+        return new Outcome(status, details, false, processedAt, gatewayFailure);
+    }
+
+    private static Timer authorizations(MeterRegistry meterRegistry, String result) {
+        return Timer.builder("sales.payments.async.authorization")
+                .description("Time to authorize a queued card payment")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * How a payment's authorization ended, as it was stored; {@code gatewayFailure} is set when
+     * the gateway gave no answer.
+     */
+    private record Outcome(Payment.PaymentStatus status, String details, boolean reversalPending,
+                           LocalDateTime processedAt, PaymentGatewayException gatewayFailure) {
+    }
+}
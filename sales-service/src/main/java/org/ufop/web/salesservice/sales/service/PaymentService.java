@@ -1,5 +1,6 @@
 package org.ufop.web.salesservice.sales.service;
 
+import org.ufop.web.salesservice.sales.client.PaymentGateway;
 import org.ufop.web.salesservice.sales.dto.PaymentRequestDTO;
 import org.ufop.web.salesservice.sales.model.Payment;
 import org.ufop.web.salesservice.sales.model.Sale;
@@ -19,102 +20,61 @@ import java.util.UUID;
 @Slf4j
 public class PaymentService {
 
+    // Where the QR code image of a PIX charge is served, by txid; see PaymentController
+    private static final String PIX_QR_CODE_PATH = "/api/payments/pix/qrcode/";
+
     private final PaymentRepository paymentRepository;
     private final SaleRepository saleRepository;
     private final SaleService saleService;
+    private final GroupCommitWriter writer;
+    private final PaymentAuthorizer authorizer;
+    private final PixExpirationSweeper pixExpirations;
+    private final CardBinTable cardBins;
+    private final PixQrCodeService pixQrCodes;
 
-    @Transactional
     public Payment processCreditCardPayment(PaymentRequestDTO dto) {
-        Sale sale = saleRepository.findById(dto.getSaleId())
-                .orElseThrow(() -> new IllegalArgumentException("Sale not found"));
-
-        if (sale.getSaleStatus() == Sale.SaleStatus.PAID) {
-            throw new IllegalStateException("Sale is already paid");
-        }
-
-        // Simulate payment processing
-        boolean paymentSuccessful = simulatePaymentProcessing(dto.getCardData());
-
-        Payment payment = new Payment();
-        payment.setId(UUID.randomUUID());
-        payment.setSaleId(sale.getId());
-        payment.setStatus(paymentSuccessful ? Payment.PaymentStatus.COMPLETED : Payment.PaymentStatus.FAILED);
-        payment.setPaymentMethod(Payment.PaymentMethod.CREDIT_CARD);
-        payment.setAmount(sale.getTotalAmount());
-        payment.setTransactionId(generateTransactionId());
-        payment.setCardLastFour(extractLastFour(dto.getCardData().getCardNumber()));
-        payment.setCardBrand(detectCardBrand(dto.getCardData().getCardNumber()));
-        payment.setInstallments(dto.getCardData().getInstallments());
-        payment.setCreatedAt(LocalDateTime.now());
-        payment.setProcessedAt(LocalDateTime.now());
-        payment.setPaymentDetails("Credit card payment processed");
-
-        Payment savedPayment = paymentRepository.save(payment);
-
-        if (paymentSuccessful) {
-            saleService.updateSaleStatus(sale.getId(), Sale.SaleStatus.PAID);
-        }
-
-        return savedPayment;
+        return processCardPayment(dto, Payment.PaymentMethod.CREDIT_CARD, "Credit card payment");
     }
 
-    @Transactional
     public Payment processDebitCardPayment(PaymentRequestDTO dto) {
-        Sale sale = saleRepository.findById(dto.getSaleId())
-                .orElseThrow(() -> new IllegalArgumentException("Sale not found"));
-
-        if (sale.getSaleStatus() == Sale.SaleStatus.PAID) {
-            throw new IllegalStateException("Sale is already paid");
-        }
-
-        // Simulate payment processing
-        boolean paymentSuccessful = simulatePaymentProcessing(dto.getCardData());
-
-        Payment payment = new Payment();
-        payment.setId(UUID.randomUUID());
-        payment.setSaleId(sale.getId());
-        payment.setStatus(paymentSuccessful ? Payment.PaymentStatus.COMPLETED : Payment.PaymentStatus.FAILED);
-        payment.setPaymentMethod(Payment.PaymentMethod.DEBIT_CARD);
-        payment.setAmount(sale.getTotalAmount());
-        payment.setTransactionId(generateTransactionId());
-        payment.setCardLastFour(extractLastFour(dto.getCardData().getCardNumber()));
-        payment.setCardBrand(detectCardBrand(dto.getCardData().getCardNumber()));
-        payment.setCreatedAt(LocalDateTime.now());
-        payment.setProcessedAt(LocalDateTime.now());
-        payment.setPaymentDetails("Debit card payment processed");
-
-        Payment savedPayment = paymentRepository.save(payment);
+        return processCardPayment(dto, Payment.PaymentMethod.DEBIT_CARD, "Debit card payment");
+    }
 
-        if (paymentSuccessful) {
-            saleService.updateSaleStatus(sale.getId(), Sale.SaleStatus.PAID);
-        }
+    /**
+     * Accepts the credit card payment as PENDING and authorizes it in the background.
+     */
+    public Payment submitCreditCardPayment(PaymentRequestDTO dto) {
+        return submitCardPayment(dto, Payment.PaymentMethod.CREDIT_CARD, "Credit card payment");
+    }
 
-        return savedPayment;
+    /**
+     * Accepts the debit card payment as PENDING and authorizes it in the background.
+     */
+    public Payment submitDebitCardPayment(PaymentRequestDTO dto) {
+        return submitCardPayment(dto, Payment.PaymentMethod.DEBIT_CARD, "Debit card payment");
     }
 
-    @Transactional
     public Payment generatePixPayment(PaymentRequestDTO dto) {
-        Sale sale = saleRepository.findById(dto.getSaleId())
-                .orElseThrow(() -> new IllegalArgumentException("Sale not found"));
-
-        if (sale.getSaleStatus() == Sale.SaleStatus.PAID) {
-            throw new IllegalStateException("Sale is already paid");
-        }
+        Sale sale = findUnpaidSale(dto.getSaleId());
 
         Payment payment = new Payment();
-        payment.setId(UUID.randomUUID());
         payment.setSaleId(sale.getId());
         payment.setStatus(Payment.PaymentStatus.PENDING);
         payment.setPaymentMethod(Payment.PaymentMethod.PIX);
         payment.setAmount(sale.getTotalAmount());
         payment.setTransactionId(generateTransactionId());
-        payment.setPixKey(dto.getPixKey() != null ? dto.getPixKey() : generateRandomPixKey());
-        payment.setPixQrCode(generatePixQrCode(payment.getPixKey(), sale.getTotalAmount()));
+        // The merchant's key receives the charge; a key sent by the client is ignored
+        payment.setPixKey(pixQrCodes.pixKey());
+        payment.setPixPayload(pixQrCodes.payload(sale.getTotalAmount(), payment.getTransactionId()));
+        payment.setPixQrCode(PIX_QR_CODE_PATH + payment.getTransactionId());
         payment.setPixExpiration(LocalDateTime.now().plusMinutes(30));
         payment.setCreatedAt(LocalDateTime.now());
         payment.setPaymentDetails("PIX payment generated");
 
-        return paymentRepository.save(payment);
+        writer.insert(payment);
+        pixExpirations.track(payment);
+        pixQrCodes.prefetch(payment.getAmount(), payment.getTransactionId());
+        return payment;
     }
 
     @Transactional
@@ -125,6 +85,10 @@ public class PaymentService {
         if (payment.getStatus() != Payment.PaymentStatus.PENDING) {
             throw new IllegalStateException("Payment is not pending");
         }
+        // The sweeper fails it shortly; until then the expired code must not be honoured either
+        if (payment.getPixExpiration() != null && LocalDateTime.now().isAfter(payment.getPixExpiration())) {
+            throw new IllegalStateException("PIX payment has expired");
+        }
 
         payment.setStatus(Payment.PaymentStatus.COMPLETED);
         payment.setProcessedAt(LocalDateTime.now());
@@ -156,7 +120,17 @@ public class PaymentService {
 
     @Transactional(readOnly = true)
     public Optional<Payment> getPaymentBySaleId(UUID saleId) {
-        return paymentRepository.findBySaleId(saleId);
+        return paymentRepository.findFirstBySaleIdOrderByCreatedAtDesc(saleId);
+    }
+
+    /**
+     * The QR code of the PIX charge with this txid, as SVG. Rendered outside any transaction
+     * so a render waiting for a QR thread holds no connection.
+     */
+    public Optional<String> getPixQrCode(String transactionId) {
+        return paymentRepository.findByTransactionId(transactionId)
+                .filter(payment -> payment.getPaymentMethod() == Payment.PaymentMethod.PIX)
+                .map(payment -> pixQrCodes.render(payment.getAmount(), transactionId).svg());
     }
 
     @Transactional(readOnly = true)
@@ -164,51 +138,55 @@ public class PaymentService {
         return paymentRepository.findById(id);
     }
 
-    private boolean simulatePaymentProcessing(PaymentRequestDTO.CardDataDTO cardData) {
-        // In a real application, this would integrate with a payment gateway
-        // For simulation, we'll accept all payments
-        log.info("Simulating payment processing for card ending in: {}",
-                extractLastFour(cardData.getCardNumber()));
-        return true;
+    private Payment processCardPayment(PaymentRequestDTO dto, Payment.PaymentMethod method, String description) {
+        Sale sale = findUnpaidSale(dto.getSaleId());
+        Payment payment = newCardPayment(sale, dto, method, description);
+        return authorizer.authorizeNow(payment, authorizationRequest(payment, dto), description);
     }
 
-    private String generateTransactionId() {
-        return "TXN" + System.currentTimeMillis() + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+    private Payment submitCardPayment(PaymentRequestDTO dto, Payment.PaymentMethod method, String description) {
+        Sale sale = findUnpaidSale(dto.getSaleId());
+        Payment payment = newCardPayment(sale, dto, method, description);
+        return authorizer.submit(payment, authorizationRequest(payment, dto), description);
     }
 
-    private String extractLastFour(String cardNumber) {
-        if (cardNumber == null || cardNumber.length() < 4) {
-            return "****";
+    private Sale findUnpaidSale(UUID saleId) {
+        Sale sale = saleRepository.findById(saleId)
+                .orElseThrow(() -> new IllegalArgumentException("Sale not found"));
+
+        if (sale.getSaleStatus() == Sale.SaleStatus.PAID) {
+            throw new IllegalStateException("Sale is already paid");
         }
-        return cardNumber.replaceAll("\\s", "").substring(cardNumber.length() - 4);
-    }
-
-    private String detectCardBrand(String cardNumber) {
-        String cleaned = cardNumber.replaceAll("\\s", "");
-
-        if (cleaned.startsWith("4")) {
-            return "VISA";
-        } else if (cleaned.startsWith("5")) {
-            return "MASTERCARD";
-        } else if (cleaned.startsWith("34") || cleaned.startsWith("37")) {
-            return "AMEX";
-        } else if (cleaned.startsWith("6")) {
-            return "DISCOVER";
-        } else {
-            return "UNKNOWN";
+        return sale;
+    }
+
+    private Payment newCardPayment(Sale sale, PaymentRequestDTO dto, Payment.PaymentMethod method,
+                                   String description) {
+        Payment payment = new Payment();
+        payment.setSaleId(sale.getId());
+        payment.setStatus(Payment.PaymentStatus.PENDING);
+        payment.setPaymentDetails(description + " awaiting authorization");
+        payment.setPaymentMethod(method);
+        payment.setAmount(sale.getTotalAmount());
+        payment.setTransactionId(generateTransactionId());
+        payment.setCardLastFour(CardBinTable.lastFour(dto.getCardData().getCardNumber()));
+        payment.setCardBrand(cardBins.brandOf(dto.getCardData().getCardNumber()));
+        if (method == Payment.PaymentMethod.CREDIT_CARD) {
+            payment.setInstallments(dto.getCardData().getInstallments());
         }
+        payment.setCreatedAt(LocalDateTime.now());
+        return payment;
     }
 
-    private String generateRandomPixKey() {
-        return "PIX-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+    private static PaymentGateway.AuthorizationRequest authorizationRequest(Payment payment, PaymentRequestDTO dto) {
+        PaymentRequestDTO.CardDataDTO card = dto.getCardData();
+        return new PaymentGateway.AuthorizationRequest(payment.getSaleId(), payment.getTransactionId(),
+                payment.getPaymentMethod(), payment.getAmount(),
+                card.getCardNumber(), card.getCardHolder(), card.getCardExpiry(), card.getCardCvv(),
+                payment.getInstallments());
     }
 
-    private String generatePixQrCode(String pixKey, Double amount) {
-        // In a real application, generate actual QR code
-        // For simulation, return a data URL with a placeholder
-        return "data:image/svg+xml;base64," +
-                java.util.Base64.getEncoder().encodeToString(
-                        ("<svg><text>PIX: " + pixKey + " - R$ " + amount + "</text></svg>").getBytes()
-                );
+    private String generateTransactionId() {
+        return "TXN" + System.currentTimeMillis() + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,199 @@
+package org.ufop.web.salesservice.sales.service;
+
+import org.ufop.web.salesservice.sales.model.Payment;
+import org.ufop.web.salesservice.sales.repository.PaymentRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fails PIX payments that were not paid before their {@code pixExpiration}.
+ * <p>
+ * Pending PIX payments are kept in memory ordered by deadline, loaded from {@code payments}
+ * at startup and added as they are generated. One thread sleeps until the earliest deadline,
+ * so nothing runs while nothing is due and the table is never polled. Whatever is due at
+ * that moment (up to {@code batch-size}) is failed in one {@code UPDATE}; payments confirmed
+ * in the meantime are skipped by the update itself, so nothing has to be removed from the
+ * queue when a payment settles. With {@code release-holds} the tickets held for the sale go
+ * back to the event as soon as its last pending payment expires.
+ */
+@Component
+@Slf4j
+public class PixExpirationSweeper {
+
+    private static final String EXPIRED = "PIX payment expired before it was paid";
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(5);
+    // Rows without pixExpiration get the window generatePixPayment grants
+    private static final Duration PIX_WINDOW = Duration.ofMinutes(30);
+
+    private final PaymentRepository paymentRepository;
+    private final SaleService saleService;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final boolean releaseHolds;
+
+    private final DelayQueue<Deadline> deadlines = new DelayQueue<>();
+    // The live deadline per payment; queued deadlines not found here were superseded
+    private final Map<UUID, Deadline> tracked = new ConcurrentHashMap<>();
+    private final Counter expired;
+    private volatile boolean running;
+    private Thread sweeper;
+
+    public PixExpirationSweeper(PaymentRepository paymentRepository,
+                                SaleService saleService,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry,
+                                @Value("${sales.pix.expiration.batch-size:500}") int batchSize,
+                                @Value("${sales.pix.expiration.release-holds:true}") boolean releaseHolds) {
+        this.paymentRepository = paymentRepository;
+        this.saleService = saleService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.releaseHolds = releaseHolds;
+
+        Gauge.builder("sales.pix.pending", tracked, Map::size)
+                .description("PIX payment deadlines being tracked")
+                .register(meterRegistry);
+        this.expired = Counter.builder("sales.pix.expired")
+                .description("PIX payments failed because they expired")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Expires the new PENDING PIX {@code payment} at its {@code pixExpiration}.
+     */
+    public void track(Payment payment) {
+        track(payment.getId(), payment.getSaleId(), payment.getPixExpiration());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        int restored = 0;
+        for (Object[] row : paymentRepository.findPendingPixDeadlines()) {
+            LocalDateTime expiresAt = row[2] != null ? (LocalDateTime) row[2] : ((LocalDateTime) row[3]).plus(PIX_WINDOW);
+            track((UUID) row[0], (UUID) row[1], expiresAt);
+            restored++;
+        }
+        if (restored > 0) {
+            log.info("Tracking {} pending PIX payments for expiration", restored);
+        }
+
+        running = true;
+        sweeper = new Thread(this::run, "pix-expiration");
+        sweeper.setDaemon(true);
+        sweeper.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (sweeper != null) {
+            sweeper.interrupt();
+            sweeper.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    private void track(UUID paymentId, UUID saleId, LocalDateTime expiresAt) {
+        Deadline deadline = new Deadline(paymentId, saleId,
+                expiresAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        tracked.put(paymentId, deadline);
+        deadlines.add(deadline);
+    }
+
+    private void run() {
+        List<Deadline> due = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                due.add(deadlines.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            // Everything else already due goes in the same update
+            deadlines.drainTo(due, batchSize - 1);
+            due.removeIf(deadline -> !tracked.remove(deadline.paymentId(), deadline));
+
+            try {
+                if (!due.isEmpty()) {
+                    expire(due);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Could not expire {} PIX payments, retrying in {}s", due.size(), RETRY_DELAY.toSeconds(), e);
+                long retryAt = System.currentTimeMillis() + RETRY_DELAY.toMillis();
+                for (Deadline deadline : due) {
+                    Deadline retry = new Deadline(deadline.paymentId(), deadline.saleId(), retryAt);
+                    tracked.putIfAbsent(retry.paymentId(), retry);
+                    deadlines.add(retry);
+                }
+            } finally {
+                due.clear();
+            }
+        }
+    }
+
+    private void expire(List<Deadline> due) {
+        List<UUID> ids = due.stream().map(Deadline::paymentId).toList();
+        // Millisecond precision, as stored, so the expired rows can be found by this timestamp
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+
+        Integer failed = transactionTemplate.execute(status -> paymentRepository.failPendingByIdIn(ids, now, EXPIRED));
+        if (failed == null || failed == 0) {
+            return;
+        }
+        expired.increment(failed);
+        log.info("Expired {} unpaid PIX payments", failed);
+
+        if (releaseHolds) {
+            Set<UUID> saleIds = new LinkedHashSet<>(paymentRepository.findSaleIdsFailedAt(ids, now));
+            for (UUID saleId : saleIds) {
+                releaseHold(saleId);
+            }
+        }
+    }
+
+    private void releaseHold(UUID saleId) {
+        try {
+            // Another PIX code generated for the same sale may still be paid
+            if (!paymentRepository.existsBySaleIdAndStatus(saleId, Payment.PaymentStatus.PENDING)) {
+                saleService.releaseTicketHold(saleId);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not release the ticket hold of sale {}, it will lapse on its own", saleId, e);
+        }
+    }
+
+    private record Deadline(UUID paymentId, UUID saleId, long expiresAtMillis) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(expiresAtMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(expiresAtMillis, ((Deadline) other).expiresAtMillis);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package org.ufop.web.salesservice.sales.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BR Code payloads and their QR codes for PIX charges.
+ * <p>
+ * Encoding a QR code is pure CPU work, so it runs on {@code threads} dedicated threads
+ * instead of the request threads: at PIX checkout peaks requests queue for them rather than
+ * crowding out everything else the service does on its cores. Each thread keeps its own
+ * {@link QrCodeEncoder} and SVG buffer. Every charge goes to the merchant's own PIX key,
+ * {@code sales.pix.key}. Rendered codes are kept in an LRU cache keyed by (amount, txid), so fetching the image of a charge again, which clients do while
+ * waiting for it to be paid, costs a map lookup. When {@code queue-capacity} renders are
+ * already waiting, new requests get 503.
+ */
+@Component
+@Slf4j
+public class PixQrCodeService {
+
+    // Light margin around the symbol, in modules, as the standard asks
+    private static final int QUIET_ZONE = 4;
+
+    private final String pixKey;
+    private final String merchantName;
+    private final String merchantCity;
+    private final QrCodeEncoder.ErrorCorrection errorCorrection;
+    private final int cacheSize;
+    private final ThreadPoolExecutor executor;
+    private final ThreadLocal<Renderer> renderers = ThreadLocal.withInitial(Renderer::new);
+
+    // Guarded by this; access-ordered so iteration starts at the least recently used entry
+    private final LinkedHashMap<Key, PixQrCode> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer renders;
+
+    public PixQrCodeService(MeterRegistry meterRegistry,
+                            @Value("${sales.pix.key}") String pixKey,
+                            @Value("${sales.pix.merchant-name:UFOP Tickets}") String merchantName,
+                            @Value("${sales.pix.merchant-city:Ouro Preto}") String merchantCity,
+                            @Value("${sales.pix.qr.error-correction:M}") QrCodeEncoder.ErrorCorrection errorCorrection,
+                            @Value("${sales.pix.qr.threads:0}") int threads,
+                            @Value("${sales.pix.qr.queue-capacity:256}") int queueCapacity,
+                            @Value("${sales.pix.qr.cache-size:1024}") int cacheSize) {
+        this.pixKey = BrCode.pixKey(pixKey);
+        this.merchantName = BrCode.merchantName(merchantName);
+        this.merchantCity = BrCode.merchantCity(merchantCity);
+        this.errorCorrection = errorCorrection;
+        this.cacheSize = cacheSize;
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), task -> {
+            Thread thread = new Thread(task, "pix-qr-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.hits = lookups(meterRegistry, "hit");
+        this.misses = lookups(meterRegistry, "miss");
+        this.renders = Timer.builder("sales.pix.qr.render")
+                .description("Time to encode a BR Code and draw its QR code")
+                .register(meterRegistry);
+        meterRegistry.gauge("sales.pix.qr.queued", executor, e -> e.getQueue().size());
+    }
+
+    /**
+     * The merchant's PIX key, which receives every charge.
+     */
+    public String pixKey() {
+        return pixKey;
+    }
+
+    /**
+     * The BR Code for a charge, without drawing its QR code.
+     */
+    public String payload(double amount, String txid) {
+        return BrCode.payload(pixKey, amount(amount), txid, merchantName, merchantCity);
+    }
+
+    /**
+     * The BR Code and QR code for a charge, from the cache or rendered on a QR thread.
+     *
+     * @throws ResponseStatusException 503 when too many renders are already waiting
+     */
+    public PixQrCode render(double amount, String txid) {
+        Key key = new Key(amount(amount), txid);
+        PixQrCode cached = cached(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+
+        Future<PixQrCode> rendering;
+        try {
+            rendering = executor.submit(() -> renderAndCache(key));
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Too many PIX QR codes are being generated, try again shortly");
+        }
+        try {
+            return rendering.get();
+        } catch (InterruptedException e) {
+            rendering.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while generating the PIX QR code", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Could not generate the PIX QR code", e.getCause());
+        }
+    }
+
+    /**
+     * Renders the charge's QR code in the background so that the client's first request for
+     * the image finds it cached. Skipped when the QR threads are saturated.
+     */
+    public void prefetch(double amount, String txid) {
+        Key key = new Key(amount(amount), txid);
+        if (cached(key) != null) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    renderAndCache(key);
+                } catch (RuntimeException e) {
+                    log.warn("Could not prefetch the QR code of PIX charge {}", txid, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("QR threads are saturated, not prefetching PIX charge {}", txid);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private synchronized PixQrCode cached(Key key) {
+        return cache.get(key);
+    }
+
+    private PixQrCode renderAndCache(Key key) {
+        // Another request may have rendered it while this one was queued
+        PixQrCode cached = cached(key);
+        if (cached != null) {
+            return cached;
+        }
+        long started = System.nanoTime();
+        String payload = BrCode.payload(pixKey, key.amount(), key.txid(), merchantName, merchantCity);
+        PixQrCode qrCode = new PixQrCode(payload, renderers.get().svg(payload, errorCorrection));
+        renders.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+
+        synchronized (this) {
+            cache.put(key, qrCode);
+            if (cache.size() > cacheSize) {
+                cache.remove(cache.keySet().iterator().next());
+            }
+        }
+        return qrCode;
+    }
+
+    private static BigDecimal amount(double amount) {
+        return BigDecimal.valueOf(amount).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private static Counter lookups(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("sales.pix.qr.cache")
+                .description("PIX QR code lookups")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param payload the BR Code, also what PIX apps accept as "copia e cola"
+     * @param svg the QR code of the payload as an SVG document
+     */
+    public record PixQrCode(String payload, String svg) {
+    }
+
+    private record Key(BigDecimal amount, String txid) {
+    }
+
+    /**
+     * Per-thread encoder and output buffer, reused for every code the thread renders.
+     */
+    private static final class Renderer {
+
+        private final QrCodeEncoder encoder = new QrCodeEncoder();
+        private final StringBuilder svg = new StringBuilder(8192);
+
+        String svg(String payload, QrCodeEncoder.ErrorCorrection errorCorrection) {
+            encoder.encode(payload, errorCorrection);
+            int size = encoder.size();
+            int side = size + 2 * QUIET_ZONE;
+
+            // One horizontal stroke per run of dark modules, the most compact plain SVG shape
+            svg.setLength(0);
+            svg.append("<svg xmlns=\"http://www.w3.org/2000/svg\" viewBox=\"0 0 ").append(side).append(' ').append(side)
+                    .append("\" shape-rendering=\"crispEdges\"><rect width=\"").append(side).append("\" height=\"")
+                    .append(side).append("\" fill=\"#fff\"/><path stroke=\"#000\" d=\"");
+            for (int y = 0; y < size; y++) {
+                int x = 0;
+                while (x < size) {
+                    if (!encoder.isDark(x, y)) {
+                        x++;
+                        continue;
+                    }
+                    int start = x;
+                    while (x < size && encoder.isDark(x, y)) {
+                        x++;
+                    }
+                    svg.append('M').append(start + QUIET_ZONE).append(' ').append(y + QUIET_ZONE).append(".5h")
+                            .append(x - start);
+                }
+            }
+            return svg.append("\"/></svg>").toString();
+        }
+    }
+}
@@ -0,0 +1,557 @@
+package org.ufop.web.salesservice.sales.service;
+
+import java.util.Arrays;
+
+/**
+ * QR code encoder for byte-mode text (ISO/IEC 18004), which is all BR Code payloads need.
+ * <p>
+ * Picks the smallest version that fits at the requested error correction level, then the
+ * mask with the lowest penalty. The working buffers are sized for the largest symbol and
+ * kept between calls, as are the mask patterns of each version the encoder has seen, so
+ * encoding allocates nothing once warm. In exchange an encoder is not
+ * thread-safe and the symbol it holds is only valid until the next {@link #encode} call:
+ * give each thread its own.
+ */
+public class QrCodeEncoder {
+
+    public enum ErrorCorrection {
+        L(1), M(0), Q(3), H(2);
+
+        private final int formatBits;
+
+        ErrorCorrection(int formatBits) {
+            this.formatBits = formatBits;
+        }
+    }
+
+    private static final int MAX_VERSION = 40;
+    private static final int MAX_SIZE = 4 * MAX_VERSION + 17;
+    private static final int MAX_CODEWORDS = rawDataModules(MAX_VERSION) / 8;
+
+    // Indexed by ErrorCorrection ordinal, then version; from the standard's tables
+    private static final byte[][] ECC_CODEWORDS_PER_BLOCK = {
+            {-1, 7, 10, 15, 20, 26, 18, 20, 24, 30, 18, 20, 24, 26, 30, 22, 24, 28, 30, 28, 28,
+                    28, 28, 30, 30, 26, 28, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30},
+            {-1, 10, 16, 26, 18, 24, 16, 18, 22, 22, 26, 30, 22, 22, 24, 24, 28, 28, 26, 26, 26,
+                    26, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28},
+            {-1, 13, 22, 18, 26, 18, 24, 18, 22, 20, 24, 28, 26, 24, 20, 30, 24, 28, 28, 26, 30,
+                    28, 30, 30, 30, 30, 28, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30},
+            {-1, 17, 28, 22, 16, 22, 28, 26, 26, 24, 28, 24, 28, 22, 24, 24, 30, 28, 28, 26, 28,
+                    30, 24, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30}
+    };
+    private static final byte[][] ECC_BLOCKS = {
+            {-1, 1, 1, 1, 1, 1, 2, 2, 2, 2, 4, 4, 4, 4, 4, 6, 6, 6, 6, 7, 8,
+                    8, 9, 9, 10, 12, 12, 12, 13, 14, 15, 16, 17, 18, 19, 19, 20, 21, 22, 24, 25},
+            {-1, 1, 1, 1, 2, 2, 4, 4, 4, 5, 5, 5, 8, 9, 9, 10, 10, 11, 13, 14, 16,
+                    17, 17, 18, 20, 21, 23, 25, 26, 28, 29, 31, 33, 35, 37, 38, 40, 43, 45, 47, 49},
+            {-1, 1, 1, 2, 2, 4, 4, 6, 6, 8, 8, 8, 10, 12, 16, 12, 17, 16, 18, 21, 20,
+                    23, 23, 25, 27, 29, 34, 34, 35, 38, 40, 43, 45, 48, 51, 53, 56, 59, 62, 65, 68},
+            {-1, 1, 1, 2, 4, 4, 4, 5, 6, 8, 8, 11, 11, 16, 16, 18, 16, 19, 21, 25, 25,
+                    25, 34, 30, 32, 35, 37, 40, 42, 45, 48, 51, 54, 57, 60, 63, 66, 70, 74, 77, 81}
+    };
+
+    private static final int PENALTY_RUN = 3;
+    private static final int PENALTY_BLOCK = 3;
+    private static final int PENALTY_FINDER_LIKE = 40;
+    private static final int PENALTY_BALANCE = 10;
+    // 1:1:3:1:1 finder-like pattern with four light modules on one side, read as 11 bits
+    private static final int FINDER_LIGHT_AFTER = 0b10111010000;
+    private static final int FINDER_LIGHT_BEFORE = 0b00001011101;
+
+    // GF(256) with the QR polynomial x^8 + x^4 + x^3 + x^2 + 1
+    private static final int[] EXP = new int[512];
+    private static final int[] LOG = new int[256];
+    // Reed-Solomon generator polynomials by degree, leading term omitted
+    private static final int[][] GENERATORS = new int[31][];
+    private static final int[][] ALIGNMENT_POSITIONS = new int[MAX_VERSION + 1][];
+
+    static {
+        int x = 1;
+        for (int i = 0; i < 255; i++) {
+            EXP[i] = x;
+            LOG[x] = i;
+            x <<= 1;
+            if ((x & 0x100) != 0) {
+                x ^= 0x11D;
+            }
+        }
+        for (int i = 255; i < EXP.length; i++) {
+            EXP[i] = EXP[i - 255];
+        }
+        for (int degree = 1; degree < GENERATORS.length; degree++) {
+            GENERATORS[degree] = generator(degree);
+        }
+        for (int version = 1; version <= MAX_VERSION; version++) {
+            ALIGNMENT_POSITIONS[version] = alignmentPositions(version);
+        }
+    }
+
+    // The symbol before masking, and the masked one being scored or returned
+    private final boolean[] dark = new boolean[MAX_SIZE * MAX_SIZE];
+    private final boolean[] masked = new boolean[MAX_SIZE * MAX_SIZE];
+    private final boolean[] function = new boolean[MAX_SIZE * MAX_SIZE];
+    // Per column while scoring a mask: current run length and last 11 modules
+    private final int[] columnRuns = new int[MAX_SIZE];
+    private final int[] columnWindows = new int[MAX_SIZE];
+    // Per version, bit m of a module is set when mask m flips it; zero on function modules
+    private final byte[][] maskPatterns = new byte[MAX_VERSION + 1][];
+    private final byte[] data = new byte[MAX_CODEWORDS];
+    private final byte[] ecc = new byte[MAX_CODEWORDS];
+    private final byte[] codewords = new byte[MAX_CODEWORDS];
+
+    private int version;
+    private int size;
+    private ErrorCorrection errorCorrection;
+
+    /**
+     * Encodes {@code text} as ISO-8859-1 bytes, which covers the ASCII BR Codes are made of.
+     *
+     * @throws IllegalArgumentException if a character is outside ISO-8859-1 or the text does
+     * not fit in a version 40 symbol at this level
+     */
+    public void encode(CharSequence text, ErrorCorrection errorCorrection) {
+        int length = text.length();
+        this.errorCorrection = errorCorrection;
+        this.version = smallestVersion(length, errorCorrection);
+        this.size = version * 4 + 17;
+
+        int dataCodewords = dataCodewords(version, errorCorrection);
+        Arrays.fill(data, 0, dataCodewords, (byte) 0);
+        int bit = 0;
+        bit = appendBits(0b0100, 4, bit);
+        bit = appendBits(length, version <= 9 ? 8 : 16, bit);
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c > 0xFF) {
+                throw new IllegalArgumentException("QR byte mode cannot encode '" + c + "'");
+            }
+            bit = appendBits(c, 8, bit);
+        }
+        // Terminator and padding to a whole byte are zero bits, already in place
+        int capacity = dataCodewords * 8;
+        bit = Math.min(bit + 4, capacity);
+        for (int i = (bit + 7) / 8, pad = 0xEC; i < dataCodewords; i++, pad ^= 0xEC ^ 0x11) {
+            data[i] = (byte) pad;
+        }
+
+        interleaveWithEcc();
+        drawFunctionPatterns();
+        drawCodewords();
+        applyBestMask();
+    }
+
+    public int version() {
+        return version;
+    }
+
+    /**
+     * Modules per side, without the quiet zone.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isDark(int x, int y) {
+        return masked[y * size + x];
+    }
+
+    private int appendBits(int value, int count, int bit) {
+        for (int i = count - 1; i >= 0; i--, bit++) {
+            if (((value >>> i) & 1) != 0) {
+                data[bit >>> 3] |= (byte) (0x80 >>> (bit & 7));
+            }
+        }
+        return bit;
+    }
+
+    private static int smallestVersion(int length, ErrorCorrection errorCorrection) {
+        for (int version = 1; version <= MAX_VERSION; version++) {
+            int bits = 4 + (version <= 9 ? 8 : 16) + 8 * length;
+            if (bits <= dataCodewords(version, errorCorrection) * 8) {
+                return version;
+            }
+        }
+        throw new IllegalArgumentException("Text of " + length + " characters does not fit in a QR code at level "
+                + errorCorrection);
+    }
+
+    /**
+     * Splits the data into blocks, computes each block's error correction and interleaves
+     * both as the standard lays them out: data column by column, then ECC the same way.
+     */
+    private void interleaveWithEcc() {
+        int level = errorCorrection.ordinal();
+        int blocks = ECC_BLOCKS[level][version];
+        int eccPerBlock = ECC_CODEWORDS_PER_BLOCK[level][version];
+        int rawCodewords = rawDataModules(version) / 8;
+        int shortBlocks = blocks - rawCodewords % blocks;
+        int shortDataLength = rawCodewords / blocks - eccPerBlock;
+
+        for (int block = 0, offset = 0; block < blocks; block++) {
+            int length = shortDataLength + (block < shortBlocks ? 0 : 1);
+            reedSolomonRemainder(offset, length, GENERATORS[eccPerBlock], block * eccPerBlock);
+            offset += length;
+        }
+
+        int next = 0;
+        for (int i = 0; i <= shortDataLength; i++) {
+            for (int block = 0; block < blocks; block++) {
+                if (i < shortDataLength || block >= shortBlocks) {
+                    next = putCodeword(data[block * shortDataLength + Math.max(0, block - shortBlocks) + i], next);
+                }
+            }
+        }
+        for (int i = 0; i < eccPerBlock; i++) {
+            for (int block = 0; block < blocks; block++) {
+                next = putCodeword(ecc[block * eccPerBlock + i], next);
+            }
+        }
+    }
+
+    private int putCodeword(byte value, int next) {
+        codewords[next] = value;
+        return next + 1;
+    }
+
+    private void reedSolomonRemainder(int offset, int length, int[] generator, int eccOffset) {
+        int degree = generator.length;
+        Arrays.fill(ecc, eccOffset, eccOffset + degree, (byte) 0);
+        for (int i = 0; i < length; i++) {
+            int factor = (data[offset + i] ^ ecc[eccOffset]) & 0xFF;
+            System.arraycopy(ecc, eccOffset + 1, ecc, eccOffset, degree - 1);
+            ecc[eccOffset + degree - 1] = 0;
+            if (factor != 0) {
+                for (int j = 0; j < degree; j++) {
+                    ecc[eccOffset + j] ^= (byte) multiply(generator[j], factor);
+                }
+            }
+        }
+    }
+
+    private void drawFunctionPatterns() {
+        Arrays.fill(dark, 0, size * size, false);
+        Arrays.fill(function, 0, size * size, false);
+
+        for (int i = 0; i < size; i++) {
+            setFunction(6, i, i % 2 == 0);
+            setFunction(i, 6, i % 2 == 0);
+        }
+        drawFinder(3, 3);
+        drawFinder(size - 4, 3);
+        drawFinder(3, size - 4);
+
+        int[] positions = ALIGNMENT_POSITIONS[version];
+        int last = positions.length - 1;
+        for (int i = 0; i <= last; i++) {
+            for (int j = 0; j <= last; j++) {
+                // The three corners are taken by finder patterns
+                if (!(i == 0 && j == 0 || i == 0 && j == last || i == last && j == 0)) {
+                    drawAlignment(positions[i], positions[j]);
+                }
+            }
+        }
+
+        // Reserve the format areas now; the real bits are drawn once the mask is chosen
+        drawFormatBits(dark, 0);
+        drawVersionBits();
+    }
+
+    private void drawFinder(int centerX, int centerY) {
+        for (int dy = -4; dy <= 4; dy++) {
+            for (int dx = -4; dx <= 4; dx++) {
+                int x = centerX + dx;
+                int y = centerY + dy;
+                if (x >= 0 && x < size && y >= 0 && y < size) {
+                    int distance = Math.max(Math.abs(dx), Math.abs(dy));
+                    setFunction(x, y, distance != 2 && distance != 4);
+                }
+            }
+        }
+    }
+
+    private void drawAlignment(int centerX, int centerY) {
+        for (int dy = -2; dy <= 2; dy++) {
+            for (int dx = -2; dx <= 2; dx++) {
+                setFunction(centerX + dx, centerY + dy, Math.max(Math.abs(dx), Math.abs(dy)) != 1);
+            }
+        }
+    }
+
+    private void drawFormatBits(boolean[] modules, int mask) {
+        int bits = formatBits(errorCorrection, mask);
+        for (int i = 0; i <= 5; i++) {
+            setFunction(modules, 8, i, bit(bits, i));
+        }
+        setFunction(modules, 8, 7, bit(bits, 6));
+        setFunction(modules, 8, 8, bit(bits, 7));
+        setFunction(modules, 7, 8, bit(bits, 8));
+        for (int i = 9; i < 15; i++) {
+            setFunction(modules, 14 - i, 8, bit(bits, i));
+        }
+        for (int i = 0; i < 8; i++) {
+            setFunction(modules, size - 1 - i, 8, bit(bits, i));
+        }
+        for (int i = 8; i < 15; i++) {
+            setFunction(modules, 8, size - 15 + i, bit(bits, i));
+        }
+        setFunction(modules, 8, size - 8, true);
+    }
+
+    private void drawVersionBits() {
+        if (version < 7) {
+            return;
+        }
+        int bits = versionBits(version);
+        for (int i = 0; i < 18; i++) {
+            int a = size - 11 + i % 3;
+            int b = i / 3;
+            setFunction(a, b, bit(bits, i));
+            setFunction(b, a, bit(bits, i));
+        }
+    }
+
+    /**
+     * Fills the non-function modules in the standard's zigzag, two columns at a time from the
+     * bottom right, skipping the vertical timing pattern.
+     */
+    private void drawCodewords() {
+        int bits = rawDataModules(version) / 8 * 8;
+        int i = 0;
+        for (int right = size - 1; right >= 1; right -= 2) {
+            if (right == 6) {
+                right = 5;
+            }
+            boolean upward = ((right + 1) & 2) == 0;
+            for (int vertical = 0; vertical < size; vertical++) {
+                int y = upward ? size - 1 - vertical : vertical;
+                for (int j = 0; j < 2; j++) {
+                    int index = y * size + right - j;
+                    if (!function[index] && i < bits) {
+                        dark[index] = ((codewords[i >>> 3] >>> (7 - (i & 7))) & 1) != 0;
+                        i++;
+                    }
+                }
+            }
+        }
+    }
+
+    private void applyBestMask() {
+        byte[] patterns = maskPatterns();
+        int bestMask = 0;
+        int bestPenalty = Integer.MAX_VALUE;
+        for (int mask = 0; mask < 8; mask++) {
+            applyMask(patterns, mask);
+            int penalty = penalty();
+            if (penalty < bestPenalty) {
+                bestMask = mask;
+                bestPenalty = penalty;
+            }
+        }
+        applyMask(patterns, bestMask);
+    }
+
+    private void applyMask(byte[] patterns, int mask) {
+        for (int i = 0, modules = size * size; i < modules; i++) {
+            masked[i] = dark[i] ^ ((patterns[i] >>> mask & 1) != 0);
+        }
+        drawFormatBits(masked, mask);
+    }
+
+    private byte[] maskPatterns() {
+        byte[] patterns = maskPatterns[version];
+        if (patterns == null) {
+            patterns = new byte[size * size];
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    if (function[y * size + x]) {
+                        continue;
+                    }
+                    int flips = 0;
+                    for (int mask = 0; mask < 8; mask++) {
+                        if (masked(mask, x, y)) {
+                            flips |= 1 << mask;
+                        }
+                    }
+                    patterns[y * size + x] = (byte) flips;
+                }
+            }
+            maskPatterns[version] = patterns;
+        }
+        return patterns;
+    }
+
+    private static boolean masked(int mask, int x, int y) {
+        return switch (mask) {
+            case 0 -> (x + y) % 2 == 0;
+            case 1 -> y % 2 == 0;
+            case 2 -> x % 3 == 0;
+            case 3 -> (x + y) % 3 == 0;
+            case 4 -> (x / 3 + y / 2) % 2 == 0;
+            case 5 -> x * y % 2 + x * y % 3 == 0;
+            case 6 -> (x * y % 2 + x * y % 3) % 2 == 0;
+            case 7 -> ((x + y) % 2 + x * y % 3) % 2 == 0;
+            default -> throw new IllegalArgumentException("No QR mask " + mask);
+        };
+    }
+
+    /**
+     * Scores the masked symbol by the standard's four rules in one row-major pass: rows are
+     * followed as they are read and every column keeps its own run and recent modules.
+     */
+    private int penalty() {
+        Arrays.fill(columnRuns, 0, size, 0);
+        Arrays.fill(columnWindows, 0, size, 0);
+        int penalty = 0;
+        int darkModules = 0;
+        for (int y = 0; y < size; y++) {
+            int row = y * size;
+            int run = 0;
+            int window = 0;
+            for (int x = 0; x < size; x++) {
+                int color = masked[row + x] ? 1 : 0;
+                darkModules += color;
+
+                if (x > 0 && color == (window & 1)) {
+                    run++;
+                } else {
+                    penalty += runPenalty(run);
+                    run = 1;
+                }
+                window = ((window << 1) | color) & 0x7FF;
+                if (x >= 10 && isFinderLike(window)) {
+                    penalty += PENALTY_FINDER_LIKE;
+                }
+
+                int columnWindow = columnWindows[x];
+                if (y > 0 && color == (columnWindow & 1)) {
+                    columnRuns[x]++;
+                } else {
+                    penalty += runPenalty(columnRuns[x]);
+                    columnRuns[x] = 1;
+                }
+                columnWindow = ((columnWindow << 1) | color) & 0x7FF;
+                columnWindows[x] = columnWindow;
+                if (y >= 10 && isFinderLike(columnWindow)) {
+                    penalty += PENALTY_FINDER_LIKE;
+                }
+
+                // 2x2 block ending here: left and above come from the windows
+                if (x > 0 && y > 0 && color == (window >>> 1 & 1) && color == (columnWindow >>> 1 & 1)
+                        && color == (masked[row - size + x - 1] ? 1 : 0)) {
+                    penalty += PENALTY_BLOCK;
+                }
+            }
+            penalty += runPenalty(run);
+        }
+        for (int x = 0; x < size; x++) {
+            penalty += runPenalty(columnRuns[x]);
+        }
+
+        int total = size * size;
+        // Steps of 5% away from an even balance of dark and light modules
+        int steps = (Math.abs(darkModules * 20 - total * 10) + total - 1) / total - 1;
+        return penalty + steps * PENALTY_BALANCE;
+    }
+
+    private static int runPenalty(int run) {
+        return run >= 5 ? PENALTY_RUN + run - 5 : 0;
+    }
+
+    private static boolean isFinderLike(int window) {
+        return window == FINDER_LIGHT_AFTER || window == FINDER_LIGHT_BEFORE;
+    }
+
+    private void setFunction(int x, int y, boolean isDark) {
+        setFunction(dark, x, y, isDark);
+    }
+
+    private void setFunction(boolean[] modules, int x, int y, boolean isDark) {
+        int index = y * size + x;
+        modules[index] = isDark;
+        function[index] = true;
+    }
+
+    private static boolean bit(int value, int i) {
+        return ((value >>> i) & 1) != 0;
+    }
+
+    /**
+     * The 15 format bits: level and mask, BCH(15,5) protected and XOR-masked.
+     */
+    static int formatBits(ErrorCorrection errorCorrection, int mask) {
+        int value = errorCorrection.formatBits << 3 | mask;
+        int remainder = value;
+        for (int i = 0; i < 10; i++) {
+            remainder = (remainder << 1) ^ ((remainder >>> 9) * 0x537);
+        }
+        return (value << 10 | remainder) ^ 0x5412;
+    }
+
+    /**
+     * The 18 version bits of versions 7 and up, BCH(18,6) protected.
+     */
+    static int versionBits(int version) {
+        int remainder = version;
+        for (int i = 0; i < 12; i++) {
+            remainder = (remainder << 1) ^ ((remainder >>> 11) * 0x1F25);
+        }
+        return version << 12 | remainder;
+    }
+
+    static int dataCodewords(int version, ErrorCorrection errorCorrection) {
+        int level = errorCorrection.ordinal();
+        return rawDataModules(version) / 8 - ECC_CODEWORDS_PER_BLOCK[level][version] * ECC_BLOCKS[level][version];
+    }
+
+    /**
+     * Modules left for data and ECC once the function patterns are drawn, remainder bits included.
+     */
+    private static int rawDataModules(int version) {
+        int modules = (16 * version + 128) * version + 64;
+        if (version >= 2) {
+            int alignments = version / 7 + 2;
+            modules -= (25 * alignments - 10) * alignments - 55;
+            if (version >= 7) {
+                modules -= 36;
+            }
+        }
+        return modules;
+    }
+
+    private static int[] alignmentPositions(int version) {
+        if (version == 1) {
+            return new int[0];
+        }
+        int count = version / 7 + 2;
+        int step = version == 32 ? 26 : (version * 4 + count * 2 + 1) / (count * 2 - 2) * 2;
+        int[] positions = new int[count];
+        positions[0] = 6;
+        for (int i = count - 1, position = version * 4 + 17 - 7; i >= 1; i--, position -= step) {
+            positions[i] = position;
+        }
+        return positions;
+    }
+
+    static int multiply(int a, int b) {
+        return a == 0 || b == 0 ? 0 : EXP[LOG[a] + LOG[b]];
+    }
+
+    /**
+     * Coefficients of (x - 2^0)(x - 2^1)...(x - 2^(degree-1)), highest first, leading 1 left out.
+     */
+    private static int[] generator(int degree) {
+        int[] coefficients = new int[degree];
+        coefficients[degree - 1] = 1;
+        int root = 1;
+        for (int i = 0; i < degree; i++) {
+            for (int j = 0; j < degree; j++) {
+                coefficients[j] = multiply(coefficients[j], root);
+                if (j + 1 < degree) {
+                    coefficients[j] ^= coefficients[j + 1];
+                }
+            }
+            root = multiply(root, 0x02);
+        }
+        return coefficients;
+    }
+}
@@ -2,19 +2,36 @@ package org.ufop.web.salesservice.sales.service;
 
 
 import org.ufop.web.salesservice.sales.client.EventDTO;
+import org.ufop.web.salesservice.sales.client.EventDetailsCache;
 import org.ufop.web.salesservice.sales.client.EventsServiceClient;
+import org.ufop.web.salesservice.sales.client.ReservationDTO;
+import org.ufop.web.salesservice.sales.client.TicketReservationDTO;
+import org.ufop.web.salesservice.sales.dto.CreateCartSaleDTO;
 import org.ufop.web.salesservice.sales.dto.CreateSaleDTO;
+import org.ufop.web.salesservice.sales.dto.PageCursor;
+import org.ufop.web.salesservice.sales.dto.PageDTO;
 import org.ufop.web.salesservice.sales.dto.SaleDTO;
+import org.ufop.web.salesservice.sales.dto.SaleSummary;
+import org.ufop.web.salesservice.sales.dto.SalesStatsDTO;
 import org.ufop.web.salesservice.sales.model.Sale;
 import org.ufop.web.salesservice.sales.repository.SaleRepository;
+import feign.FeignException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -22,28 +39,54 @@ import java.util.stream.Collectors;
 @Slf4j
 public class SaleService {
 
+    public static final int MAX_PAGE_SIZE = 500;
+    private static final int STREAM_BATCH_SIZE = 500;
+
     private final SaleRepository saleRepository;
     private final EventsServiceClient eventsServiceClient;
+    private final EventDetailsCache eventCache;
+    private final SalesStatsLedger salesStats;
+    private final SalesRollupService salesRollups;
+    private final GroupCommitWriter writer;
 
-    @Transactional
+    // How long events-service keeps tickets aside for a PENDING sale; matches the PIX window
+    @Value("${sales.holds.ttl-seconds:1800}")
+    private long holdTtlSeconds;
+
+    // Not transactional: the sale is committed by the group-commit writer
     public SaleDTO createSale(CreateSaleDTO dto) {
         log.info("Creating sale for user: {}, event: {}", dto.getUserId(), dto.getEventId());
 
-        // Check if event exists
-        Boolean eventExists = eventsServiceClient.checkEventExists(dto.getEventId());
-        if (eventExists == null || !eventExists) {
-            throw new IllegalArgumentException("Event not found with ID: " + dto.getEventId());
-        }
+        EventDTO event = null;
+        ReservationDTO reservation = null;
+        Double unitPrice;
+        UUID holdId = null;
 
-        // Get event details
-        var event = eventsServiceClient.getEventById(dto.getEventId());
+        if (dto.getSaleStatus() == Sale.SaleStatus.PAID || dto.getSaleStatus() == Sale.SaleStatus.PENDING) {
+            // One call validates the event, takes the tickets and quotes the price they were taken at
+            Long holdTtl = dto.getSaleStatus() == Sale.SaleStatus.PENDING ? holdTtlSeconds : null;
+            try {
+                reservation = eventsServiceClient.reserveAndQuote(dto.getEventId(), dto.getQuantity(), holdTtl);
+            } catch (FeignException.NotFound e) {
+                throw new IllegalArgumentException("Event not found with ID: " + dto.getEventId());
+            } catch (FeignException.Conflict e) {
+                throw new IllegalStateException("Could not reserve tickets. They might have sold out.");
+            }
+            unitPrice = reservation.getUnitPrice();
+            holdId = reservation.getHoldId();
+        } else {
+            event = eventCache.get(dto.getEventId());
+            if (event == null) {
+                throw new IllegalArgumentException("Event not found with ID: " + dto.getEventId());
+            }
+            unitPrice = event.getPrice();
+        }
 
         // Calculate total amount
-        double totalAmount = event.getPrice() * dto.getQuantity();
+        double totalAmount = unitPrice * dto.getQuantity();
 
         // Create sale
         Sale sale = new Sale();
-        sale.setId(UUID.randomUUID());
         sale.setUserId(dto.getUserId());
         sale.setEventId(dto.getEventId());
         sale.setQuantity(dto.getQuantity());
@@ -52,42 +95,127 @@ public class SaleService {
         sale.setPaymentMethod(dto.getPaymentMethod());
         sale.setSaleDate(LocalDateTime.now());
         sale.setNotes(dto.getNotes());
-
+        sale.setHoldId(holdId);
         if (dto.getSaleStatus() == Sale.SaleStatus.PAID) {
-            boolean reserved = eventsServiceClient.reserveTickets(dto.getEventId(), dto.getQuantity());
-            if (!reserved) {
-                throw new IllegalStateException("Could not reserve tickets. They might have sold out.");
-            }
             sale.setPaymentDate(LocalDateTime.now());
         }
 
-        Sale savedSale = saleRepository.save(sale);
+        Sale savedSale = writer.insert(sale);
+        salesStats.recordCreated(savedSale);
+        salesRollups.recordCreated(savedSale);
 
-        return convertToDTO(savedSale, event);
+        SaleDTO saleDTO = convertToDTO(savedSale, event);
+        if (reservation != null) {
+            describe(saleDTO, reservation);
+        }
+        saleDTO.setEventPrice(unitPrice);
+        return saleDTO;
     }
 
-    @Transactional(readOnly = true)
-    public List<SaleDTO> getAllSales() {
-        return saleRepository.findAll().stream()
-                .map(sale -> {
-                    try {
-                        var event = eventsServiceClient.getEventById(sale.getEventId());
-                        return convertToDTO(sale, event);
-                    } catch (Exception e) {
-                        log.warn("Could not fetch event details for sale: {}", sale.getId(), e);
-                        return convertToDTO(sale, null);
+    /**
+     * Checks out a multi-event cart with a single call to events-service, which reserves
+     * (or, for PENDING carts, holds) every line atomically and returns the prices. The
+     * cart's sales are committed together by the group-commit writer.
+     */
+    public List<SaleDTO> createCartSales(CreateCartSaleDTO dto) {
+        log.info("Creating cart sale for user: {}, {} items", dto.getUserId(), dto.getItems().size());
+
+        if (dto.getSaleStatus() != Sale.SaleStatus.PAID && dto.getSaleStatus() != Sale.SaleStatus.PENDING) {
+            throw new IllegalArgumentException("Cart sales must be PAID or PENDING");
+        }
+
+        List<TicketReservationDTO> items = dto.getItems().stream()
+                .map(item -> new TicketReservationDTO(item.getEventId(), item.getQuantity()))
+                .collect(Collectors.toList());
+        Long holdTtl = dto.getSaleStatus() == Sale.SaleStatus.PENDING ? holdTtlSeconds : null;
+
+        List<ReservationDTO> reservations;
+        try {
+            reservations = eventsServiceClient.reserveTicketsBatch(items, holdTtl);
+        } catch (FeignException.Conflict e) {
+            throw new IllegalStateException("Could not reserve tickets for every item. Some might have sold out.");
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Sale> sales = reservations.stream()
+                .map(reservation -> {
+                    Sale sale = new Sale();
+                    sale.setUserId(dto.getUserId());
+                    sale.setEventId(reservation.getEventId());
+                    sale.setQuantity(reservation.getQuantity());
+                    sale.setTotalAmount(reservation.getUnitPrice() * reservation.getQuantity());
+                    sale.setSaleStatus(dto.getSaleStatus());
+                    sale.setPaymentMethod(dto.getPaymentMethod());
+                    sale.setSaleDate(now);
+                    sale.setNotes(dto.getNotes());
+                    sale.setHoldId(reservation.getHoldId());
+                    if (dto.getSaleStatus() == Sale.SaleStatus.PAID) {
+                        sale.setPaymentDate(now);
                     }
+                    return sale;
+                })
+                .collect(Collectors.toList());
+
+        Map<UUID, ReservationDTO> reservationsByEvent = reservations.stream()
+                .collect(Collectors.toMap(ReservationDTO::getEventId, Function.identity()));
+
+        List<Sale> savedSales = writer.insertAll(sales);
+        savedSales.forEach(salesStats::recordCreated);
+        savedSales.forEach(salesRollups::recordCreated);
+
+        return savedSales.stream()
+                .map(sale -> {
+                    SaleDTO saleDTO = convertToDTO(sale, null);
+                    describe(saleDTO, reservationsByEvent.get(sale.getEventId()));
+                    return saleDTO;
                 })
                 .collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
+    public List<SaleDTO> getAllSales() {
+        return convertAll(saleRepository.findAllSummaries());
+    }
+
+    /**
+     * One page of sales ordered by sale date, continuing after {@code cursor}; all sales
+     * when {@code userId} is null.
+     */
+    @Transactional(readOnly = true)
+    public PageDTO<SaleDTO> getSalesPage(String userId, String cursor, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        List<SaleSummary> sales = findPage(userId, PageCursor.decode(cursor), limit);
+        String nextCursor = sales.size() == limit ? cursorAfter(sales).encode() : null;
+        return new PageDTO<>(convertAll(sales), nextCursor);
+    }
+
+    /**
+     * Feeds every sale (of {@code userId}, if given) to {@code sink} in sale date order,
+     * reading in small keyset batches so memory use does not grow with the table. Not
+     * transactional on purpose: each batch is its own short read.
+     */
+    public void forEachSale(String userId, Consumer<SaleDTO> sink) {
+        PageCursor cursor = null;
+        List<SaleSummary> batch;
+        do {
+            batch = findPage(userId, cursor, STREAM_BATCH_SIZE);
+            convertAll(batch).forEach(sink);
+            if (!batch.isEmpty()) {
+                cursor = cursorAfter(batch);
+            }
+        } while (batch.size() == STREAM_BATCH_SIZE);
+    }
+
     @Transactional(readOnly = true)
     public SaleDTO getSaleById(UUID id) {
         Sale sale = saleRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Sale not found with ID: " + id));
 
         try {
-            var event = eventsServiceClient.getEventById(sale.getEventId());
+            var event = eventCache.get(sale.getEventId());
             return convertToDTO(sale, event);
         } catch (Exception e) {
             log.warn("Could not fetch event details for sale: {}", sale.getId(), e);
@@ -100,6 +228,15 @@ public class SaleService {
         Sale sale = saleRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Sale not found with ID: " + id));
 
+        if (sale.getSaleStatus() == Sale.SaleStatus.PENDING) {
+            if (newStatus == Sale.SaleStatus.PAID) {
+                confirmTickets(sale);
+            } else if (newStatus == Sale.SaleStatus.CANCELLED || newStatus == Sale.SaleStatus.REFUNDED) {
+                releaseHold(sale);
+            }
+        }
+
+        Sale.SaleStatus previousStatus = sale.getSaleStatus();
         sale.setSaleStatus(newStatus);
 
         if (newStatus == Sale.SaleStatus.PAID) {
@@ -109,9 +246,11 @@ public class SaleService {
         }
 
         Sale updatedSale = saleRepository.save(sale);
+        salesStats.recordStatusChange(updatedSale, previousStatus);
+        salesRollups.recordStatusChange(updatedSale, previousStatus);
 
         try {
-            var event = eventsServiceClient.getEventById(updatedSale.getEventId());
+            var event = eventCache.get(updatedSale.getEventId());
             return convertToDTO(updatedSale, event);
         } catch (Exception e) {
             log.warn("Could not fetch event details for sale: {}", updatedSale.getId(), e);
@@ -121,58 +260,165 @@ public class SaleService {
 
     @Transactional
     public void deleteSale(UUID id) {
-        if (!saleRepository.existsById(id)) {
-            throw new IllegalArgumentException("Sale not found with ID: " + id);
-        }
-        saleRepository.deleteById(id);
+        Sale sale = saleRepository.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("Sale not found with ID: " + id));
+        saleRepository.delete(sale);
+        salesStats.recordDeleted(sale);
+        salesRollups.recordDeleted(sale);
     }
 
     @Transactional(readOnly = true)
     public List<SaleDTO> getSalesByUserId(String userId) {
-        return saleRepository.findByUserId(userId).stream()
-                .map(sale -> {
-                    try {
-                        var event = eventsServiceClient.getEventById(sale.getEventId());
-                        return convertToDTO(sale, event);
-                    } catch (Exception e) {
-                        log.warn("Could not fetch event details for sale: {}", sale.getId(), e);
-                        return convertToDTO(sale, null);
-                    }
-                })
-                .collect(Collectors.toList());
+        return convertAll(saleRepository.findSummariesByUserId(userId));
     }
 
-    @Transactional(readOnly = true)
     public Double getTotalRevenue() {
-        return saleRepository.getTotalRevenue();
+        return salesStats.getTotalRevenue();
     }
 
-    @Transactional(readOnly = true)
-    public Object getSalesStats() {
-        return new Object() {
-            public final Long totalSales = saleRepository.count();
-            public final Long paidSales = saleRepository.getPaidSalesCount();
-            public final Double totalRevenue = saleRepository.getTotalRevenue();
-            public final Object salesByStatus = saleRepository.getSalesByStatus().stream()
-                    .collect(Collectors.toMap(
-                            arr -> arr[0].toString(),
-                            arr -> arr[1]
-                    ));
-        };
+    public SalesStatsDTO getSalesStats() {
+        return salesStats.getStats();
+    }
+
+    /**
+     * Marks a sale PAID without confirming its tickets, so a card payment can settle the sale
+     * and its payment in one local transaction and confirm the tickets once that committed.
+     * The update only applies to the status the sale was read with, so of two payments racing
+     * for the same sale only one gets through.
+     *
+     * @return the sale as it is now, PAID
+     * @throws IllegalStateException if the sale is already paid or changed meanwhile
+     */
+    @Transactional
+    public Sale markPaid(UUID id, LocalDateTime paidAt) {
+        Sale sale = saleRepository.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("Sale not found with ID: " + id));
+        Sale.SaleStatus previousStatus = sale.getSaleStatus();
+        if (previousStatus == Sale.SaleStatus.PAID
+                || saleRepository.updatePaymentStatus(id, previousStatus, Sale.SaleStatus.PAID, paidAt) == 0) {
+            throw new IllegalStateException("Sale " + id + " is already paid");
+        }
+
+        sale.setSaleStatus(Sale.SaleStatus.PAID);
+        sale.setPaymentDate(paidAt);
+        salesStats.recordStatusChange(sale, previousStatus);
+        salesRollups.recordStatusChange(sale, previousStatus);
+        return sale;
+    }
+
+    /**
+     * Takes a sale marked PAID by {@link #markPaid} back to PENDING when its tickets could not
+     * be confirmed.
+     */
+    @Transactional
+    public void revertPaid(Sale sale) {
+        if (saleRepository.updatePaymentStatus(sale.getId(), Sale.SaleStatus.PAID, Sale.SaleStatus.PENDING, null) == 0) {
+            throw new IllegalStateException("Sale " + sale.getId() + " is no longer paid");
+        }
+
+        sale.setSaleStatus(Sale.SaleStatus.PENDING);
+        sale.setPaymentDate(null);
+        salesStats.recordStatusChange(sale, Sale.SaleStatus.PAID);
+        salesRollups.recordStatusChange(sale, Sale.SaleStatus.PAID);
+    }
+
+    void confirmTickets(Sale sale) {
+        if (sale.getHoldId() != null) {
+            try {
+                eventsServiceClient.confirmHold(sale.getHoldId());
+                return;
+            } catch (FeignException.Conflict e) {
+                log.info("Hold {} for sale {} is no longer active, reserving tickets again", sale.getHoldId(), sale.getId());
+            }
+        }
+
+        Boolean reserved = eventsServiceClient.reserveTickets(sale.getEventId(), sale.getQuantity());
+        if (reserved == null || !reserved) {
+            throw new IllegalStateException("Could not reserve tickets. They might have sold out.");
+        }
+    }
+
+    /**
+     * Gives the tickets held for a PENDING sale back to the event. The sale stays PENDING;
+     * paying it later reserves the tickets again.
+     */
+    public void releaseTicketHold(UUID id) {
+        saleRepository.findById(id)
+                .filter(sale -> sale.getSaleStatus() == Sale.SaleStatus.PENDING && sale.getHoldId() != null)
+                .ifPresent(this::releaseHold);
+    }
+
+    private void releaseHold(Sale sale) {
+        if (sale.getHoldId() == null) {
+            return;
+        }
+        try {
+            eventsServiceClient.releaseHold(sale.getHoldId());
+        } catch (FeignException.Conflict e) {
+            log.debug("Hold {} for sale {} was already settled", sale.getHoldId(), sale.getId());
+        }
+    }
+
+    private List<SaleSummary> findPage(String userId, PageCursor cursor, int limit) {
+        PageRequest page = PageRequest.of(0, limit);
+        if (userId == null) {
+            return cursor == null
+                    ? saleRepository.findFirstSummaryPage(page)
+                    : saleRepository.findSummaryPageAfter(cursor.key(), cursor.id(), page);
+        }
+        return cursor == null
+                ? saleRepository.findFirstSummaryPageByUserId(userId, page)
+                : saleRepository.findSummaryPageByUserIdAfter(userId, cursor.key(), cursor.id(), page);
+    }
+
+    private static PageCursor cursorAfter(List<SaleSummary> sales) {
+        SaleSummary last = sales.get(sales.size() - 1);
+        return new PageCursor(last.saleDate(), last.id());
+    }
+
+    /**
+     * Converts a batch of sales, fetching their distinct events in bulk.
+     */
+    private List<SaleDTO> convertAll(List<SaleSummary> sales) {
+        Map<UUID, EventDTO> events = fetchEvents(sales.stream()
+                .map(SaleSummary::eventId)
+                .collect(Collectors.toCollection(LinkedHashSet::new)));
+        return sales.stream()
+                .map(sale -> convertToDTO(sale, events.get(sale.eventId())))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Looks up events through the near cache, which fetches the ones it lacks in batches.
+     * Sales whose events could not be fetched are returned without event details.
+     */
+    private Map<UUID, EventDTO> fetchEvents(Set<UUID> eventIds) {
+        return eventCache.getAll(eventIds);
+    }
+
+    // The event details events-service returned with the reservation
+    private static void describe(SaleDTO dto, ReservationDTO reservation) {
+        dto.setEventDescription(reservation.getDescription());
+        dto.setEventDate(reservation.getEventDate());
+        dto.setEventPrice(reservation.getUnitPrice());
     }
 
     private SaleDTO convertToDTO(Sale sale, EventDTO event) {
+        return convertToDTO(SaleSummary.of(sale), event);
+    }
+
+    private SaleDTO convertToDTO(SaleSummary sale, EventDTO event) {
         SaleDTO dto = new SaleDTO();
-        dto.setId(sale.getId());
-        dto.setUserId(sale.getUserId());
-        dto.setEventId(sale.getEventId());
-        dto.setQuantity(sale.getQuantity());
-        dto.setTotalAmount(sale.getTotalAmount());
-        dto.setSaleStatus(sale.getSaleStatus());
-        dto.setPaymentMethod(sale.getPaymentMethod());
-        dto.setSaleDate(sale.getSaleDate());
-        dto.setPaymentDate(sale.getPaymentDate());
-        dto.setNotes(sale.getNotes());
+        dto.setId(sale.id());
+        dto.setUserId(sale.userId());
+        dto.setEventId(sale.eventId());
+        dto.setQuantity(sale.quantity());
+        dto.setTotalAmount(sale.totalAmount());
+        dto.setSaleStatus(sale.saleStatus());
+        dto.setPaymentMethod(sale.paymentMethod());
+        dto.setSaleDate(sale.saleDate());
+        dto.setPaymentDate(sale.paymentDate());
+        dto.setNotes(sale.notes());
 
         if (event != null) {
             dto.setEventDescription(event.getDescription());
@@ -0,0 +1,361 @@
+package org.ufop.web.salesservice.sales.service;
+
+import org.ufop.web.salesservice.sales.dto.SalesRollupDTO;
+import org.ufop.web.salesservice.sales.model.Sale;
+import org.ufop.web.salesservice.sales.model.SalesRollup;
+import org.ufop.web.salesservice.sales.model.SalesRollupKey;
+import org.ufop.web.salesservice.sales.repository.SaleRepository;
+import org.ufop.web.salesservice.sales.repository.SalesRollupRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Hourly and daily sales rollups by event, payment method and status.
+ * <p>
+ * Every sale creation, status change and delete becomes a delta on the rollup cells of
+ * its sale date once its transaction commits. Deltas collect in memory and are merged
+ * into {@code sales_rollups} every few seconds; range queries read the rollup table plus
+ * whatever is still pending, so they are current without ever touching the sales table.
+ * {@link #backfill()} rebuilds the table from the sales rows, for data that predates the
+ * rollups; it runs automatically at startup when the table is empty.
+ * <p>
+ * Deltas still pending when the process dies are lost, so at startup the buckets of the
+ * last {@code sales.rollups.reconcile-hours} (from the start of that day) are rebuilt from
+ * the sales rows. That covers new sales and the status changes of recent ones, such as
+ * PIX payments; a lost change to an older sale needs a full {@link #backfill()}.
+ */
+@Service
+@Slf4j
+public class SalesRollupService {
+
+    public enum Dimension {
+        EVENT, PAYMENT_METHOD, STATUS
+    }
+
+    private static final int BACKFILL_BATCH_SIZE = 1000;
+    private static final Duration MAX_HOURLY_RANGE = Duration.ofDays(92);
+    private static final Duration MAX_DAILY_RANGE = Duration.ofDays(3660);
+
+    private final SaleRepository saleRepository;
+    private final SalesRollupRepository salesRollupRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration reconcileWindow;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Guarded by this: deltas not yet handed to a flush, and those a flush is writing
+    private Map<SalesRollupKey, Cell> pending = new HashMap<>();
+    private Map<SalesRollupKey, Cell> flushing = Map.of();
+    // Queries read the table and the in-memory deltas under the read lock so a flush
+    // finishing in between cannot make them count a delta twice or not at all
+    private final ReentrantReadWriteLock flushLock = new ReentrantReadWriteLock();
+
+    public SalesRollupService(SaleRepository saleRepository,
+                              SalesRollupRepository salesRollupRepository,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${sales.rollups.reconcile-hours:48}") long reconcileHours) {
+        this.saleRepository = saleRepository;
+        this.salesRollupRepository = salesRollupRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.reconcileWindow = Duration.ofHours(reconcileHours);
+    }
+
+    public void recordCreated(Sale sale) {
+        record(sale, null, sale.getSaleStatus());
+    }
+
+    public void recordStatusChange(Sale sale, Sale.SaleStatus previous) {
+        if (previous != sale.getSaleStatus()) {
+            record(sale, previous, sale.getSaleStatus());
+        }
+    }
+
+    public void recordDeleted(Sale sale) {
+        record(sale, sale.getSaleStatus(), null);
+    }
+
+    /**
+     * Buckets of {@code granularity} starting in [{@code from}, {@code to}), summed over
+     * every dimension not in {@code groupBy}, optionally restricted to one event or status.
+     */
+    public List<SalesRollupDTO> query(SalesRollup.Granularity granularity,
+                                      LocalDateTime from,
+                                      LocalDateTime to,
+                                      Set<Dimension> groupBy,
+                                      UUID eventId,
+                                      Sale.SaleStatus status) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        Duration maxRange = granularity == SalesRollup.Granularity.HOUR ? MAX_HOURLY_RANGE : MAX_DAILY_RANGE;
+        if (Duration.between(from, to).compareTo(maxRange) > 0) {
+            throw new IllegalArgumentException("Range for " + granularity + " buckets is limited to " + maxRange.toDays() + " days");
+        }
+
+        LocalDateTime start = granularity.bucketOf(from);
+        Map<SalesRollupKey, Cell> cells = new HashMap<>();
+        flushLock.readLock().lock();
+        try {
+            for (SalesRollup rollup : salesRollupRepository.findRange(granularity, start, to)) {
+                cells.computeIfAbsent(rollup.getId(), key -> new Cell())
+                        .add(rollup.getSaleCount(), rollup.getTicketCount(), rollup.getTotalAmount());
+            }
+            synchronized (this) {
+                for (Map<SalesRollupKey, Cell> deltas : List.of(flushing, pending)) {
+                    deltas.forEach((key, delta) -> {
+                        if (key.getGranularity() == granularity
+                                && !key.getBucketStart().isBefore(start) && key.getBucketStart().isBefore(to)) {
+                            cells.computeIfAbsent(key, k -> new Cell()).add(delta.sales, delta.tickets, delta.amount);
+                        }
+                    });
+                }
+            }
+        } finally {
+            flushLock.readLock().unlock();
+        }
+
+        Map<SalesRollupKey, SalesRollupDTO> groups = new HashMap<>();
+        cells.forEach((key, cell) -> {
+            if ((eventId != null && !eventId.equals(key.getEventId()))
+                    || (status != null && status != key.getSaleStatus())
+                    || cell.sales == 0) {
+                return;
+            }
+            SalesRollupKey group = new SalesRollupKey(
+                    granularity,
+                    key.getBucketStart(),
+                    groupBy.contains(Dimension.EVENT) ? key.getEventId() : null,
+                    groupBy.contains(Dimension.PAYMENT_METHOD) ? key.getPaymentMethod() : null,
+                    groupBy.contains(Dimension.STATUS) ? key.getSaleStatus() : null);
+            SalesRollupDTO dto = groups.computeIfAbsent(group, g -> new SalesRollupDTO(
+                    g.getBucketStart(), g.getEventId(), g.getPaymentMethod(), g.getSaleStatus(), 0L, 0L, 0.0, 0.0));
+            dto.setSaleCount(dto.getSaleCount() + cell.sales);
+            dto.setTicketCount(dto.getTicketCount() + cell.tickets);
+            dto.setTotalAmount(dto.getTotalAmount() + cell.amount);
+            if (key.getSaleStatus() == Sale.SaleStatus.PAID) {
+                dto.setRevenue(dto.getRevenue() + cell.amount);
+            }
+        });
+
+        return groups.values().stream()
+                .sorted(Comparator.comparing(SalesRollupDTO::getBucketStart)
+                        .thenComparing(dto -> Objects.toString(dto.getEventId(), ""))
+                        .thenComparing(dto -> Objects.toString(dto.getPaymentMethod(), ""))
+                        .thenComparing(dto -> Objects.toString(dto.getSaleStatus(), "")))
+                .collect(Collectors.toList());
+    }
+
+    @Scheduled(fixedDelayString = "${sales.rollups.flush-interval-ms:5000}")
+    public void flush() {
+        flushLock.writeLock().lock();
+        try {
+            flushPending();
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Recomputes every rollup from the sales table. Holds the SQLite write lock for the
+     * duration, so sale writes wait; meant for initial loads and repairs. A transition
+     * committing at the very moment the rebuild starts can end up counted twice; running
+     * it again corrects that.
+     *
+     * @return the number of sales scanned
+     */
+    public long backfill() {
+        long scanned = rebuild(null);
+        log.info("Rebuilt sales rollups from {} sales", scanned);
+        return scanned;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileAtStartup() {
+        if (salesRollupRepository.count() == 0) {
+            if (saleRepository.count() > 0) {
+                backfill();
+            }
+            return;
+        }
+        LocalDateTime since = SalesRollup.Granularity.DAY.bucketOf(LocalDateTime.now().minus(reconcileWindow));
+        long scanned = rebuild(since);
+        log.info("Reconciled sales rollups since {} from {} sales", since, scanned);
+    }
+
+    /**
+     * Recomputes the rollups of every bucket from {@code since} (a day boundary, or null
+     * for all of them) from the sales table.
+     */
+    private long rebuild(LocalDateTime since) {
+        flushLock.writeLock().lock();
+        try {
+            flushPending();
+            synchronized (this) {
+                // Everything applied so far has committed, so the rebuild below sees it
+                if (since == null) {
+                    pending = new HashMap<>();
+                } else {
+                    pending.keySet().removeIf(key -> !key.getBucketStart().isBefore(since));
+                }
+            }
+
+            Long scanned = transactionTemplate.execute(status -> {
+                if (since == null) {
+                    salesRollupRepository.deleteAllRollups();
+                } else {
+                    salesRollupRepository.deleteRollupsFrom(since);
+                }
+                Map<SalesRollupKey, Cell> cells = new HashMap<>();
+                long count = 0;
+                List<Sale> batch = since == null
+                        ? saleRepository.findFirstPage(PageRequest.of(0, BACKFILL_BATCH_SIZE))
+                        : saleRepository.findFirstPageSince(since, PageRequest.of(0, BACKFILL_BATCH_SIZE));
+                while (!batch.isEmpty()) {
+                    for (Sale sale : batch) {
+                        addTo(cells, sale, sale.getSaleStatus(), 1);
+                    }
+                    count += batch.size();
+                    // Scanned sales are not needed again; keep the persistence context small
+                    entityManager.clear();
+                    if (batch.size() < BACKFILL_BATCH_SIZE) {
+                        break;
+                    }
+                    Sale last = batch.get(batch.size() - 1);
+                    batch = saleRepository.findPageAfter(last.getSaleDate(), last.getId(), PageRequest.of(0, BACKFILL_BATCH_SIZE));
+                }
+                salesRollupRepository.saveAll(cells.entrySet().stream()
+                        .map(entry -> new SalesRollup(entry.getKey(), entry.getValue().sales,
+                                entry.getValue().tickets, entry.getValue().amount))
+                        .collect(Collectors.toList()));
+                return count;
+            });
+            return Objects.requireNonNull(scanned);
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    // Caller holds the flush write lock
+    private void flushPending() {
+        Map<SalesRollupKey, Cell> deltas;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            deltas = pending;
+            flushing = deltas;
+            pending = new HashMap<>();
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Map<SalesRollupKey, SalesRollup> rows = salesRollupRepository.findAllById(deltas.keySet())
+                        .stream()
+                        .collect(Collectors.toMap(SalesRollup::getId, Function.identity()));
+                List<SalesRollup> changed = new ArrayList<>(deltas.size());
+                List<SalesRollup> emptied = new ArrayList<>();
+                deltas.forEach((key, delta) -> {
+                    SalesRollup row = rows.getOrDefault(key, new SalesRollup(key, 0L, 0L, 0.0));
+                    row.setSaleCount(row.getSaleCount() + delta.sales);
+                    row.setTicketCount(row.getTicketCount() + delta.tickets);
+                    row.setTotalAmount(row.getTotalAmount() + delta.amount);
+                    if (row.getSaleCount() == 0) {
+                        if (rows.containsKey(key)) {
+                            emptied.add(row);
+                        }
+                    } else {
+                        changed.add(row);
+                    }
+                });
+                salesRollupRepository.saveAll(changed);
+                salesRollupRepository.deleteAll(emptied);
+            });
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                deltas.forEach((key, delta) -> pending.computeIfAbsent(key, k -> new Cell())
+                        .add(delta.sales, delta.tickets, delta.amount));
+            }
+            log.warn("Could not persist sales rollups, will retry", e);
+        } finally {
+            synchronized (this) {
+                flushing = Map.of();
+            }
+        }
+    }
+
+    private void record(Sale sale, Sale.SaleStatus from, Sale.SaleStatus to) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(sale, from, to);
+                }
+            });
+        } else {
+            apply(sale, from, to);
+        }
+    }
+
+    private synchronized void apply(Sale sale, Sale.SaleStatus from, Sale.SaleStatus to) {
+        if (from != null) {
+            addTo(pending, sale, from, -1);
+        }
+        if (to != null) {
+            addTo(pending, sale, to, 1);
+        }
+    }
+
+    private static void addTo(Map<SalesRollupKey, Cell> cells, Sale sale, Sale.SaleStatus status, int sign) {
+        for (SalesRollup.Granularity granularity : EnumSet.allOf(SalesRollup.Granularity.class)) {
+            SalesRollupKey key = new SalesRollupKey(granularity, granularity.bucketOf(sale.getSaleDate()),
+                    sale.getEventId(), sale.getPaymentMethod(), status);
+            cells.computeIfAbsent(key, k -> new Cell())
+                    .add(sign, (long) sign * sale.getQuantity(), sign * sale.getTotalAmount());
+        }
+    }
+
+    private static final class Cell {
+        private long sales;
+        private long tickets;
+        private double amount;
+
+        private void add(long sales, long tickets, double amount) {
+            this.sales += sales;
+            this.tickets += tickets;
+            this.amount += amount;
+        }
+    }
+}
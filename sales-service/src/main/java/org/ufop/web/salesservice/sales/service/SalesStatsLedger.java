@@ -0,0 +1,173 @@
+package org.ufop.web.salesservice.sales.service;
+
+import org.ufop.web.salesservice.sales.dto.SalesStatsDTO;
+import org.ufop.web.salesservice.sales.model.Sale;
+import org.ufop.web.salesservice.sales.model.SalesStatsSnapshot;
+import org.ufop.web.salesservice.sales.repository.SaleRepository;
+import org.ufop.web.salesservice.sales.repository.SalesStatsRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Running sales totals per status, so the stats endpoints never aggregate the sales table.
+ * <p>
+ * Every sale creation, status change and delete is applied as a delta once its transaction
+ * commits; rolled-back changes never touch the counters. The counters are written to
+ * {@code sales_stats} every few seconds and on shutdown. At startup they are recomputed
+ * from the sales table before any request is served, and the persisted values are only
+ * compared against that to report drift, e.g. from changes made while the last flush was
+ * still pending when the service stopped.
+ */
+@Component
+@Slf4j
+public class SalesStatsLedger {
+
+    private static final Sale.SaleStatus[] STATUSES = Sale.SaleStatus.values();
+
+    private final SaleRepository saleRepository;
+    private final SalesStatsRepository salesStatsRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    // Guarded by this, indexed by status ordinal
+    private final long[] counts = new long[STATUSES.length];
+    private final double[] amounts = new double[STATUSES.length];
+    private boolean dirty;
+
+    public SalesStatsLedger(SaleRepository saleRepository,
+                            SalesStatsRepository salesStatsRepository,
+                            PlatformTransactionManager transactionManager) {
+        this.saleRepository = saleRepository;
+        this.salesStatsRepository = salesStatsRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public void recordCreated(Sale sale) {
+        record(null, sale.getSaleStatus(), sale.getTotalAmount());
+    }
+
+    public void recordStatusChange(Sale sale, Sale.SaleStatus previous) {
+        if (previous != sale.getSaleStatus()) {
+            record(previous, sale.getSaleStatus(), sale.getTotalAmount());
+        }
+    }
+
+    public void recordDeleted(Sale sale) {
+        record(sale.getSaleStatus(), null, sale.getTotalAmount());
+    }
+
+    public synchronized SalesStatsDTO getStats() {
+        long total = 0;
+        Map<String, Long> byStatus = new LinkedHashMap<>();
+        for (Sale.SaleStatus status : STATUSES) {
+            long count = counts[status.ordinal()];
+            total += count;
+            if (count > 0) {
+                byStatus.put(status.name(), count);
+            }
+        }
+        return new SalesStatsDTO(total, counts[Sale.SaleStatus.PAID.ordinal()], getTotalRevenue(), byStatus);
+    }
+
+    public synchronized double getTotalRevenue() {
+        return amounts[Sale.SaleStatus.PAID.ordinal()];
+    }
+
+    @PostConstruct
+    public void reconcile() {
+        long[] recountedCounts = new long[STATUSES.length];
+        double[] recountedAmounts = new double[STATUSES.length];
+        List<SalesStatsSnapshot> persisted = transactionTemplate.execute(status -> {
+            for (Object[] row : saleRepository.getTotalsByStatus()) {
+                int index = ((Sale.SaleStatus) row[0]).ordinal();
+                recountedCounts[index] = ((Number) row[1]).longValue();
+                recountedAmounts[index] = ((Number) row[2]).doubleValue();
+            }
+            return salesStatsRepository.findAll();
+        });
+
+        for (SalesStatsSnapshot snapshot : Objects.requireNonNull(persisted)) {
+            int index = snapshot.getSaleStatus().ordinal();
+            if (snapshot.getSaleCount() != recountedCounts[index]
+                    || Math.abs(snapshot.getTotalAmount() - recountedAmounts[index]) > 0.005) {
+                log.warn("Persisted {} sales stats drifted: {} sales / {} recorded, {} sales / {} recounted",
+                        snapshot.getSaleStatus(), snapshot.getSaleCount(), snapshot.getTotalAmount(),
+                        recountedCounts[index], recountedAmounts[index]);
+            }
+        }
+
+        synchronized (this) {
+            System.arraycopy(recountedCounts, 0, counts, 0, counts.length);
+            System.arraycopy(recountedAmounts, 0, amounts, 0, amounts.length);
+            dirty = true;
+        }
+        flush();
+    }
+
+    @Scheduled(fixedDelayString = "${sales.stats.flush-interval-ms:5000}")
+    public void flush() {
+        List<SalesStatsSnapshot> snapshots = new ArrayList<>(STATUSES.length);
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            LocalDateTime now = LocalDateTime.now();
+            for (Sale.SaleStatus status : STATUSES) {
+                snapshots.add(new SalesStatsSnapshot(status, counts[status.ordinal()], amounts[status.ordinal()], now));
+            }
+            dirty = false;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> salesStatsRepository.saveAll(snapshots));
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                dirty = true;
+            }
+            log.warn("Could not persist sales stats, will retry", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void record(Sale.SaleStatus from, Sale.SaleStatus to, double amount) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(from, to, amount);
+                }
+            });
+        } else {
+            apply(from, to, amount);
+        }
+    }
+
+    private synchronized void apply(Sale.SaleStatus from, Sale.SaleStatus to, double amount) {
+        if (from != null) {
+            counts[from.ordinal()]--;
+            amounts[from.ordinal()] -= amount;
+        }
+        if (to != null) {
+            counts[to.ordinal()]++;
+            amounts[to.ordinal()] += amount;
+        }
+        dirty = true;
+    }
+}
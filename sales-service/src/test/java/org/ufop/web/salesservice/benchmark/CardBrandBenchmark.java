@@ -0,0 +1,105 @@
+package org.ufop.web.salesservice.benchmark;
+
+import org.ufop.web.salesservice.sales.service.CardBinTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.ClassPathResource;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link CardBinTable} with the regex-and-startsWith brand detection and last-four
+ * extraction that {@code PaymentService} used before, copied here unchanged. The old
+ * last-four cut the cleaned number at the raw length, so for spaced numbers it returned
+ * fewer than four digits; it is measured as it was.
+ * <p>
+ * Run with the GC profiler to see the allocation per call next to the throughput:
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *     org.ufop.web.salesservice.benchmark.CardBrandBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CardBrandBenchmark {
+
+    // Visa, Elo inside a Visa range, Hipercard and Amex, as typed by a user and as sent by the frontend
+    @Param({"4111111111111111", "4011 7888 8888 8888", "6062825624254001", "3782-822463-10005"})
+    private String cardNumber;
+
+    private CardBinTable table;
+
+    @Setup
+    public void setUp() {
+        table = new CardBinTable(new ClassPathResource("card-bins.csv"));
+    }
+
+    @Benchmark
+    public String regexBrand() {
+        return detectCardBrand(cardNumber);
+    }
+
+    @Benchmark
+    public String tableBrand() {
+        return table.brandOf(cardNumber);
+    }
+
+    @Benchmark
+    public String regexLastFour() {
+        return extractLastFour(cardNumber);
+    }
+
+    @Benchmark
+    public String tableLastFour() {
+        return CardBinTable.lastFour(cardNumber);
+    }
+
+    private static String extractLastFour(String cardNumber) {
+        if (cardNumber == null || cardNumber.length() < 4) {
+            return "****";
+        }
+        return cardNumber.replaceAll("\\s", "").substring(cardNumber.length() - 4);
+    }
+
+    private static String detectCardBrand(String cardNumber) {
+        String cleaned = cardNumber.replaceAll("\\s", "");
+
+        if (cleaned.startsWith("4")) {
+            return "VISA";
+        } else if (cleaned.startsWith("5")) {
+            return "MASTERCARD";
+        } else if (cleaned.startsWith("34") || cleaned.startsWith("37")) {
+            return "AMEX";
+        } else if (cleaned.startsWith("6")) {
+            return "DISCOVER";
+        } else {
+            return "UNKNOWN";
+        }
+    }
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(CardBrandBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
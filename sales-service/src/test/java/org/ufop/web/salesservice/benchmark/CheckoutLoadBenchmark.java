@@ -0,0 +1,151 @@
+package org.ufop.web.salesservice.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Closed-loop checkout load against a running sales-service, for comparing the platform
+ * thread pool with {@code spring.threads.virtual.enabled=true}, or group commit
+ * ({@code sales.group-commit.enabled}) on and off.
+ * <p>
+ * Creates an event with effectively unlimited tickets, then keeps {@code concurrency}
+ * clients posting {@code POST /api/sales} back to back: a warm-up period that is thrown
+ * away, followed by the measured period. Prints sustained throughput and latency
+ * percentiles. Start events-service and sales-service first, once per mode. With group
+ * commit off and the default pool of 10 connections, concurrent sale inserts fail with
+ * SQLITE_BUSY, so give sales-service a single connection to measure queueing rather than
+ * errors:
+ * <pre>
+ * java -jar target/sales-service-1.0.0.jar --spring.datasource.hikari.maximum-pool-size=1 \
+ *     --spring.threads.virtual.enabled=true
+ * java -cp target/test-classes org.ufop.web.salesservice.benchmark.CheckoutLoadBenchmark \
+ *     http://localhost:4000 http://localhost:5001 400 60 15
+ * </pre>
+ * Arguments: sales URL, events URL, concurrency, measured seconds, warm-up seconds, and the
+ * status of the sales to create (default {@code PAID}). {@code CANCELLED} sales skip the
+ * reservation in events-service, which leaves the sales-service write path on its own.
+ */
+public class CheckoutLoadBenchmark {
+
+    private static final Pattern ID = Pattern.compile("\"id\"\\s*:\\s*\"([0-9a-f-]{36})\"");
+
+    public static void main(String[] args) throws Exception {
+        String salesUrl = args.length > 0 ? args[0] : "http://localhost:4000";
+        String eventsUrl = args.length > 1 ? args[1] : "http://localhost:5001";
+        int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : 400;
+        long measureSeconds = args.length > 3 ? Long.parseLong(args[3]) : 60;
+        long warmupSeconds = args.length > 4 ? Long.parseLong(args[4]) : 15;
+        String saleStatus = args.length > 5 ? args[5] : "PAID";
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        String eventId = createEvent(client, eventsUrl);
+
+        long start = System.nanoTime();
+        long measureFrom = start + Duration.ofSeconds(warmupSeconds).toNanos();
+        long measureUntil = measureFrom + Duration.ofSeconds(measureSeconds).toNanos();
+
+        List<long[]> latencies = new ArrayList<>(concurrency);
+        int[] counts = new int[concurrency];
+        AtomicLong errors = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(concurrency);
+
+        for (int i = 0; i < concurrency; i++) {
+            long[] samples = new long[1 << 16];
+            latencies.add(samples);
+            int worker = i;
+            Thread thread = new Thread(() -> {
+                try {
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(salesUrl + "/api/sales"))
+                            .header("Content-Type", "application/json")
+                            .timeout(Duration.ofSeconds(60))
+                            .POST(HttpRequest.BodyPublishers.ofString(
+                                    "{\"userId\":\"load-" + worker + "\",\"eventId\":\"" + eventId
+                                            + "\",\"quantity\":1,\"saleStatus\":\"" + saleStatus + "\"}"))
+                            .build();
+                    long[] mine = samples;
+                    long now;
+                    while ((now = System.nanoTime()) < measureUntil) {
+                        boolean ok;
+                        try {
+                            ok = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 201;
+                        } catch (IOException e) {
+                            ok = false;
+                        }
+                        long end = System.nanoTime();
+                        if (now < measureFrom || end > measureUntil) {
+                            continue;
+                        }
+                        if (!ok) {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                        if (counts[worker] == mine.length) {
+                            mine = Arrays.copyOf(mine, mine.length * 2);
+                            latencies.set(worker, mine);
+                        }
+                        mine[counts[worker]++] = end - now;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }, "checkout-client-" + i);
+            thread.start();
+        }
+        done.await();
+
+        int total = Arrays.stream(counts).sum();
+        long[] all = new long[total];
+        int offset = 0;
+        for (int i = 0; i < concurrency; i++) {
+            System.arraycopy(latencies.get(i), 0, all, offset, counts[i]);
+            offset += counts[i];
+        }
+        Arrays.sort(all);
+
+        System.out.printf("concurrency=%d measured=%ds completed=%d errors=%d%n",
+                concurrency, measureSeconds, total, errors.get());
+        System.out.printf("throughput=%.1f req/s%n", total / (double) measureSeconds);
+        if (total > 0) {
+            System.out.printf("latency ms: p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f%n",
+                    percentile(all, 0.50), percentile(all, 0.90), percentile(all, 0.99),
+                    percentile(all, 0.999), all[total - 1] / 1e6);
+        }
+    }
+
+    private static String createEvent(HttpClient client, String eventsUrl) throws IOException, InterruptedException {
+        String body = "{\"title\":\"Checkout load\",\"description\":\"Load test\",\"location\":\"Bench\","
+                + "\"category\":\"benchmark\",\"eventDate\":\"2099-01-01T20:00:00\",\"price\":10.0,"
+                + "\"totalTickets\":1000000000}";
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(eventsUrl + "/api/events"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        Matcher matcher = ID.matcher(response.body());
+        if (response.statusCode() != 201 || !matcher.find()) {
+            throw new IllegalStateException("Could not create the benchmark event: " + response.body());
+        }
+        return matcher.group(1);
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
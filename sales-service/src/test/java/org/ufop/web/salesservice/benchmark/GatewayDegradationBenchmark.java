@@ -0,0 +1,185 @@
+package org.ufop.web.salesservice.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Checks that a degraded payment gateway cannot take the rest of sales-service down: many
+ * clients pay by card against a slow, hanging acquirer while a probe keeps reading a sale,
+ * which needs a request thread and a database connection but no gateway. Each client pays
+ * for its own sale, retrying it until a payment goes through, then starts a new one.
+ * <p>
+ * Start events-service and sales-service with a degraded simulator, once with the default
+ * guards and once with them effectively off, then compare the probe latency:
+ * <pre>
+ * java -jar target/sales-service-1.0.0.jar --sales.gateway.simulator.latency=log-normal \
+ *     --sales.gateway.simulator.latency-median-ms=200 --sales.gateway.simulator.latency-p99-ms=2000 \
+ *     --sales.gateway.simulator.hang-rate=0.3
+ * # guards off: --sales.gateway.max-concurrent-calls=100000 --sales.gateway.timeout-ms=600000 \
+ * #             --sales.gateway.circuit-breaker.failure-rate-threshold=101
+ * java -cp target/test-classes org.ufop.web.salesservice.benchmark.GatewayDegradationBenchmark \
+ *     http://localhost:4000 http://localhost:5001 300 30
+ * </pre>
+ * Arguments: sales URL, events URL, paying clients (more than Tomcat's 200 threads to show
+ * exhaustion) and seconds. Prints the payment responses by status code and the probe's
+ * latency and failures. Without guards hung calls pile up on request threads until the probe
+ * times out; with them the surplus gets 503 or 504 at once. The 500s left in both runs are
+ * SQLITE_BUSY on approved payments updating their sale, unrelated to the gateway.
+ */
+public class GatewayDegradationBenchmark {
+
+    private static final Pattern ID = Pattern.compile("\"id\"\\s*:\\s*\"([0-9a-f-]{36})\"");
+    private static final Duration PROBE_TIMEOUT = Duration.ofSeconds(5);
+
+    public static void main(String[] args) throws Exception {
+        String salesUrl = args.length > 0 ? args[0] : "http://localhost:4000";
+        String eventsUrl = args.length > 1 ? args[1] : "http://localhost:5001";
+        int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : 300;
+        long seconds = args.length > 3 ? Long.parseLong(args[3]) : 30;
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        String eventId = create(client, eventsUrl + "/api/events",
+                "{\"title\":\"Gateway degradation\",\"description\":\"Load test\",\"location\":\"Bench\","
+                        + "\"category\":\"benchmark\",\"eventDate\":\"2099-01-01T20:00:00\",\"price\":10.0,"
+                        + "\"totalTickets\":1000000000}");
+        String probeSaleId = create(client, salesUrl + "/api/sales", sale(eventId, "probe"));
+
+        long until = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+        Map<String, AtomicLong> responses = new ConcurrentHashMap<>();
+        List<Long> paymentLatencies = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(concurrency + 1);
+
+        for (int i = 0; i < concurrency; i++) {
+            int worker = i;
+            Thread thread = new Thread(() -> {
+                try {
+                    String saleId = null;
+                    while (System.nanoTime() < until) {
+                        String outcome;
+                        long started = System.nanoTime();
+                        try {
+                            // A sale is paid at most once; failed attempts retry the same sale
+                            if (saleId == null) {
+                                saleId = create(client, salesUrl + "/api/sales", sale(eventId, "load-" + worker));
+                            }
+                            HttpResponse<Void> response = client.send(
+                                    post(salesUrl + "/api/payments/credit-card", payment(saleId))
+                                            .timeout(Duration.ofSeconds(120))
+                                            .build(),
+                                    HttpResponse.BodyHandlers.discarding());
+                            outcome = String.valueOf(response.statusCode());
+                            if (response.statusCode() == 201) {
+                                saleId = null;
+                            }
+                        } catch (HttpTimeoutException e) {
+                            outcome = "client timeout";
+                        } catch (IOException | IllegalStateException e) {
+                            outcome = "sale not created";
+                        }
+                        paymentLatencies.add(System.nanoTime() - started);
+                        responses.computeIfAbsent(outcome, k -> new AtomicLong()).incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }, "paying-client-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        List<Long> probeLatencies = new ArrayList<>();
+        long probeFailures = 0;
+        HttpRequest probe = HttpRequest.newBuilder(URI.create(salesUrl + "/api/sales/" + probeSaleId))
+                .timeout(PROBE_TIMEOUT)
+                .build();
+        while (System.nanoTime() < until) {
+            long started = System.nanoTime();
+            try {
+                if (client.send(probe, HttpResponse.BodyHandlers.discarding()).statusCode() != 200) {
+                    probeFailures++;
+                }
+            } catch (IOException e) {
+                probeFailures++;
+            }
+            probeLatencies.add(System.nanoTime() - started);
+            Thread.sleep(100);
+        }
+        done.countDown();
+        // Clients stuck in a hung payment are abandoned rather than waited for
+        done.await(5, TimeUnit.SECONDS);
+
+        System.out.printf("paying clients=%d seconds=%d%n", concurrency, seconds);
+        System.out.println("payment responses: " + new TreeMap<>(responses));
+        long[] payments = sorted(paymentLatencies);
+        if (payments.length > 0) {
+            System.out.printf("payment ms: p50=%.1f p99=%.1f max=%.1f%n",
+                    percentile(payments, 0.50), percentile(payments, 0.99), payments[payments.length - 1] / 1e6);
+        }
+        long[] probes = sorted(probeLatencies);
+        System.out.printf("probe: requests=%d failed or timed out (%ds)=%d p50=%.1f ms p99=%.1f ms max=%.1f ms%n",
+                probes.length, PROBE_TIMEOUT.toSeconds(), probeFailures,
+                percentile(probes, 0.50), percentile(probes, 0.99), probes[probes.length - 1] / 1e6);
+    }
+
+    // CANCELLED sales reserve nothing in events-service, so only the payment path is loaded
+    private static String sale(String eventId, String userId) {
+        return "{\"userId\":\"" + userId + "\",\"eventId\":\"" + eventId
+                + "\",\"quantity\":1,\"saleStatus\":\"CANCELLED\"}";
+    }
+
+    private static String payment(String saleId) {
+        return "{\"saleId\":\"" + saleId + "\",\"cardData\":{\"cardNumber\":\"4111111111111111\","
+                + "\"cardHolder\":\"Load Test\",\"cardExpiry\":\"12/30\",\"cardCvv\":\"123\",\"installments\":1}}";
+    }
+
+    private static HttpRequest.Builder post(String url, String body) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+    }
+
+    private static String create(HttpClient client, String url, String body) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(post(url, body).timeout(Duration.ofSeconds(30)).build(),
+                HttpResponse.BodyHandlers.ofString());
+        Matcher matcher = ID.matcher(response.body());
+        if (response.statusCode() != 201 || !matcher.find()) {
+            throw new IllegalStateException("Could not create " + url + ": " + response.body());
+        }
+        return matcher.group(1);
+    }
+
+    private static long[] sorted(List<Long> samples) {
+        synchronized (samples) {
+            return samples.stream().mapToLong(Long::longValue).sorted().toArray();
+        }
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
@@ -0,0 +1,93 @@
+package org.ufop.web.salesservice.benchmark;
+
+import org.ufop.web.salesservice.sales.service.PixQrCodeService;
+import org.ufop.web.salesservice.sales.service.QrCodeEncoder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PIX QR codes per second on one core: the bare encoder, a full render through
+ * {@link PixQrCodeService} (BR Code, QR code and SVG on its QR thread) for a new charge, and
+ * the same charge served again from the cache.
+ * <p>
+ * Each benchmark runs on a single thread, so its throughput is what one core sustains. Run
+ * with the GC profiler to see what a render allocates:
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *     org.ufop.web.salesservice.benchmark.PixQrCodeBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+@Fork(1)
+public class PixQrCodeBenchmark {
+
+    // A short e-mail key and one close to the 77 character limit
+    @Param({"financeiro@ufoptickets.com.br", "financeiro.ingressos.eventos@universidade-federal-de-ouro-preto.edu.br"})
+    private String pixKey;
+
+    private final QrCodeEncoder encoder = new QrCodeEncoder();
+    private PixQrCodeService service;
+    private String payload;
+    private long charges;
+
+    @Setup
+    public void setUp() {
+        service = new PixQrCodeService(new SimpleMeterRegistry(), pixKey, "UFOP Tickets", "Ouro Preto",
+                QrCodeEncoder.ErrorCorrection.M, 1, 256, 1024);
+        payload = service.payload(150.0, "TXN1760000000000ABCDEF12");
+        service.render(150.0, "TXN1760000000000ABCDEF12");
+    }
+
+    @TearDown
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Benchmark
+    public int encode() {
+        encoder.encode(payload, QrCodeEncoder.ErrorCorrection.M);
+        return encoder.size();
+    }
+
+    @Benchmark
+    public PixQrCodeService.PixQrCode renderNewCharge() {
+        return service.render(150.0, "TXN" + (1_000_000_000_000_000L + charges++));
+    }
+
+    @Benchmark
+    public PixQrCodeService.PixQrCode renderCached() {
+        return service.render(150.0, "TXN1760000000000ABCDEF12");
+    }
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(PixQrCodeBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,355 @@
+package org.ufop.web.salesservice.benchmark;
+
+import org.ufop.web.salesservice.SalesServiceApplication;
+import org.ufop.web.salesservice.sales.model.Sale;
+import org.ufop.web.salesservice.sales.repository.PaymentRepository;
+import org.ufop.web.salesservice.sales.repository.SaleRepository;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+
+import javax.sql.DataSource;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.IntFunction;
+
+/**
+ * Latency of every sales and payments repository query against a seeded SQLite database,
+ * with and without the secondary indexes.
+ * <p>
+ * Seeds {@code sales} rows (default 1,000,000) spread over 20,000 users and 500 events,
+ * plus one payment per paid sale, unless the database already holds them; keep the file
+ * around to skip the seeding on later runs. Every query is then timed against randomly
+ * picked keys, first as the schema defines it and again after dropping the indexes that
+ * only serve these lookups, which are recreated at the end. Runs without a web server,
+ * Eureka or events-service:
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -Xmx2g -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *     org.ufop.web.salesservice.benchmark.RepositoryQueryBenchmark /tmp/sales-bench.db 1000000
+ * </pre>
+ * Full-table reads ({@code findAll}, {@code findAllSummaries}, {@code findPaidSales}) are
+ * left out: they return most of the table and measure hydration rather than access paths.
+ */
+public class RepositoryQueryBenchmark {
+
+    private static final int USERS = 20_000;
+    private static final int EVENTS = 500;
+    private static final int SAMPLES = 200;
+    private static final long BUDGET_NANOS = 2_000_000_000L;
+    private static final int MAX_ITERATIONS = 500;
+
+    private static final String[] SECONDARY_INDEXES = {
+            "CREATE INDEX idx_sales_event_id ON sales (eventId)",
+            "CREATE INDEX idx_sales_sale_status_total_amount ON sales (saleStatus, totalAmount)",
+            "CREATE INDEX idx_payments_sale_id ON payments (saleId)"
+    };
+
+    public static void main(String[] args) throws Exception {
+        String db = args.length > 0 ? args[0] : Path.of(System.getProperty("java.io.tmpdir"), "sales-bench.db").toString();
+        int salesCount = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+
+        // A devtools restart would rerun main() without the arguments and properties below
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(SalesServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                // As arguments: application.yml would override them as default properties
+                .run("--spring.datasource.url=jdbc:sqlite:" + db,
+                        "--eureka.client.enabled=false",
+                        "--spring.cloud.discovery.enabled=false",
+                        "--sales.group-commit.enabled=false",
+                        "--logging.level.root=WARN")) {
+            DataSource dataSource = context.getBean(DataSource.class);
+            SaleRepository sales = context.getBean(SaleRepository.class);
+            PaymentRepository payments = context.getBean(PaymentRepository.class);
+
+            try (Connection connection = dataSource.getConnection()) {
+                long existing = count(connection, "sales");
+                if (existing < salesCount) {
+                    System.out.printf("Seeding %,d sales...%n", salesCount - existing);
+                    long started = System.nanoTime();
+                    seed(connection, (int) existing, salesCount);
+                    System.out.printf("Seeded in %.1fs%n", (System.nanoTime() - started) / 1e9);
+                }
+                System.out.printf("%,d sales, %,d payments%n", count(connection, "sales"), count(connection, "payments"));
+            }
+
+            Keys keys;
+            try (Connection connection = dataSource.getConnection()) {
+                keys = Keys.sample(connection);
+            }
+            Map<String, IntFunction<Integer>> queries = queries(sales, payments, keys);
+
+            // Warm the JIT and the page cache first, so the indexed pass is not the cold one
+            run(queries, 500_000_000L);
+            Map<String, Result> indexed = run(queries, BUDGET_NANOS);
+            try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+                for (String index : SECONDARY_INDEXES) {
+                    statement.execute("DROP INDEX IF EXISTS " + index.split(" ")[2]);
+                }
+            }
+            Map<String, Result> unindexed = run(queries, BUDGET_NANOS);
+            try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+                for (String index : SECONDARY_INDEXES) {
+                    statement.execute(index.replace("CREATE INDEX", "CREATE INDEX IF NOT EXISTS"));
+                }
+            }
+
+            System.out.printf("%n%-42s %8s %22s %22s%n", "query", "rows", "indexed p50 / p99 ms", "unindexed p50 / p99 ms");
+            for (String name : queries.keySet()) {
+                Result with = indexed.get(name);
+                Result without = unindexed.get(name);
+                System.out.printf("%-42s %8d %10.3f / %9.3f %10.3f / %9.3f%n", name, with.rows,
+                        with.percentile(0.50), with.percentile(0.99),
+                        without.percentile(0.50), without.percentile(0.99));
+            }
+        }
+    }
+
+    private static Map<String, IntFunction<Integer>> queries(SaleRepository sales, PaymentRepository payments, Keys keys) {
+        PageRequest page = PageRequest.of(0, 500);
+        PageRequest userPage = PageRequest.of(0, 20);
+        Map<String, IntFunction<Integer>> queries = new LinkedHashMap<>();
+
+        queries.put("sales.findById", i -> sales.findById(keys.saleId(i)).map(sale -> 1).orElse(0));
+        queries.put("sales.findByUserId (entities)", i -> sales.findByUserId(keys.userId(i)).size());
+        queries.put("sales.findSummariesByUserId", i -> sales.findSummariesByUserId(keys.userId(i)).size());
+        queries.put("sales.findFirstSummaryPageByUserId", i -> sales.findFirstSummaryPageByUserId(keys.userId(i), userPage).size());
+        queries.put("sales.findSummaryPageByUserIdAfter", i -> sales.findSummaryPageByUserIdAfter(
+                keys.userId(i), keys.saleDate(i).minusDays(3650), keys.saleId(i), userPage).size());
+        queries.put("sales.findFirstPage (entities)", i -> sales.findFirstPage(page).size());
+        queries.put("sales.findFirstSummaryPage", i -> sales.findFirstSummaryPage(page).size());
+        queries.put("sales.findPageAfter (entities)", i -> sales.findPageAfter(keys.saleDate(i), keys.saleId(i), page).size());
+        queries.put("sales.findSummaryPageAfter", i -> sales.findSummaryPageAfter(keys.saleDate(i), keys.saleId(i), page).size());
+        queries.put("sales.findSummariesByIdIn (500 ids)", i -> sales.findSummariesByIdIn(keys.saleIds).size());
+        queries.put("sales.findByEventId", i -> sales.findByEventId(keys.eventId(i)).size());
+        queries.put("sales.findBySaleStatus(REFUNDED)", i -> sales.findBySaleStatus(Sale.SaleStatus.REFUNDED).size());
+        queries.put("sales.getTotalRevenue", i -> sales.getTotalRevenue() != null ? 1 : 0);
+        queries.put("sales.getPaidSalesCount", i -> sales.getPaidSalesCount() != null ? 1 : 0);
+        queries.put("sales.getSalesByStatus", i -> sales.getSalesByStatus().size());
+        queries.put("sales.getTotalsByStatus", i -> sales.getTotalsByStatus().size());
+        queries.put("payments.findFirstBySaleIdOrderByCreatedAtDesc", i -> payments.findFirstBySaleIdOrderByCreatedAtDesc(
+                keys.paidSaleId(i)).map(payment -> 1).orElse(0));
+        queries.put("payments.findByTransactionId", i -> payments.findByTransactionId(keys.transactionId(i)).map(payment -> 1).orElse(0));
+        queries.put("payments.findFirstSummaryPage", i -> payments.findFirstSummaryPage(page).size());
+        queries.put("payments.findSummaryPageAfter", i -> payments.findSummaryPageAfter(
+                keys.paymentCreatedAt(i), keys.paymentId(i), page).size());
+        return queries;
+    }
+
+    private static Map<String, Result> run(Map<String, IntFunction<Integer>> queries, long budgetNanos) {
+        Map<String, Result> results = new LinkedHashMap<>();
+        queries.forEach((name, query) -> {
+            for (int i = 0; i < 3; i++) {
+                query.apply(i);
+            }
+            long[] samples = new long[MAX_ITERATIONS];
+            int rows = 0;
+            int n = 0;
+            long deadline = System.nanoTime() + budgetNanos;
+            while (n < MAX_ITERATIONS && (n < 5 || System.nanoTime() < deadline)) {
+                long started = System.nanoTime();
+                rows = query.apply(n);
+                samples[n++] = System.nanoTime() - started;
+            }
+            results.put(name, new Result(Arrays.copyOf(samples, n), rows));
+            System.out.printf("  %-42s %d runs%n", name, n);
+        });
+        return results;
+    }
+
+    private static void seed(Connection connection, int from, int to) throws SQLException {
+        Random random = new Random(42);
+        long base = LocalDateTime.of(2024, 1, 1, 0, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        UUID[] events = new UUID[EVENTS];
+        for (int i = 0; i < EVENTS; i++) {
+            events[i] = new UUID(0x5EED_0000_0000_0000L, i);
+        }
+        String[] methods = {"CREDIT_CARD", "DEBIT_CARD", "PIX", "CASH"};
+
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement sale = connection.prepareStatement(
+                "INSERT INTO sales (id, userId, eventId, quantity, totalAmount, saleStatus, paymentMethod, " +
+                        "saleDate, paymentDate, notes) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, NULL)");
+             PreparedStatement payment = connection.prepareStatement(
+                     "INSERT INTO payments (id, saleId, status, paymentMethod, amount, transactionId, " +
+                             "cardLastFour, cardBrand, installments, createdAt, processedAt, paymentDetails) " +
+                             "VALUES (?, ?, 'COMPLETED', ?, ?, ?, '1111', 'VISA', 1, ?, ?, 'Seeded')")) {
+            for (int i = from; i < to; i++) {
+                UUID id = UUID.randomUUID();
+                int quantity = 1 + random.nextInt(4);
+                double amount = quantity * (20 + random.nextInt(200));
+                int roll = random.nextInt(100);
+                String status = roll < 70 ? "PAID" : roll < 90 ? "PENDING" : roll < 98 ? "CANCELLED" : "REFUNDED";
+                String method = methods[random.nextInt(methods.length)];
+                long saleDate = base + i * 30_000L;
+
+                sale.setBytes(1, bytes(id));
+                sale.setString(2, "user-" + random.nextInt(USERS));
+                sale.setBytes(3, bytes(events[random.nextInt(EVENTS)]));
+                sale.setInt(4, quantity);
+                sale.setDouble(5, amount);
+                sale.setString(6, status);
+                sale.setString(7, method);
+                sale.setLong(8, saleDate);
+                if (status.equals("PAID")) {
+                    sale.setLong(9, saleDate + 60_000);
+                    payment.setBytes(1, bytes(UUID.randomUUID()));
+                    payment.setBytes(2, bytes(id));
+                    payment.setString(3, method.equals("CASH") ? "CREDIT_CARD" : method);
+                    payment.setDouble(4, amount);
+                    payment.setString(5, "TXN-SEED-" + i);
+                    payment.setLong(6, saleDate + 60_000);
+                    payment.setLong(7, saleDate + 60_000);
+                    payment.addBatch();
+                } else {
+                    sale.setNull(9, java.sql.Types.BIGINT);
+                }
+                sale.addBatch();
+
+                if ((i + 1) % 10_000 == 0) {
+                    sale.executeBatch();
+                    payment.executeBatch();
+                    connection.commit();
+                }
+            }
+            sale.executeBatch();
+            payment.executeBatch();
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE");
+        }
+    }
+
+    private static long count(Connection connection, String table) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private static byte[] bytes(UUID id) {
+        return ByteBuffer.allocate(16).putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits()).array();
+    }
+
+    private static UUID uuid(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    private static LocalDateTime dateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    private record Result(long[] nanos, int rows) {
+
+        double percentile(double quantile) {
+            long[] sorted = nanos.clone();
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+    }
+
+    /**
+     * Randomly picked existing keys, so each iteration looks up a different row.
+     */
+    private record Keys(List<UUID> saleIdList, List<String> userIds, List<UUID> eventIds, List<LocalDateTime> saleDates,
+                        List<UUID> paidSaleIds, List<String> transactionIds, List<UUID> paymentIds,
+                        List<LocalDateTime> paymentCreatedAts, List<UUID> saleIds) {
+
+        static Keys sample(Connection connection) throws SQLException {
+            List<UUID> saleIds = new ArrayList<>();
+            List<String> userIds = new ArrayList<>();
+            List<UUID> eventIds = new ArrayList<>();
+            List<LocalDateTime> saleDates = new ArrayList<>();
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT id, userId, eventId, saleDate FROM sales " +
+                         "ORDER BY random() LIMIT " + SAMPLES)) {
+                while (rs.next()) {
+                    saleIds.add(uuid(rs.getBytes(1)));
+                    userIds.add(rs.getString(2));
+                    eventIds.add(uuid(rs.getBytes(3)));
+                    saleDates.add(dateTime(rs.getLong(4)));
+                }
+            }
+
+            List<UUID> paidSaleIds = new ArrayList<>();
+            List<String> transactionIds = new ArrayList<>();
+            List<UUID> paymentIds = new ArrayList<>();
+            List<LocalDateTime> createdAts = new ArrayList<>();
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT saleId, transactionId, id, createdAt FROM payments " +
+                         "ORDER BY random() LIMIT " + SAMPLES)) {
+                while (rs.next()) {
+                    paidSaleIds.add(uuid(rs.getBytes(1)));
+                    transactionIds.add(rs.getString(2));
+                    paymentIds.add(uuid(rs.getBytes(3)));
+                    createdAts.add(dateTime(rs.getLong(4)));
+                }
+            }
+
+            List<UUID> batch = new ArrayList<>();
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT id FROM sales ORDER BY random() LIMIT 500")) {
+                while (rs.next()) {
+                    batch.add(uuid(rs.getBytes(1)));
+                }
+            }
+            return new Keys(saleIds, userIds, eventIds, saleDates, paidSaleIds, transactionIds, paymentIds,
+                    createdAts, batch);
+        }
+
+        UUID saleId(int i) {
+            return saleIdList.get(i % saleIdList.size());
+        }
+
+        String userId(int i) {
+            return userIds.get(i % userIds.size());
+        }
+
+        UUID eventId(int i) {
+            return eventIds.get(i % eventIds.size());
+        }
+
+        LocalDateTime saleDate(int i) {
+            return saleDates.get(i % saleDates.size());
+        }
+
+        UUID paidSaleId(int i) {
+            return paidSaleIds.get(i % paidSaleIds.size());
+        }
+
+        String transactionId(int i) {
+            return transactionIds.get(i % transactionIds.size());
+        }
+
+        UUID paymentId(int i) {
+            return paymentIds.get(i % paymentIds.size());
+        }
+
+        LocalDateTime paymentCreatedAt(int i) {
+            return paymentCreatedAts.get(i % paymentCreatedAts.size());
+        }
+    }
+}
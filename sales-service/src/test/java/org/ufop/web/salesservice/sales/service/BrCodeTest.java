@@ -0,0 +1,77 @@
+package org.ufop.web.salesservice.sales.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BrCodeTest {
+
+    // The static example of the Banco Central's BR Code manual, without its CRC
+    private static final String BCB_EXAMPLE = "00020126580014br.gov.bcb.pix0136123e4567-e12b-12d1-a456-426655440000"
+            + "5204000053039865802BR5913Fulano de Tal6008BRASILIA62070503***6304";
+
+    @Test
+    void crcIsCcittFalse() {
+        // The check value of CRC-16/CCITT-FALSE
+        assertThat(BrCode.crc16("123456789")).isEqualTo(0x29B1);
+        assertThat(BrCode.crc16(BCB_EXAMPLE)).isEqualTo(0x1D3D);
+    }
+
+    @Test
+    void payloadHoldsTheChargeFields() {
+        String payload = BrCode.payload("financeiro@ufoptickets.com.br", new BigDecimal("150.5"),
+                "TXN1760000000000ABCDEF12", "UFOP Tickets", "Ouro Preto");
+
+        Map<String, String> fields = fields(payload);
+        assertThat(fields).containsExactly(
+                Map.entry("00", "01"),
+                Map.entry("01", "12"),
+                Map.entry("26", "0014br.gov.bcb.pix0129financeiro@ufoptickets.com.br"),
+                Map.entry("52", "0000"),
+                Map.entry("53", "986"),
+                Map.entry("54", "150.50"),
+                Map.entry("58", "BR"),
+                Map.entry("59", "UFOP Tickets"),
+                Map.entry("60", "Ouro Preto"),
+                Map.entry("62", "0524TXN1760000000000ABCDEF12"),
+                Map.entry("63", String.format("%04X", BrCode.crc16(payload.substring(0, payload.length() - 4)))));
+    }
+
+    @Test
+    void merchantFieldsAreCutToAscii() {
+        assertThat(BrCode.merchantName("Ingressos Universidade Federal de Ouro Preto")).isEqualTo("Ingressos Universidade Fe");
+        assertThat(BrCode.merchantCity("São João del-Rei")).isEqualTo("Sao Joao del-Re");
+        assertThatThrownBy(() -> BrCode.merchantCity("東京")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsFieldsABrCodeCannotCarry() {
+        BigDecimal amount = BigDecimal.TEN;
+        assertThatThrownBy(() -> BrCode.payload("", amount, "TXN1", "UFOP Tickets", "Ouro Preto"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> BrCode.payload("k".repeat(78), amount, "TXN1", "UFOP Tickets", "Ouro Preto"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> BrCode.payload("key", amount, "TXN-1", "UFOP Tickets", "Ouro Preto"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> BrCode.payload("key", amount, "T".repeat(26), "UFOP Tickets", "Ouro Preto"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> BrCode.payload("key", BigDecimal.ZERO, "TXN1", "UFOP Tickets", "Ouro Preto"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static Map<String, String> fields(String payload) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        for (int i = 0; i < payload.length(); ) {
+            String id = payload.substring(i, i + 2);
+            int length = Integer.parseInt(payload.substring(i + 2, i + 4));
+            fields.put(id, payload.substring(i + 4, i + 4 + length));
+            i += 4 + length;
+        }
+        return fields;
+    }
+}
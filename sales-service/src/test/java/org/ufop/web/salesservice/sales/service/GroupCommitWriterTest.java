@@ -0,0 +1,82 @@
+package org.ufop.web.salesservice.sales.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.ufop.web.salesservice.sales.model.Payment;
+import org.ufop.web.salesservice.sales.repository.PaymentRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:sqlite:target/group-commit-test.db",
+        // Long enough for every write below to join the first batch
+        "sales.group-commit.max-delay-ms=1000"
+})
+class GroupCommitWriterTest {
+
+    @Autowired
+    private GroupCommitWriter writer;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void failedBatchOnlyFailsTheBadWrite() throws InterruptedException {
+        String transactionId = "TXN" + UUID.randomUUID().toString().replace("-", "");
+        List<Payment> payments = List.of(payment(transactionId), payment(transactionId),
+                payment("TXN" + UUID.randomUUID().toString().replace("-", "")));
+        long batchesBefore = meterRegistry.get("sales.group-commit.commit").timer().count();
+
+        ExecutorService callers = Executors.newFixedThreadPool(payments.size());
+        List<Future<Payment>> writes;
+        try {
+            writes = callers.invokeAll(payments.stream()
+                    .map(payment -> (Callable<Payment>) () -> writer.insert(payment))
+                    .toList());
+        } finally {
+            callers.shutdown();
+        }
+
+        // The three writes shared one transaction, which the duplicate transaction id made fail
+        assertThat(meterRegistry.get("sales.group-commit.commit").timer().count()).isEqualTo(batchesBefore + 1);
+        List<Payment> saved = new ArrayList<>();
+        int failed = 0;
+        for (Future<Payment> write : writes) {
+            try {
+                saved.add(write.get());
+            } catch (ExecutionException e) {
+                failed++;
+            }
+        }
+        assertThat(failed).isEqualTo(1);
+        assertThat(saved).hasSize(2)
+                .allSatisfy(payment -> assertThat(paymentRepository.findById(payment.getId())).isPresent());
+        assertThat(saved).extracting(Payment::getTransactionId).contains(payments.get(2).getTransactionId());
+    }
+
+    private static Payment payment(String transactionId) {
+        Payment payment = new Payment();
+        payment.setSaleId(UUID.randomUUID());
+        payment.setStatus(Payment.PaymentStatus.PENDING);
+        payment.setPaymentMethod(Payment.PaymentMethod.PIX);
+        payment.setAmount(10.0);
+        payment.setTransactionId(transactionId);
+        payment.setCreatedAt(LocalDateTime.now());
+        return payment;
+    }
+}
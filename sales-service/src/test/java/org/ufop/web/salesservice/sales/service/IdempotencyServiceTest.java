@@ -0,0 +1,81 @@
+package org.ufop.web.salesservice.sales.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ResponseStatusException;
+import org.ufop.web.salesservice.sales.model.IdempotencyRecord;
+import org.ufop.web.salesservice.sales.repository.IdempotencyRecordRepository;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:sqlite:target/idempotency-test.db")
+class IdempotencyServiceTest {
+
+    private static final TypeReference<String> STRING = new TypeReference<>() {
+    };
+
+    @Autowired
+    private IdempotencyService idempotency;
+
+    @Autowired
+    private IdempotencyRecordRepository repository;
+
+    @Test
+    void claimIsStoredBeforeTheRequestRuns() {
+        String key = UUID.randomUUID().toString();
+
+        ResponseEntity<String> response = idempotency.execute("test", key, Map.of("a", 1), STRING, () -> {
+            IdempotencyRecord claim = repository.findById("test:" + key).orElseThrow();
+            assertThat(claim.getStatusCode()).isZero();
+            return ResponseEntity.status(HttpStatus.CREATED).body("done");
+        });
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        ResponseEntity<String> replayed = idempotency.execute("test", key, Map.of("a", 1), STRING,
+                () -> ResponseEntity.ok("ran again"));
+        assertThat(replayed.getBody()).isEqualTo("done");
+    }
+
+    @Test
+    void failureAfterSideEffectsIsReplayed() {
+        String key = UUID.randomUUID().toString();
+        AtomicInteger runs = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> idempotency.execute("test", key, Map.of("a", 1), STRING, () -> {
+                runs.incrementAndGet();
+                throw new IllegalStateException("Sale was reserved but could not be confirmed");
+            })).isInstanceOf(RuntimeException.class)
+                    .hasMessageContaining("could not be confirmed");
+        }
+
+        assertThat(runs).hasValue(1);
+        assertThatThrownBy(() -> idempotency.execute("test", key, Map.of("a", 1), STRING,
+                () -> ResponseEntity.ok("ran again")))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR));
+    }
+
+    @Test
+    void failureBeforeSideEffectsReleasesTheKey() {
+        String key = UUID.randomUUID().toString();
+
+        assertThatThrownBy(() -> idempotency.execute("test", key, Map.of("a", 1), STRING, () -> {
+            throw new IllegalArgumentException("Quantity must be positive");
+        })).isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(repository.findById("test:" + key)).isEmpty();
+        ResponseEntity<String> retried = idempotency.execute("test", key, Map.of("a", 1), STRING,
+                () -> ResponseEntity.ok("ran again"));
+        assertThat(retried.getBody()).isEqualTo("ran again");
+    }
+}
@@ -0,0 +1,377 @@
+package org.ufop.web.salesservice.sales.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Checks {@link QrCodeEncoder} against values from the QR code standard (ISO/IEC 18004) and
+ * by reading its symbols back with the decoder below, which shares no code or tables with the
+ * encoder.
+ */
+class QrCodeEncoderTest {
+
+    // Total codewords per version, from the standard's capacity table
+    private static final int[] TOTAL_CODEWORDS = {0, 26, 44, 70, 100, 134, 172, 196, 242, 292, 346, 404, 466, 532,
+            581, 655, 733, 815, 901, 991, 1085, 1156, 1258, 1364, 1474, 1588, 1706, 1828, 1921, 2051, 2185, 2323,
+            2465, 2611, 2761, 2876, 3034, 3196, 3362, 3532, 3706};
+
+    // Error correction codewords per block and number of blocks, by level (L, M, Q, H) and version
+    private static final int[][] ECC_PER_BLOCK = {
+            {0, 7, 10, 15, 20, 26, 18, 20, 24, 30, 18, 20, 24, 26, 30, 22, 24, 28, 30, 28, 28, 28, 28, 30, 30, 26,
+                    28, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30},
+            {0, 10, 16, 26, 18, 24, 16, 18, 22, 22, 26, 30, 22, 22, 24, 24, 28, 28, 26, 26, 26, 26, 28, 28, 28, 28,
+                    28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28},
+            {0, 13, 22, 18, 26, 18, 24, 18, 22, 20, 24, 28, 26, 24, 20, 30, 24, 28, 28, 26, 30, 28, 30, 30, 30, 30,
+                    28, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30},
+            {0, 17, 28, 22, 16, 22, 28, 26, 26, 24, 28, 24, 28, 22, 24, 24, 30, 28, 28, 26, 28, 30, 24, 30, 30, 30,
+                    30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30}};
+    private static final int[][] BLOCKS = {
+            {0, 1, 1, 1, 1, 1, 2, 2, 2, 2, 4, 4, 4, 4, 4, 6, 6, 6, 6, 7, 8, 8, 9, 9, 10, 12, 12, 12, 13, 14, 15, 16,
+                    17, 18, 19, 19, 20, 21, 22, 24, 25},
+            {0, 1, 1, 1, 2, 2, 4, 4, 4, 5, 5, 5, 8, 9, 9, 10, 10, 11, 13, 14, 16, 17, 17, 18, 20, 21, 23, 25, 26, 28,
+                    29, 31, 33, 35, 37, 38, 40, 43, 45, 47, 49},
+            {0, 1, 1, 2, 2, 4, 4, 6, 6, 8, 8, 8, 10, 12, 16, 12, 17, 16, 18, 21, 20, 23, 23, 25, 27, 29, 34, 34, 35,
+                    38, 40, 43, 45, 48, 51, 53, 56, 59, 62, 65, 68},
+            {0, 1, 1, 2, 4, 4, 4, 5, 6, 8, 8, 11, 11, 16, 16, 18, 16, 19, 21, 25, 25, 25, 34, 30, 32, 35, 37, 40, 42,
+                    45, 48, 51, 54, 57, 60, 63, 66, 70, 74, 77, 81}};
+
+    // Alignment pattern centres, from the standard's annex
+    private static final Map<Integer, int[]> ALIGNMENT = Map.of(
+            1, new int[0],
+            2, new int[]{6, 18},
+            7, new int[]{6, 22, 38},
+            14, new int[]{6, 26, 46, 66},
+            21, new int[]{6, 28, 50, 72, 94},
+            32, new int[]{6, 34, 60, 86, 112, 138},
+            40, new int[]{6, 30, 58, 86, 114, 142, 170});
+
+    private static final int[] EXP = new int[512];
+    private static final int[] LOG = new int[256];
+
+    static {
+        for (int i = 0, x = 1; i < 255; i++) {
+            EXP[i] = x;
+            LOG[x] = i;
+            x <<= 1;
+            if ((x & 0x100) != 0) {
+                x ^= 0x11D;
+            }
+        }
+        System.arraycopy(EXP, 0, EXP, 255, 257);
+    }
+
+    private final QrCodeEncoder encoder = new QrCodeEncoder();
+
+    @Test
+    void formatBitsMatchTheStandard() {
+        assertThat(QrCodeEncoder.formatBits(QrCodeEncoder.ErrorCorrection.L, 0)).isEqualTo(0b111011111000100);
+        assertThat(QrCodeEncoder.formatBits(QrCodeEncoder.ErrorCorrection.M, 0)).isEqualTo(0b101010000010010);
+        assertThat(QrCodeEncoder.formatBits(QrCodeEncoder.ErrorCorrection.Q, 0)).isEqualTo(0b011010101011111);
+        assertThat(QrCodeEncoder.formatBits(QrCodeEncoder.ErrorCorrection.H, 0)).isEqualTo(0b001011010001001);
+    }
+
+    @Test
+    void versionBitsMatchTheStandard() {
+        assertThat(QrCodeEncoder.versionBits(7)).isEqualTo(0b000111110010010100);
+        assertThat(QrCodeEncoder.versionBits(40)).isEqualTo(0b101000110001101001);
+    }
+
+    @Test
+    void dataCapacityMatchesTheStandard() {
+        assertThat(QrCodeEncoder.dataCodewords(1, QrCodeEncoder.ErrorCorrection.L)).isEqualTo(19);
+        assertThat(QrCodeEncoder.dataCodewords(1, QrCodeEncoder.ErrorCorrection.H)).isEqualTo(9);
+        assertThat(QrCodeEncoder.dataCodewords(10, QrCodeEncoder.ErrorCorrection.M)).isEqualTo(216);
+        assertThat(QrCodeEncoder.dataCodewords(40, QrCodeEncoder.ErrorCorrection.L)).isEqualTo(2956);
+        assertThat(QrCodeEncoder.dataCodewords(40, QrCodeEncoder.ErrorCorrection.H)).isEqualTo(1276);
+    }
+
+    @Test
+    void fieldArithmeticMatchesTheReferenceCode() {
+        assertThat(QrCodeEncoder.multiply(0x53, 0xCA)).isEqualTo(multiply(0x53, 0xCA));
+        // "HELLO WORLD" at 1-M: the standard's worked example, data then error correction codewords
+        int[] helloWorld = {32, 91, 11, 120, 209, 114, 220, 77, 67, 64, 236, 17, 236, 17, 236, 17,
+                196, 35, 39, 119, 235, 215, 231, 226, 93, 23};
+        assertThat(isCodeword(helloWorld, 10)).isTrue();
+        helloWorld[3] ^= 1;
+        assertThat(isCodeword(helloWorld, 10)).isFalse();
+    }
+
+    @ParameterizedTest
+    @EnumSource(QrCodeEncoder.ErrorCorrection.class)
+    void symbolsDecodeToTheirText(QrCodeEncoder.ErrorCorrection errorCorrection) {
+        String brCode = BrCode.payload("financeiro@ufoptickets.com.br", new BigDecimal("150.00"),
+                "TXN1760000000000ABCDEF12", "UFOP Tickets", "Ouro Preto");
+        // Short texts, BR Codes, and lengths that need 16-bit counts and several blocks
+        for (String text : List.of("", "A", "HELLO WORLD", brCode, brCode.repeat(3), "x".repeat(1200))) {
+            encoder.encode(text, errorCorrection);
+            assertThat(decode(encoder, errorCorrection)).as("level %s, %d characters", errorCorrection, text.length())
+                    .isEqualTo(text);
+        }
+    }
+
+    @Test
+    void encodesIntoTheSmallestVersion() {
+        encoder.encode("x".repeat(14), QrCodeEncoder.ErrorCorrection.M);
+        assertThat(encoder.version()).isEqualTo(1);
+        assertThat(encoder.size()).isEqualTo(21);
+        encoder.encode("x".repeat(15), QrCodeEncoder.ErrorCorrection.M);
+        assertThat(encoder.version()).isEqualTo(2);
+        encoder.encode("x".repeat(2953), QrCodeEncoder.ErrorCorrection.L);
+        assertThat(encoder.version()).isEqualTo(40);
+        assertThatThrownBy(() -> encoder.encode("x".repeat(2954), QrCodeEncoder.ErrorCorrection.L))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * Reads the symbol back: checks every function pattern, both copies of the format bits
+     * and the version bits, then unmasks the data, checks each Reed-Solomon block and returns
+     * the byte-mode text.
+     */
+    private static String decode(QrCodeEncoder symbol, QrCodeEncoder.ErrorCorrection errorCorrection) {
+        int version = symbol.version();
+        int size = symbol.size();
+        assertThat(size).isEqualTo(4 * version + 17);
+        boolean[][] function = new boolean[size][size];
+
+        for (int[] finder : new int[][]{{3, 3}, {size - 4, 3}, {3, size - 4}}) {
+            for (int dy = -4; dy <= 4; dy++) {
+                for (int dx = -4; dx <= 4; dx++) {
+                    int x = finder[0] + dx;
+                    int y = finder[1] + dy;
+                    if (x >= 0 && x < size && y >= 0 && y < size) {
+                        int ring = Math.max(Math.abs(dx), Math.abs(dy));
+                        assertThat(symbol.isDark(x, y)).as("finder at %d,%d", x, y).isEqualTo(ring != 2 && ring != 4);
+                        function[y][x] = true;
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            if (!function[6][i]) {
+                assertThat(symbol.isDark(i, 6)).as("timing at %d,6", i).isEqualTo(i % 2 == 0);
+                function[6][i] = true;
+            }
+            if (!function[i][6]) {
+                assertThat(symbol.isDark(6, i)).as("timing at 6,%d", i).isEqualTo(i % 2 == 0);
+                function[i][6] = true;
+            }
+        }
+        int[] alignment = alignmentPositions(version);
+        int last = alignment.length - 1;
+        for (int i = 0; i <= last; i++) {
+            for (int j = 0; j <= last; j++) {
+                if ((i == 0 && j == 0) || (i == 0 && j == last) || (i == last && j == 0)) {
+                    continue;
+                }
+                for (int dy = -2; dy <= 2; dy++) {
+                    for (int dx = -2; dx <= 2; dx++) {
+                        int x = alignment[i] + dx;
+                        int y = alignment[j] + dy;
+                        assertThat(symbol.isDark(x, y)).as("alignment at %d,%d", x, y)
+                                .isEqualTo(Math.max(Math.abs(dx), Math.abs(dy)) != 1);
+                        function[y][x] = true;
+                    }
+                }
+            }
+        }
+
+        // Format bit positions as the standard's figure lists them, most significant bit first
+        int[][] firstCopy = {{0, 8}, {1, 8}, {2, 8}, {3, 8}, {4, 8}, {5, 8}, {7, 8}, {8, 8}, {8, 7}, {8, 5}, {8, 4},
+                {8, 3}, {8, 2}, {8, 1}, {8, 0}};
+        int[][] secondCopy = {{8, size - 1}, {8, size - 2}, {8, size - 3}, {8, size - 4}, {8, size - 5},
+                {8, size - 6}, {8, size - 7}, {size - 8, 8}, {size - 7, 8}, {size - 6, 8}, {size - 5, 8},
+                {size - 4, 8}, {size - 3, 8}, {size - 2, 8}, {size - 1, 8}};
+        int format = 0;
+        int formatCopy = 0;
+        for (int i = 0; i < 15; i++) {
+            format = format << 1 | (symbol.isDark(firstCopy[i][0], firstCopy[i][1]) ? 1 : 0);
+            formatCopy = formatCopy << 1 | (symbol.isDark(secondCopy[i][0], secondCopy[i][1]) ? 1 : 0);
+            function[firstCopy[i][1]][firstCopy[i][0]] = true;
+            function[secondCopy[i][1]][secondCopy[i][0]] = true;
+        }
+        assertThat(formatCopy).as("second copy of the format bits").isEqualTo(format);
+        assertThat(symbol.isDark(8, size - 8)).as("dark module").isTrue();
+        function[size - 8][8] = true;
+        int mask = -1;
+        for (int candidate = 0; candidate < 8; candidate++) {
+            if (formatBits(errorCorrection, candidate) == format) {
+                mask = candidate;
+            }
+        }
+        assertThat(mask).as("mask in the format bits").isNotNegative();
+
+        if (version >= 7) {
+            int versionBits = versionBits(version);
+            for (int i = 0; i < 18; i++) {
+                int a = size - 11 + i % 3;
+                int b = i / 3;
+                boolean expected = ((versionBits >>> i) & 1) != 0;
+                assertThat(symbol.isDark(a, b)).as("version bit %d", i).isEqualTo(expected);
+                assertThat(symbol.isDark(b, a)).as("version bit %d", i).isEqualTo(expected);
+                function[b][a] = true;
+                function[a][b] = true;
+            }
+        }
+
+        // Data modules in zigzag order, two columns at a time from the right
+        List<Integer> bits = new ArrayList<>();
+        boolean upward = true;
+        for (int column = size - 1; column > 0; column -= 2) {
+            if (column == 6) {
+                column--;
+            }
+            for (int step = 0; step < size; step++) {
+                int y = upward ? size - 1 - step : step;
+                for (int x = column; x >= column - 1; x--) {
+                    if (!function[y][x]) {
+                        bits.add((symbol.isDark(x, y) ? 1 : 0) ^ (masked(mask, x, y) ? 1 : 0));
+                    }
+                }
+            }
+            upward = !upward;
+        }
+        int total = TOTAL_CODEWORDS[version];
+        assertThat(bits.size()).as("data modules").isBetween(total * 8, total * 8 + 7);
+        int[] codewords = new int[total];
+        for (int i = 0; i < total * 8; i++) {
+            codewords[i / 8] = codewords[i / 8] << 1 | bits.get(i);
+        }
+
+        int level = errorCorrection.ordinal();
+        int blocks = BLOCKS[level][version];
+        int eccPerBlock = ECC_PER_BLOCK[level][version];
+        int shortBlocks = blocks - total % blocks;
+        int shortData = total / blocks - eccPerBlock;
+        List<List<Integer>> blockCodewords = new ArrayList<>();
+        for (int block = 0; block < blocks; block++) {
+            blockCodewords.add(new ArrayList<>());
+        }
+        int next = 0;
+        for (int i = 0; i <= shortData; i++) {
+            for (int block = 0; block < blocks; block++) {
+                if (i < shortData || block >= shortBlocks) {
+                    blockCodewords.get(block).add(codewords[next++]);
+                }
+            }
+        }
+        for (int i = 0; i < eccPerBlock; i++) {
+            for (int block = 0; block < blocks; block++) {
+                blockCodewords.get(block).add(codewords[next++]);
+            }
+        }
+        List<Integer> data = new ArrayList<>();
+        for (int block = 0; block < blocks; block++) {
+            int[] codeword = blockCodewords.get(block).stream().mapToInt(Integer::intValue).toArray();
+            assertThat(isCodeword(codeword, eccPerBlock)).as("Reed-Solomon block %d", block).isTrue();
+            for (int i = 0; i < codeword.length - eccPerBlock; i++) {
+                data.add(codeword[i]);
+            }
+        }
+
+        BitReader reader = new BitReader(data);
+        assertThat(reader.read(4)).as("byte mode").isEqualTo(0b0100);
+        int length = reader.read(version <= 9 ? 8 : 16);
+        byte[] text = new byte[length];
+        for (int i = 0; i < length; i++) {
+            text[i] = (byte) reader.read(8);
+        }
+        return new String(text, StandardCharsets.ISO_8859_1);
+    }
+
+    private static int[] alignmentPositions(int version) {
+        int[] reference = ALIGNMENT.get(version);
+        if (reference != null) {
+            return reference;
+        }
+        int count = version / 7 + 2;
+        int step = version == 32 ? 26 : (version * 4 + count * 2 + 1) / (count * 2 - 2) * 2;
+        int[] positions = new int[count];
+        positions[0] = 6;
+        for (int i = count - 1, position = version * 4 + 10; i >= 1; i--, position -= step) {
+            positions[i] = position;
+        }
+        return positions;
+    }
+
+    private static int formatBits(QrCodeEncoder.ErrorCorrection errorCorrection, int mask) {
+        int level = switch (errorCorrection) {
+            case L -> 1;
+            case M -> 0;
+            case Q -> 3;
+            case H -> 2;
+        };
+        int value = level << 3 | mask;
+        int remainder = value;
+        for (int i = 0; i < 10; i++) {
+            remainder = (remainder << 1) ^ ((remainder >>> 9) * 0x537);
+        }
+        return (value << 10 | remainder) ^ 0x5412;
+    }
+
+    private static int versionBits(int version) {
+        int remainder = version;
+        for (int i = 0; i < 12; i++) {
+            remainder = (remainder << 1) ^ ((remainder >>> 11) * 0x1F25);
+        }
+        return version << 12 | remainder;
+    }
+
+    private static boolean masked(int mask, int x, int y) {
+        return switch (mask) {
+            case 0 -> (x + y) % 2 == 0;
+            case 1 -> y % 2 == 0;
+            case 2 -> x % 3 == 0;
+            case 3 -> (x + y) % 3 == 0;
+            case 4 -> (x / 3 + y / 2) % 2 == 0;
+            case 5 -> x * y % 2 + x * y % 3 == 0;
+            case 6 -> (x * y % 2 + x * y % 3) % 2 == 0;
+            default -> ((x + y) % 2 + x * y % 3) % 2 == 0;
+        };
+    }
+
+    // A valid block evaluates to zero at the generator's roots 2^0 .. 2^(eccCodewords-1)
+    private static boolean isCodeword(int[] codeword, int eccCodewords) {
+        for (int i = 0; i < eccCodewords; i++) {
+            int syndrome = 0;
+            for (int value : codeword) {
+                syndrome = multiply(syndrome, EXP[i]) ^ value;
+            }
+            if (syndrome != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int multiply(int a, int b) {
+        return a == 0 || b == 0 ? 0 : EXP[LOG[a] + LOG[b]];
+    }
+
+    private static final class BitReader {
+
+        private final List<Integer> bytes;
+        private int bit;
+
+        BitReader(List<Integer> bytes) {
+            this.bytes = bytes;
+        }
+
+        int read(int count) {
+            int value = 0;
+            for (int i = 0; i < count; i++, bit++) {
+                value = value << 1 | (bytes.get(bit >>> 3) >>> (7 - (bit & 7)) & 1);
+            }
+            return value;
+        }
+    }
+}
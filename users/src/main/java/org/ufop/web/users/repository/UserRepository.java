@@ -1,9 +1,14 @@
 package org.ufop.web.users.repository;
 
 import org.ufop.web.users.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -13,4 +18,14 @@ public interface UserRepository extends JpaRepository<User, UUID> {
     Optional<User> findByUserId(String userId);
     boolean existsByEmail(String email);
     boolean existsByUserId(String userId);
+
+    @Query("SELECT u FROM User u ORDER BY u.createdAt, u.id")
+    List<User> findFirstPage(Pageable pageable);
+
+    @Query("SELECT u FROM User u " +
+            "WHERE u.createdAt > :createdAt OR (u.createdAt = :createdAt AND u.id > :id) " +
+            "ORDER BY u.createdAt, u.id")
+    List<User> findPageAfter(@Param("createdAt") LocalDateTime createdAt,
+                             @Param("id") UUID id,
+                             Pageable pageable);
 }
\ No newline at end of file
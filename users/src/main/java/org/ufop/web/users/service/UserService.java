@@ -1,21 +1,28 @@
 package org.ufop.web.users.service;
 
 import org.ufop.web.users.dto.CreateUserDTO;
+import org.ufop.web.users.dto.PageCursor;
+import org.ufop.web.users.dto.PageDTO;
 import org.ufop.web.users.dto.UserDTO;
 import org.ufop.web.users.model.User;
 import org.ufop.web.users.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 //import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class UserService {
 
+    public static final int MAX_PAGE_SIZE = 500;
+    private static final int STREAM_BATCH_SIZE = 500;
+
     private final UserRepository userRepository;
 
     public UserDTO createUser(CreateUserDTO dto) {
@@ -45,6 +52,35 @@ public class UserService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * One page of users ordered by creation time, continuing after {@code cursor}.
+     */
+    public PageDTO<UserDTO> getUsersPage(String cursor, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        List<User> users = findPage(PageCursor.decode(cursor), limit);
+        String nextCursor = users.size() == limit ? cursorAfter(users).encode() : null;
+        return new PageDTO<>(users.stream().map(this::convertToDTO).collect(Collectors.toList()), nextCursor);
+    }
+
+    /**
+     * Feeds every user to {@code sink} in creation order, reading the table in small keyset
+     * batches so memory use does not grow with the number of users.
+     */
+    public void forEachUser(Consumer<UserDTO> sink) {
+        PageCursor cursor = null;
+        List<User> batch;
+        do {
+            batch = findPage(cursor, STREAM_BATCH_SIZE);
+            batch.forEach(user -> sink.accept(convertToDTO(user)));
+            if (!batch.isEmpty()) {
+                cursor = cursorAfter(batch);
+            }
+        } while (batch.size() == STREAM_BATCH_SIZE);
+    }
+
     public UserDTO getUserById(UUID id) {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("User not found"));
@@ -89,6 +125,18 @@ public class UserService {
         userRepository.deleteById(id);
     }
 
+    private List<User> findPage(PageCursor cursor, int limit) {
+        PageRequest page = PageRequest.of(0, limit);
+        return cursor == null
+                ? userRepository.findFirstPage(page)
+                : userRepository.findPageAfter(cursor.key(), cursor.id(), page);
+    }
+
+    private static PageCursor cursorAfter(List<User> users) {
+        User last = users.get(users.size() - 1);
+        return new PageCursor(last.getCreatedAt(), last.getId());
+    }
+
     private UserDTO convertToDTO(User user) {
         return new UserDTO(
                 user.getId(),